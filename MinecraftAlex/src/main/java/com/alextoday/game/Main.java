@@ -1,7 +1,13 @@
 package com.alextoday.game;
 
+import com.alextoday.game.metrics.Metrics;
+import com.alextoday.game.metrics.MetricsAppState;
+import com.alextoday.game.world.RaycastResult;
+import com.alextoday.game.world.ViewDistanceController;
 import com.alextoday.game.world.World;
 import com.alextoday.game.world.BlockType;
+import com.alextoday.game.world.storage.PregenCache;
+import com.alextoday.game.world.storage.RegionStorage;
 
 import com.jme3.app.SimpleApplication;
 import com.jme3.bullet.BulletAppState;
@@ -28,23 +34,60 @@ import com.jme3.scene.Geometry;
 import com.jme3.scene.Spatial;
 import com.jme3.scene.shape.Box;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 
 
 public class Main extends SimpleApplication implements ActionListener {
 
     private World world;
+    private ViewDistanceController viewDistance;
+    // render thread time the last frame spent in chunk loading
+    private long chunkUpdateNanos;
     private BulletAppState bulletAppState;
     private CharacterControl player;
     private final Vector3f walkDirection = new Vector3f();
     private Geometry highlightGeom;
+    private final RaycastResult target = new RaycastResult();
     private boolean forward;
     private boolean backward;
     private boolean left;
     private boolean right;
 
     private static final int VIEW_RADIUS_CHUNKS = 2;
+    // -Dminecraft.adaptiveViewDistance=false keeps the load radius at VIEW_RADIUS_CHUNKS
+    private static final boolean ADAPTIVE_VIEW_DISTANCE =
+            Boolean.parseBoolean(System.getProperty("minecraft.adaptiveViewDistance", "true"));
+    // the adaptive radius grows from VIEW_RADIUS_CHUNKS up to this while frames stay under the target
+    private static final int MAX_VIEW_RADIUS_CHUNKS = Integer.getInteger("minecraft.maxViewRadius", 8);
+    private static final float FRAME_TARGET_MS =
+            Float.parseFloat(System.getProperty("minecraft.frameTargetMs", "16.6"));
+    // low-detail terrain out to this radius, beyond the full-detail chunks
+    private static final int LOD_RADIUS_CHUNKS = 24;
     private static final float GROUND_HALF_SIZE = 256f;
     private static final float GROUND_HEIGHT = 3f;
+    // -Dminecraft.legacyMeshing=true builds one Geometry per block for comparison
+    private static final boolean LEGACY_MESHING = Boolean.getBoolean("minecraft.legacyMeshing");
+    // -Dminecraft.occlusionCulling=false draws every loaded section, even behind terrain
+    private static final boolean OCCLUSION_CULLING =
+            Boolean.parseBoolean(System.getProperty("minecraft.occlusionCulling", "true"));
+    private static final float CHUNK_INTEGRATION_BUDGET_MS = 4f;
+    private static final float REACH_DISTANCE = 6f;
+    private static final float EXPLOSION_RADIUS = 4f;
+    private static final int PHYSICS_RADIUS_CHUNKS = 1;
+    private static final int UNLOAD_MARGIN_CHUNKS = 1;
+    private static final int SPAWN_SEARCH_RADIUS = 16;
+    private static final long CHUNK_CACHE_BYTES = 32L << 20;
+    private static final String SAVE_DIRECTORY = System.getProperty("minecraft.saveDir", "world");
+    // -Dminecraft.pregenCache=world/pregen.bin loads chunks written by tools.Pregenerate instead of generating
+    private static final String PREGEN_CACHE_FILE = System.getProperty("minecraft.pregenCache");
+    private static final boolean METRICS_OVERLAY =
+            Boolean.parseBoolean(System.getProperty("minecraft.metrics.overlay", "true"));
+    private static final String METRICS_DUMP_FILE = System.getProperty("minecraft.metrics.dump");
+    private static final float METRICS_DUMP_INTERVAL = 10f;
 
     public static void main(String[] args) {
         Main app = new Main();
@@ -66,6 +109,19 @@ public class Main extends SimpleApplication implements ActionListener {
         initKeys();
         initCrosshair();
         initBlockHighlight();
+        initMetrics();
+    }
+
+    private void initMetrics() {
+        if (!Metrics.ENABLED) {
+            return;
+        }
+        stateManager.attach(new MetricsAppState(world, rootNode, METRICS_OVERLAY,
+                METRICS_DUMP_FILE != null ? Paths.get(METRICS_DUMP_FILE) : null,
+                METRICS_DUMP_INTERVAL));
+        if (viewDistance != null) {
+            Metrics.registry().gauge("view.radius", viewDistance::getRadius);
+        }
     }
 
     private void initCrosshair() {
@@ -121,15 +177,26 @@ public class Main extends SimpleApplication implements ActionListener {
         cam.setLocation(player.getPhysicsLocation().add(0, 1.6f, 0));
 
         Vector3f pos = player.getPhysicsLocation();
-        world.updateVisibleChunks(pos.x, pos.z, VIEW_RADIUS_CHUNKS);
-
+        Vector3f look = cam.getDirection();
+        int viewRadius = VIEW_RADIUS_CHUNKS;
+        if (viewDistance != null) {
+            viewRadius = viewDistance.update(tpf, chunkUpdateNanos * 1e-9f, world.getPendingChunkCount());
+            world.setChunkWorkScale(viewDistance.getChunkWorkScale());
+        }
+        long chunkUpdateStart = System.nanoTime();
+        world.updateVisibleChunks(pos.x, pos.z, look.x, look.z, viewRadius);
+        chunkUpdateNanos = System.nanoTime() - chunkUpdateStart;
+        Vector3f eye = cam.getLocation();
+        world.cullHiddenSections(eye.x, eye.y, eye.z);
+        world.update(tpf);
+
+        world.raycast(cam.getLocation(), cam.getDirection(), REACH_DISTANCE, target);
         updateBlockHighlight();
     }
 
     private void updateBlockHighlight(){
-        BlockRaycastResult hit = raycastBlock(6f);
-        if (hit.hit){
-            highlightGeom.setLocalTranslation(hit.hitX, hit.hitY, hit.hitZ);
+        if (target.hit){
+            highlightGeom.setLocalTranslation(target.hitX, target.hitY, target.hitZ);
             highlightGeom.setCullHint(Spatial.CullHint.Never);
         } else {
             highlightGeom.setCullHint(Spatial.CullHint.Always);
@@ -160,6 +227,32 @@ public class Main extends SimpleApplication implements ActionListener {
 
     private void initWorld() {
         world = new World(rootNode, assetManager, bulletAppState.getPhysicsSpace());
+        world.setGreedyMeshing(!LEGACY_MESHING);
+        world.setIntegrationBudgetMillis(CHUNK_INTEGRATION_BUDGET_MS);
+        world.setPhysicsRadius(PHYSICS_RADIUS_CHUNKS);
+        world.setUnloadMargin(UNLOAD_MARGIN_CHUNKS);
+        world.setChunkCacheBytes(CHUNK_CACHE_BYTES);
+        world.setLodRadius(LOD_RADIUS_CHUNKS);
+        world.setOcclusionCulling(OCCLUSION_CULLING);
+        if (ADAPTIVE_VIEW_DISTANCE) {
+            viewDistance = new ViewDistanceController(VIEW_RADIUS_CHUNKS,
+                    Math.max(VIEW_RADIUS_CHUNKS, MAX_VIEW_RADIUS_CHUNKS), VIEW_RADIUS_CHUNKS, FRAME_TARGET_MS);
+        }
+
+        try {
+            world.setRegionStorage(new RegionStorage(Paths.get(SAVE_DIRECTORY, "region")));
+        } catch (IOException e) {
+            Logger.getLogger(Main.class.getName())
+                    .log(Level.WARNING, "Cannot open save directory, edits will not be kept", e);
+        }
+        if (PREGEN_CACHE_FILE != null) {
+            try {
+                world.setPregenCache(PregenCache.open(Paths.get(PREGEN_CACHE_FILE)));
+            } catch (IOException | IllegalArgumentException e) {
+                Logger.getLogger(Main.class.getName())
+                        .log(Level.WARNING, "Cannot use pregenerated chunks, generating instead", e);
+            }
+        }
 
 //        BoxCollisionShape groundShape =
 //                new BoxCollisionShape(new Vector3f(GROUND_HALF_SIZE, GROUND_HEIGHT / 2f, GROUND_HALF_SIZE));
@@ -167,7 +260,7 @@ public class Main extends SimpleApplication implements ActionListener {
 //        ground.setPhysicsLocation(new Vector3f(0, GROUND_HEIGHT / 2f, 0));
 //        bulletAppState.getPhysicsSpace().add(ground);
 
-        world.updateVisibleChunks(0f, 0f, VIEW_RADIUS_CHUNKS);
+        world.loadChunksNow(0f, 0f, VIEW_RADIUS_CHUNKS);
     }
 
     private void initPlayer() {
@@ -177,11 +270,12 @@ public class Main extends SimpleApplication implements ActionListener {
         player.setFallSpeed(40f);
         player.setGravity(40f);
 
-        int terrainY = world.getTerrainHeightAt(0f, 0f);
+        Vector3f spawn = world.findSpawnPoint(0, 0, SPAWN_SEARCH_RADIUS, null);
 
-        player.setPhysicsLocation(new Vector3f(0f, terrainY + 3f, 0f));
+        player.setPhysicsLocation(spawn.addLocal(0f, 3f, 0f));
 
         bulletAppState.getPhysicsSpace().add(player);
+        world.addPhysicsAnchor(player);
     }
 
     private void initKeys() {
@@ -195,9 +289,18 @@ public class Main extends SimpleApplication implements ActionListener {
         inputManager.addMapping("BreakBlock", new MouseButtonTrigger(MouseInput.BUTTON_LEFT));
         inputManager.addMapping("PlaceBlock", new MouseButtonTrigger(MouseInput.BUTTON_RIGHT));
 
+        inputManager.addMapping("SelectDirt", new KeyTrigger(KeyInput.KEY_1));
+        inputManager.addMapping("SelectStone", new KeyTrigger(KeyInput.KEY_2));
+        inputManager.addMapping("SelectLamp", new KeyTrigger(KeyInput.KEY_3));
+
+        inputManager.addMapping("Explode", new KeyTrigger(KeyInput.KEY_E));
+        inputManager.addMapping("Undo", new KeyTrigger(KeyInput.KEY_Z));
+
         inputManager.addListener(this,
                 "Forward", "Backward", "Left", "Right", "Jump",
-                "BreakBlock", "PlaceBlock");
+                "BreakBlock", "PlaceBlock",
+                "SelectDirt", "SelectStone", "SelectLamp",
+                "Explode", "Undo");
     }
 
     @Override
@@ -218,79 +321,40 @@ public class Main extends SimpleApplication implements ActionListener {
             handleBreakBlock();
         } else if ("PlaceBlock".equals(name) && isPressed) {
             handlePlaceBlock();
+        } else if ("SelectDirt".equals(name) && isPressed) {
+            selectedBlockType = BlockType.DIRT;
+        } else if ("SelectStone".equals(name) && isPressed) {
+            selectedBlockType = BlockType.STONE;
+        } else if ("SelectLamp".equals(name) && isPressed) {
+            selectedBlockType = BlockType.LAMP;
+        } else if ("Explode".equals(name) && isPressed) {
+            if (target.hit) {
+                world.getEditor().fillSphere(target.hitX, target.hitY, target.hitZ, EXPLOSION_RADIUS, BlockType.AIR);
+            }
+        } else if ("Undo".equals(name) && isPressed) {
+            world.getEditor().undo();
         }
     }
 
-    private static class BlockRaycastResult {
-        boolean hit;
-        int hitX, hitY, hitZ;
-        int placeX, placeY, placeZ;
-        float distance;
-    }
-
-    private BlockRaycastResult raycastBlock(float maxDistance) {
-        BlockRaycastResult result = new BlockRaycastResult();
-
-        Vector3f origin = cam.getLocation().clone();
-        Vector3f dir = cam.getDirection().normalize();
-
-        float step = 0.1f;
-        float dist = 0f;
-
-        int lastAirX = 0, lastAirY = 0, lastAirZ = 0;
-        boolean hasLastAir = false;
-
-        while (dist <= maxDistance) {
-            Vector3f p = origin.add(dir.mult(dist));
-
-            int bx = Math.round(p.x);
-            int by = Math.round(p.y);
-            int bz = Math.round(p.z);
-
-            BlockType type = world.getBlockType(bx, by, bz);
-
-            if (type != null && type != BlockType.AIR) {
-                result.hit = true;
-                result.hitX = bx;
-                result.hitY = by;
-                result.hitZ = bz;
-
-                if (hasLastAir) {
-                    result.placeX = lastAirX;
-                    result.placeY = lastAirY;
-                    result.placeZ = lastAirZ;
-                } else {
-                    result.placeX = bx;
-                    result.placeY = by;
-                    result.placeZ = bz;
-                }
-
-                result.distance = dist;
-                return result;
-            } else {
-                hasLastAir = true;
-                lastAirX = bx;
-                lastAirY = by;
-                lastAirZ = bz;
-            }
+    private BlockType selectedBlockType = BlockType.DIRT;
 
-            dist += step;
+    @Override
+    public void destroy() {
+        if (world != null) {
+            world.shutdown();
         }
-
-        return result;
+        super.destroy();
     }
 
-    private BlockType selectedBlockType = BlockType.DIRT;
-
     private void handleBreakBlock() {
-        BlockRaycastResult hit = raycastBlock(6f);
+        RaycastResult hit = target;
         if (!hit.hit) return;
 
         world.setBlockType(hit.hitX, hit.hitY, hit.hitZ, BlockType.AIR);
     }
 
     private void handlePlaceBlock() {
-        BlockRaycastResult hit = raycastBlock(6f);
+        RaycastResult hit = target;
         if (!hit.hit) return;
 
         BlockType existing = world.getBlockType(hit.placeX, hit.placeY, hit.placeZ);
@@ -0,0 +1,25 @@
+package com.alextoday.game.metrics;
+
+/**
+ * Timed steps of the chunk pipeline.
+ */
+public enum ChunkStage {
+    GENERATE("chunk.generate"),
+    LOAD("chunk.load"),
+    MESH("chunk.mesh"),
+    COLLISION("chunk.collision"),
+    ATTACH("chunk.attach"),
+    UNLOAD("chunk.unload"),
+    REBUILD("chunk.rebuild"),
+    LIGHT("chunk.light");
+
+    final Timer timer;
+
+    ChunkStage(String metricName) {
+        this.timer = Metrics.registry().timer(metricName);
+    }
+
+    public Timer getTimer() {
+        return timer;
+    }
+}
@@ -0,0 +1,31 @@
+package com.alextoday.game.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one {@link ChunkStage} of one chunk.
+ */
+@Name("com.alextoday.game.ChunkStage")
+@Label("Chunk Stage")
+@Description("Generation, meshing, collision, attach or unload of a chunk")
+@Category({"MinecraftAlex", "World"})
+@StackTrace(false)
+public class ChunkStageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Chunk X")
+    int chunkX;
+
+    @Label("Chunk Z")
+    int chunkZ;
+
+    transient ChunkStage chunkStage;
+    transient long startNanos;
+}
@@ -0,0 +1,35 @@
+package com.alextoday.game.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event with per-frame world statistics.
+ */
+@Name("com.alextoday.game.FrameStats")
+@Label("Frame Stats")
+@Category({"MinecraftAlex", "World"})
+@StackTrace(false)
+public class FrameStatsEvent extends Event {
+
+    @Label("Loaded Chunks")
+    int loadedChunks;
+
+    @Label("Pending Chunks")
+    int pendingChunks;
+
+    @Label("Geometries")
+    int geometries;
+
+    @Label("Triangles")
+    int triangles;
+
+    @Label("Chunk Lookups")
+    long chunkLookups;
+
+    @Label("Block Edits")
+    long blockEdits;
+}
@@ -0,0 +1,25 @@
+package com.alextoday.game.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Current value of something, read when metrics are reported.
+ */
+public class Gauge {
+
+    private final String name;
+    private final LongSupplier supplier;
+
+    Gauge(String name, LongSupplier supplier) {
+        this.name = name;
+        this.supplier = supplier;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getValue() {
+        return supplier.getAsLong();
+    }
+}
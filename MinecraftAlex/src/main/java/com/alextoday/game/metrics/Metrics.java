@@ -0,0 +1,44 @@
+package com.alextoday.game.metrics;
+
+/**
+ * Global switch and registry for instrumentation.
+ *
+ * Enabled with {@code -Dminecraft.metrics=true}. {@link #ENABLED} is a
+ * compile-time constant for the JIT, so guarded call sites
+ * ({@code if (Metrics.ENABLED) ...}) are removed entirely when it is off.
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("minecraft.metrics");
+
+    private static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    public static final Counter BLOCK_EDITS = REGISTRY.counter("blocks.edited");
+
+    private Metrics() {
+    }
+
+    public static MetricsRegistry registry() {
+        return REGISTRY;
+    }
+
+    /**
+     * Starts timing a stage. Pass the result to {@link #end(ChunkStageEvent)}.
+     * Call only when {@link #ENABLED}.
+     */
+    public static ChunkStageEvent begin(ChunkStage stage, int chunkX, int chunkZ) {
+        ChunkStageEvent event = new ChunkStageEvent();
+        event.stage = stage.name();
+        event.chunkStage = stage;
+        event.chunkX = chunkX;
+        event.chunkZ = chunkZ;
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    public static void end(ChunkStageEvent event) {
+        event.chunkStage.timer.recordSince(event.startNanos);
+        event.commit();
+    }
+}
@@ -0,0 +1,186 @@
+package com.alextoday.game.metrics;
+
+import com.alextoday.game.world.World;
+import com.jme3.app.Application;
+import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.font.BitmapFont;
+import com.jme3.font.BitmapText;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.SceneGraphVisitorAdapter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Samples per-frame world statistics into the metrics registry, optionally
+ * shows them in the {@code guiNode} and periodically appends a snapshot to a
+ * file (see {@link MetricsReporter}). Attach only when {@link Metrics#ENABLED}.
+ */
+public class MetricsAppState extends BaseAppState {
+
+    private static final Logger LOG = Logger.getLogger(MetricsAppState.class.getName());
+
+    private static final float OVERLAY_INTERVAL = 0.25f;
+
+    private final World world;
+    private final Node sceneRoot;
+    private final boolean overlay;
+    private final MetricsReporter reporter;
+    private final float dumpInterval;
+
+    private final Timer frameTime;
+    private final Histogram lookupsPerFrame;
+
+    private BitmapText text;
+    private float overlayTimer;
+    private float dumpTimer;
+
+    private int geometries;
+    private int triangles;
+
+    private long lastEdits;
+    private float editTime;
+    private float editRate;
+
+    /**
+     * @param dumpFile where snapshots are appended, or {@code null} for none
+     */
+    public MetricsAppState(World world, Node sceneRoot, boolean overlay, Path dumpFile, float dumpIntervalSeconds) {
+        this.world = world;
+        this.sceneRoot = sceneRoot;
+        this.overlay = overlay;
+        this.reporter = dumpFile != null ? new MetricsReporter(Metrics.registry(), dumpFile) : null;
+        this.dumpInterval = dumpIntervalSeconds;
+
+        MetricsRegistry registry = Metrics.registry();
+        frameTime = registry.timer("frame.time");
+        lookupsPerFrame = registry.histogram("frame.chunkLookups");
+
+        registry.gauge("chunks.loaded", () -> world.getChunks().size());
+        registry.gauge("chunks.pending", world::getPendingChunkCount);
+        registry.gauge("chunks.cached", () -> world.getChunkCache().size());
+        registry.gauge("sections.visible", () -> world.getVisibilityGraph().getVisibleCount());
+        registry.gauge("scene.geometries", () -> geometries);
+        registry.gauge("scene.triangles", () -> triangles);
+    }
+
+    @Override
+    protected void initialize(Application app) {
+        if (!overlay) {
+            return;
+        }
+        BitmapFont font = app.getAssetManager().loadFont("Interface/Fonts/Default.fnt");
+        text = new BitmapText(font, false);
+        text.setColor(ColorRGBA.Yellow);
+        text.setLocalTranslation(10f, app.getCamera().getHeight() - 10f, 0f);
+    }
+
+    @Override
+    protected void onEnable() {
+        if (text != null) {
+            ((SimpleApplication) getApplication()).getGuiNode().attachChild(text);
+        }
+    }
+
+    @Override
+    protected void onDisable() {
+        if (text != null) {
+            text.removeFromParent();
+        }
+    }
+
+    @Override
+    protected void cleanup(Application app) {
+        dump();
+    }
+
+    @Override
+    public void update(float tpf) {
+        frameTime.record((long) (tpf * 1e9));
+
+        long lookups = world.getChunkRegistry().getLookupCount();
+        world.getChunkRegistry().resetLookupCount();
+        lookupsPerFrame.record(lookups);
+
+        countGeometry();
+
+        long edits = Metrics.BLOCK_EDITS.getCount();
+        editTime += tpf;
+        if (editTime >= 1f) {
+            editRate = (edits - lastEdits) / editTime;
+            lastEdits = edits;
+            editTime = 0f;
+        }
+
+        FrameStatsEvent event = new FrameStatsEvent();
+        if (event.shouldCommit()) {
+            event.loadedChunks = world.getChunks().size();
+            event.pendingChunks = world.getPendingChunkCount();
+            event.geometries = geometries;
+            event.triangles = triangles;
+            event.chunkLookups = lookups;
+            event.blockEdits = edits;
+            event.commit();
+        }
+
+        overlayTimer += tpf;
+        if (text != null && overlayTimer >= OVERLAY_INTERVAL) {
+            overlayTimer = 0f;
+            text.setText(overlayText(lookups));
+        }
+
+        dumpTimer += tpf;
+        if (reporter != null && dumpTimer >= dumpInterval) {
+            dumpTimer = 0f;
+            dump();
+        }
+    }
+
+    private void countGeometry() {
+        geometries = 0;
+        triangles = 0;
+        sceneRoot.depthFirstTraversal(new SceneGraphVisitorAdapter() {
+            @Override
+            public void visit(Geometry geom) {
+                geometries++;
+                triangles += geom.getTriangleCount();
+            }
+        });
+    }
+
+    private String overlayText(long lookups) {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append(String.format(Locale.ROOT,
+                "chunks %d (pending %d, cached %d)  geometries %d  triangles %d%n"
+                        + "edits/s %.1f  lookups/frame %d  frame p99 %.2f ms%n",
+                world.getChunks().size(), world.getPendingChunkCount(), world.getChunkCache().size(),
+                geometries, triangles, editRate, lookups, frameTime.getPercentile(99) * 1e-6));
+        for (ChunkStage stage : ChunkStage.values()) {
+            Timer t = stage.getTimer();
+            if (t.getCount() == 0) {
+                continue;
+            }
+            sb.append(String.format(Locale.ROOT, "%-10s n=%-6d mean %.3f ms  p99 %.3f ms%n",
+                    stage.name().toLowerCase(Locale.ROOT), t.getCount(),
+                    t.getMean() * 1e-6, t.getPercentile(99) * 1e-6));
+        }
+        return sb.toString();
+    }
+
+    private void dump() {
+        if (reporter == null) {
+            return;
+        }
+        try {
+            reporter.write();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to write metrics to " + reporter.getPath(), e);
+        }
+    }
+}
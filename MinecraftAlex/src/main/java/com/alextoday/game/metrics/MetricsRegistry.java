@@ -0,0 +1,77 @@
+package com.alextoday.game.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, timers, histograms and gauges. Registering the same name
+ * twice returns the existing metric. Metrics are listed in registration order.
+ */
+public class MetricsRegistry {
+
+    private final Map<String, Object> byName = new ConcurrentHashMap<>();
+
+    private final List<Counter> counters = new CopyOnWriteArrayList<>();
+    private final List<Histogram> histograms = new CopyOnWriteArrayList<>();
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+    public Counter counter(String name) {
+        return register(name, Counter.class, Counter::new, counters);
+    }
+
+    public Histogram histogram(String name) {
+        return register(name, Histogram.class, Histogram::new, histograms);
+    }
+
+    public Timer timer(String name) {
+        return register(name, Timer.class, Timer::new, histograms);
+    }
+
+    /**
+     * Registers or replaces a gauge. The supplier is called on the reporting thread.
+     */
+    public Gauge gauge(String name, LongSupplier supplier) {
+        Gauge gauge = new Gauge(name, supplier);
+        Object old = byName.put(name, gauge);
+        if (old != null) {
+            gauges.remove(old);
+        }
+        gauges.add(gauge);
+        return gauge;
+    }
+
+    private synchronized <T, L> T register(String name, Class<T> type, Function<String, T> factory, List<L> list) {
+        Object existing = byName.get(name);
+        if (existing != null) {
+            if (!type.isInstance(existing)) {
+                throw new IllegalArgumentException("Metric " + name + " is a " + existing.getClass().getSimpleName());
+            }
+            return type.cast(existing);
+        }
+        T metric = factory.apply(name);
+        byName.put(name, metric);
+        @SuppressWarnings("unchecked")
+        List<Object> target = (List<Object>) list;
+        target.add(metric);
+        return metric;
+    }
+
+    public List<Counter> getCounters() {
+        return counters;
+    }
+
+    /**
+     * Histograms and timers.
+     */
+    public List<Histogram> getHistograms() {
+        return histograms;
+    }
+
+    public List<Gauge> getGauges() {
+        return gauges;
+    }
+}
@@ -0,0 +1,109 @@
+package com.alextoday.game.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Appends a snapshot of all metrics to a file: CSV (one row per metric)
+ * or, for a {@code .json} path, JSON lines (one object per snapshot).
+ */
+public class MetricsReporter {
+
+    private static final String CSV_HEADER = "time_ms,name,type,count,value,mean,p50,p95,p99,max,unit";
+
+    private final MetricsRegistry registry;
+    private final Path path;
+    private final boolean json;
+
+    public MetricsReporter(MetricsRegistry registry, Path path) {
+        this.registry = registry;
+        this.path = path;
+        this.json = path.getFileName().toString().endsWith(".json");
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public void write() throws IOException {
+        boolean fresh = !Files.exists(path) || Files.size(path) == 0;
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            long time = System.currentTimeMillis();
+            if (json) {
+                writeJson(out, time);
+            } else {
+                if (fresh) {
+                    out.write(CSV_HEADER);
+                    out.newLine();
+                }
+                writeCsv(out, time);
+            }
+        }
+    }
+
+    private void writeCsv(BufferedWriter out, long time) throws IOException {
+        for (Counter c : registry.getCounters()) {
+            out.write(time + "," + c.getName() + ",counter," + c.getCount() + ",,,,,,,");
+            out.newLine();
+        }
+        for (Gauge g : registry.getGauges()) {
+            out.write(time + "," + g.getName() + ",gauge,," + g.getValue() + ",,,,,,");
+            out.newLine();
+        }
+        for (Histogram h : registry.getHistograms()) {
+            double s = h.getReportScale();
+            out.write(String.format(Locale.ROOT, "%d,%s,%s,%d,,%.4f,%.4f,%.4f,%.4f,%.4f,%s",
+                    time, h.getName(), h instanceof Timer ? "timer" : "histogram", h.getCount(),
+                    h.getMean() * s, h.getPercentile(50) * s, h.getPercentile(95) * s,
+                    h.getPercentile(99) * s, h.getMax() * s, h.getUnit()));
+            out.newLine();
+        }
+    }
+
+    private void writeJson(BufferedWriter out, long time) throws IOException {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\"time_ms\":").append(time);
+
+        sb.append(",\"counters\":{");
+        boolean first = true;
+        for (Counter c : registry.getCounters()) {
+            first = comma(sb, first);
+            sb.append('"').append(c.getName()).append("\":").append(c.getCount());
+        }
+
+        sb.append("},\"gauges\":{");
+        first = true;
+        for (Gauge g : registry.getGauges()) {
+            first = comma(sb, first);
+            sb.append('"').append(g.getName()).append("\":").append(g.getValue());
+        }
+
+        sb.append("},\"histograms\":{");
+        first = true;
+        for (Histogram h : registry.getHistograms()) {
+            first = comma(sb, first);
+            double s = h.getReportScale();
+            sb.append(String.format(Locale.ROOT,
+                    "\"%s\":{\"count\":%d,\"mean\":%.4f,\"p50\":%.4f,\"p95\":%.4f,\"p99\":%.4f,\"max\":%.4f,\"unit\":\"%s\"}",
+                    h.getName(), h.getCount(), h.getMean() * s, h.getPercentile(50) * s,
+                    h.getPercentile(95) * s, h.getPercentile(99) * s, h.getMax() * s, h.getUnit()));
+        }
+        sb.append("}}");
+
+        out.write(sb.toString());
+        out.newLine();
+    }
+
+    private static boolean comma(StringBuilder sb, boolean first) {
+        if (!first) {
+            sb.append(',');
+        }
+        return false;
+    }
+}
@@ -0,0 +1,25 @@
+package com.alextoday.game.metrics;
+
+/**
+ * Histogram of durations recorded in nanoseconds and reported in milliseconds.
+ */
+public class Timer extends Histogram {
+
+    Timer(String name) {
+        super(name);
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public double getReportScale() {
+        return 1e-6;
+    }
+
+    @Override
+    public String getUnit() {
+        return "ms";
+    }
+}
@@ -0,0 +1,225 @@
+package com.alextoday.game.tools;
+
+import com.alextoday.game.world.BlockType;
+import com.alextoday.game.world.Chunk;
+import com.alextoday.game.world.World;
+import com.alextoday.game.world.WorldSnapshot;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.scene.Node;
+import com.jme3.system.NativeLibraryLoader;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads a {@link World} from several threads while the main thread edits it,
+ * and checks that the readers never see a torn or mixed state.
+ *
+ * <pre>
+ * java -cp MinecraftAlex.jar:... com.alextoday.game.tools.ConcurrencyStress \
+ *     --readers=4 --seconds=10 --radius=2
+ * </pre>
+ *
+ * The writer moves a lamp along a line of blocks that crosses several chunk
+ * borders, placing the next lamp before removing the previous one, so at any
+ * instant the line holds one lamp or two neighboring ones. It also churns
+ * random block types into a box, recompacts the chunks so their storage keeps
+ * resizing, and moves the load center so chunks load and unload. Readers mix
+ * single block reads, which must always return a block type, with snapshots,
+ * whose lamp line must match one instant of the writer. Exits with status 1
+ * on any violation.
+ */
+public final class ConcurrencyStress {
+
+    private static final int MARKER_LENGTH = 48;
+    private static final int CHURN_SIZE = 24;
+    private static final int EDITS_PER_FRAME = 64;
+    private static final int FRAMES_PER_COMPACT = 16;
+    private static final int FRAMES_PER_MOVE = 120;
+    private static final int READS_PER_SNAPSHOT = 2000;
+    private static final BlockType[] CHURN_TYPES = {
+            BlockType.AIR, BlockType.STONE, BlockType.DIRT, BlockType.GRASS, BlockType.WATER, BlockType.LAMP
+    };
+
+    private final int readers;
+    private final long durationNanos;
+    private final int radius;
+
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong lockedSnapshots = new AtomicLong();
+    private final AtomicLong violations = new AtomicLong();
+    private final List<Throwable> failures = new ArrayList<>();
+
+    private int markerY;
+    private int churnY;
+
+    private ConcurrencyStress(Map<String, String> options) {
+        this.readers = Integer.parseInt(options.getOrDefault("readers", "4"));
+        this.durationNanos = (long) (Double.parseDouble(options.getOrDefault("seconds", "10")) * 1e9);
+        this.radius = Integer.parseInt(options.getOrDefault("radius", "2"));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+
+        NativeLibraryLoader.loadNativeLibrary("bulletjme", true);
+        if (!new ConcurrencyStress(options).run()) {
+            System.exit(1);
+        }
+    }
+
+    private boolean run() throws InterruptedException {
+        World world = new World(new Node("root"), new DesktopAssetManager(true), new PhysicsSpace());
+        world.loadChunksNow(0f, 0f, radius + 1);
+
+        // above the terrain, so nothing but the writer touches these blocks
+        markerY = Math.min(Chunk.SIZE_Y - 1, world.getTerrainHeightAt(0f, 0f) + 12);
+        churnY = Math.max(0, markerY - CHURN_SIZE / 2);
+        world.setBlockType(markerX(0), markerY, 0, BlockType.LAMP);
+        world.update(0f);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            long seed = i;
+            Thread thread = new Thread(() -> readLoop(world, new Random(seed)), "reader-" + i);
+            thread.setUncaughtExceptionHandler((t, e) -> {
+                synchronized (failures) {
+                    failures.add(e);
+                }
+                running.set(false);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        Random random = new Random(-1);
+        long writes = 0;
+        int marker = 0;
+        int frame = 0;
+        long start = System.nanoTime();
+        while (running.get() && System.nanoTime() - start < durationNanos) {
+            // next lamp first, then clear the previous one
+            int next = (marker + 1) % MARKER_LENGTH;
+            world.setBlockType(markerX(next), markerY, 0, BlockType.LAMP);
+            world.setBlockType(markerX(marker), markerY, 0, BlockType.AIR);
+            marker = next;
+            writes += 2;
+
+            for (int i = 0; i < EDITS_PER_FRAME; i++) {
+                world.setBlockType(churnX(random.nextInt(CHURN_SIZE)), churnY + random.nextInt(CHURN_SIZE),
+                        churnZ(random.nextInt(CHURN_SIZE)), CHURN_TYPES[random.nextInt(CHURN_TYPES.length)]);
+            }
+            writes += EDITS_PER_FRAME;
+
+            frame++;
+            if (frame % FRAMES_PER_COMPACT == 0) {
+                for (Chunk chunk : world.getChunks()) {
+                    chunk.compact();
+                }
+            }
+            // shift the load area by one chunk and back, loading and unloading a row
+            float centerX = (frame / FRAMES_PER_MOVE) % 2 == 0 ? 0f : Chunk.SIZE_X;
+            world.updateVisibleChunks(centerX, 0f, radius + 1);
+            world.update(1f / 60f);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        world.shutdown();
+
+        System.out.printf(Locale.ROOT,
+                "readers %d | %.1f s | writes/s %.0f | reads/s %.0f | snapshots %d (%d locked) | violations %d%n",
+                readers, seconds, writes / seconds, reads.get() / seconds,
+                snapshots.get(), lockedSnapshots.get(), violations.get());
+        synchronized (failures) {
+            for (Throwable failure : failures) {
+                failure.printStackTrace();
+            }
+            return failures.isEmpty() && violations.get() == 0;
+        }
+    }
+
+    private static int markerX(int i) {
+        return i - MARKER_LENGTH / 2;
+    }
+
+    private static int churnX(int i) {
+        return i - CHURN_SIZE / 2;
+    }
+
+    // beside the marker line, which runs along z = 0
+    private static int churnZ(int i) {
+        return i + 2;
+    }
+
+    private void readLoop(World world, Random random) {
+        while (running.get()) {
+            for (int i = 0; i < READS_PER_SNAPSHOT; i++) {
+                BlockType type = random.nextBoolean()
+                        ? world.readBlockType(markerX(random.nextInt(MARKER_LENGTH)), markerY, 0)
+                        : world.readBlockType(churnX(random.nextInt(CHURN_SIZE)), churnY + random.nextInt(CHURN_SIZE),
+                        churnZ(random.nextInt(CHURN_SIZE)));
+                if (type == null) {
+                    violation("read returned no block type");
+                }
+            }
+            reads.addAndGet(READS_PER_SNAPSHOT);
+
+            WorldSnapshot snapshot = world.snapshot(0, 0, radius);
+            snapshots.incrementAndGet();
+            if (!snapshot.isOptimistic()) {
+                lockedSnapshots.incrementAndGet();
+            }
+            checkMarker(snapshot);
+        }
+    }
+
+    /**
+     * The lamps on the marker line of one instant: one, or two next to each other.
+     */
+    private void checkMarker(WorldSnapshot snapshot) {
+        int count = 0;
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < MARKER_LENGTH; i++) {
+            BlockType type = snapshot.getBlockType(markerX(i), markerY, 0);
+            if (type == null) {
+                violation("snapshot returned no block type");
+            } else if (type == BlockType.LAMP) {
+                count++;
+                if (first < 0) {
+                    first = i;
+                }
+                last = i;
+            }
+        }
+        boolean neighbors = last - first == 1 || (first == 0 && last == MARKER_LENGTH - 1);
+        if (count != 1 && !(count == 2 && neighbors)) {
+            violation("snapshot has " + count + " lamps on the marker line, at " + first + ".." + last);
+        }
+    }
+
+    private void violation(String message) {
+        if (violations.incrementAndGet() <= 10) {
+            System.out.println("VIOLATION: " + message);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.alextoday.game.tools;
+
+import com.alextoday.game.metrics.MetricsRegistry;
+import com.alextoday.game.metrics.Timer;
+import com.alextoday.game.world.BlockType;
+import com.alextoday.game.world.Chunk;
+import com.alextoday.game.world.ViewDistanceController;
+import com.alextoday.game.world.World;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.collision.shapes.CapsuleCollisionShape;
+import com.jme3.bullet.objects.PhysicsCharacter;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import com.jme3.system.NativeLibraryLoader;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a {@link World} without a window or GPU: a detached root node, a
+ * real Bullet {@link PhysicsSpace} and a simulated player moving along a
+ * scripted path, with periodic bursts of block edits.
+ *
+ * <pre>
+ * java -cp MinecraftAlex.jar:... com.alextoday.game.tools.HeadlessSimulation \
+ *     --path=sprint|spiral|teleport|all --ticks=1800 --radius=4 \
+ *     --edit-interval=60 --edit-burst=200 --max-p99-ms=16 --frame-target-ms=16.6
+ * </pre>
+ *
+ * Prints tick latency percentiles, streamed chunks per second and the
+ * allocation rate per path. Exits with status 1 if {@code --max-p99-ms}
+ * is given and exceeded, so it can gate a build. With {@code --frame-target-ms}
+ * a {@link ViewDistanceController} picks the load radius between 1 and
+ * {@code --radius} from the measured tick times, like the game does from frame times.
+ */
+public final class HeadlessSimulation {
+
+    private static final float TICK_SECONDS = 1f / 60f;
+    private static final float SPRINT_SPEED = 20f;
+    private static final int TELEPORT_INTERVAL_TICKS = 120;
+    private static final int TELEPORT_RANGE = 4000;
+    private static final int EDIT_RANGE = 8;
+    private static final int MIN_ADAPTIVE_RADIUS = 1;
+
+    enum PathType {
+        SPRINT,
+        SPIRAL,
+        TELEPORT
+    }
+
+    private final int ticks;
+    private final int radius;
+    private final int editInterval;
+    private final int editBurst;
+    private final boolean paced;
+    private final long seed;
+    private final float frameTargetMillis;
+
+    private HeadlessSimulation(Map<String, String> options) {
+        this.ticks = Integer.parseInt(options.getOrDefault("ticks", "1800"));
+        this.radius = Integer.parseInt(options.getOrDefault("radius", "4"));
+        this.editInterval = Integer.parseInt(options.getOrDefault("edit-interval", "60"));
+        this.editBurst = Integer.parseInt(options.getOrDefault("edit-burst", "200"));
+        this.paced = !options.containsKey("unpaced");
+        this.seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        this.frameTargetMillis = Float.parseFloat(options.getOrDefault("frame-target-ms", "0"));
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = parseOptions(args);
+
+        List<PathType> paths = new ArrayList<>();
+        String path = options.getOrDefault("path", "all");
+        if (path.equals("all")) {
+            paths.addAll(List.of(PathType.values()));
+        } else {
+            paths.add(PathType.valueOf(path.toUpperCase(Locale.ROOT)));
+        }
+
+        NativeLibraryLoader.loadNativeLibrary("bulletjme", true);
+
+        HeadlessSimulation simulation = new HeadlessSimulation(options);
+        double worstP99 = 0;
+        for (PathType type : paths) {
+            Report report = simulation.run(type);
+            System.out.println(report);
+            worstP99 = Math.max(worstP99, report.p99Millis);
+        }
+
+        String limit = options.get("max-p99-ms");
+        if (limit != null && worstP99 > Double.parseDouble(limit)) {
+            System.out.printf(Locale.ROOT, "FAIL: tick p99 %.2f ms exceeds %s ms%n", worstP99, limit);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    private Report run(PathType type) {
+        Node root = new Node("root");
+        PhysicsSpace physicsSpace = new PhysicsSpace();
+        World world = new World(root, new DesktopAssetManager(true), physicsSpace);
+
+        PhysicsCharacter player = new PhysicsCharacter(new CapsuleCollisionShape(0.5f, 1.8f, 1), 0.2f);
+        physicsSpace.add(player);
+        world.addPhysicsAnchor(player);
+
+        Random random = new Random(seed);
+        Vector3f position = new Vector3f();
+        pathPosition(type, 0, random, position);
+        world.loadChunksNow(position.x, position.z, radius);
+
+        MetricsRegistry registry = new MetricsRegistry();
+        Timer tickTime = registry.timer("tick");
+        Timer editTime = registry.timer("editBurst");
+
+        ViewDistanceController viewDistance = frameTargetMillis > 0f
+                ? new ViewDistanceController(MIN_ADAPTIVE_RADIUS, radius, radius, frameTargetMillis) : null;
+        int minRadius = radius;
+        long lastTickNanos = 0;
+        long lastTickStart = 0;
+        long chunkUpdateNanos = 0;
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = allocatedBytes(threads);
+        long chunksBefore = world.getIntegratedChunkCount();
+        long start = System.nanoTime();
+        long nextTick = start;
+
+        for (int tick = 1; tick <= ticks; tick++) {
+            long tickStart = System.nanoTime();
+
+            pathPosition(type, tick, random, position);
+            position.y = world.getTerrainHeightAt(position.x, position.z) + 2f;
+            player.warp(position);
+
+            if (editInterval > 0 && tick % editInterval == 0) {
+                long editStart = System.nanoTime();
+                applyEditBurst(world, position, random);
+                editTime.recordSince(editStart);
+            }
+
+            int viewRadius = radius;
+            if (viewDistance != null && tick > 1) {
+                viewRadius = viewDistance.update((tickStart - lastTickStart) * 1e-9f, lastTickNanos * 1e-9f,
+                        chunkUpdateNanos * 1e-9f, world.getPendingChunkCount());
+                world.setChunkWorkScale(viewDistance.getChunkWorkScale());
+                minRadius = Math.min(minRadius, viewRadius);
+            }
+            long chunkUpdateStart = System.nanoTime();
+            world.updateVisibleChunks(position.x, position.z, viewRadius);
+            chunkUpdateNanos = System.nanoTime() - chunkUpdateStart;
+            world.cullHiddenSections(position.x, position.y + 1.6f, position.z);
+            world.update(TICK_SECONDS);
+            physicsSpace.update(TICK_SECONDS);
+
+            tickTime.recordSince(tickStart);
+            lastTickNanos = System.nanoTime() - tickStart;
+            lastTickStart = tickStart;
+
+            if (paced) {
+                nextTick += (long) (TICK_SECONDS * 1e9);
+                long wait = nextTick - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Report report = new Report(type, ticks, seconds,
+                (world.getIntegratedChunkCount() - chunksBefore) / seconds,
+                (allocatedBytes(threads) - allocatedBefore) / seconds / (1 << 20),
+                tickTime, editTime,
+                world.getChunks().size(), world.getPendingChunkCount(),
+                world.getVisibilityGraph().getVisibleCount(),
+                minRadius, viewDistance != null ? viewDistance.getRadius() : radius);
+
+        world.shutdown();
+        return report;
+    }
+
+    /**
+     * Player position after {@code tick} ticks; y is filled in by the caller.
+     */
+    private static void pathPosition(PathType type, int tick, Random random, Vector3f store) {
+        float t = tick * TICK_SECONDS;
+        switch (type) {
+            case SPRINT:
+                store.set(t * SPRINT_SPEED, 0f, 0.5f);
+                break;
+            case SPIRAL: {
+                // Archimedean spiral r = a * angle walked at roughly constant speed
+                float a = Chunk.SIZE_X / FastMath.TWO_PI;
+                float angle = FastMath.sqrt(2f * SPRINT_SPEED * t / a);
+                float r = a * angle;
+                store.set(r * FastMath.cos(angle), 0f, r * FastMath.sin(angle));
+                break;
+            }
+            default:
+                if (tick % TELEPORT_INTERVAL_TICKS == 0) {
+                    store.set(random.nextInt(2 * TELEPORT_RANGE) - TELEPORT_RANGE, 0f,
+                            random.nextInt(2 * TELEPORT_RANGE) - TELEPORT_RANGE);
+                }
+                break;
+        }
+    }
+
+    private void applyEditBurst(World world, Vector3f center, Random random) {
+        int cx = Math.round(center.x);
+        int cz = Math.round(center.z);
+        for (int i = 0; i < editBurst; i++) {
+            int x = cx + random.nextInt(2 * EDIT_RANGE + 1) - EDIT_RANGE;
+            int z = cz + random.nextInt(2 * EDIT_RANGE + 1) - EDIT_RANGE;
+            // around the surface, where the player edits
+            int y = world.getTerrainHeightAt(x, z) + random.nextInt(2 * EDIT_RANGE + 1) - EDIT_RANGE;
+            if (y < 0 || y >= Chunk.SIZE_Y) {
+                continue;
+            }
+            world.setBlockType(x, y, z, random.nextBoolean() ? BlockType.STONE : BlockType.AIR);
+        }
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        long[] allocated = ((com.sun.management.ThreadMXBean) threads)
+                .getThreadAllocatedBytes(threads.getAllThreadIds());
+        long total = 0;
+        for (long bytes : allocated) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    private static final class Report {
+        final PathType path;
+        final int ticks;
+        final double seconds;
+        final double chunksPerSecond;
+        final double allocationMbPerSecond;
+        final Timer tickTime;
+        final Timer editTime;
+        final int loadedChunks;
+        final int pendingChunks;
+        final int visibleSections;
+        final int minRadius;
+        final int finalRadius;
+        final double p99Millis;
+
+        Report(PathType path, int ticks, double seconds, double chunksPerSecond, double allocationMbPerSecond,
+               Timer tickTime, Timer editTime, int loadedChunks, int pendingChunks, int visibleSections,
+               int minRadius, int finalRadius) {
+            this.path = path;
+            this.ticks = ticks;
+            this.seconds = seconds;
+            this.chunksPerSecond = chunksPerSecond;
+            this.allocationMbPerSecond = allocationMbPerSecond;
+            this.tickTime = tickTime;
+            this.editTime = editTime;
+            this.loadedChunks = loadedChunks;
+            this.pendingChunks = pendingChunks;
+            this.visibleSections = visibleSections;
+            this.minRadius = minRadius;
+            this.finalRadius = finalRadius;
+            this.p99Millis = tickTime.getPercentile(99) * 1e-6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%-8s ticks %d in %.1f s | tick ms p50 %.2f p95 %.2f p99 %.2f max %.2f"
+                            + " | edit burst ms p99 %.2f | chunks/s %.1f | alloc %.1f MB/s"
+                            + " | loaded %d pending %d | visible sections %d/%d | radius min %d end %d",
+                    path.name().toLowerCase(Locale.ROOT), ticks, seconds,
+                    tickTime.getPercentile(50) * 1e-6, tickTime.getPercentile(95) * 1e-6,
+                    p99Millis, tickTime.getMax() * 1e-6,
+                    editTime.getPercentile(99) * 1e-6,
+                    chunksPerSecond, allocationMbPerSecond, loadedChunks, pendingChunks,
+                    visibleSections, loadedChunks * Chunk.SECTION_COUNT, minRadius, finalRadius);
+        }
+    }
+}
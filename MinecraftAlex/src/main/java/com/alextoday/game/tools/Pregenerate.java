@@ -0,0 +1,185 @@
+package com.alextoday.game.tools;
+
+import com.alextoday.game.world.Chunk;
+import com.alextoday.game.world.PerlinNoise;
+import com.alextoday.game.world.World;
+import com.alextoday.game.world.storage.PregenCache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates a square of chunks ahead of time into a {@link PregenCache} file
+ * that the game loads instead of running the terrain generator.
+ *
+ * <pre>
+ * java -cp MinecraftAlex.jar:... com.alextoday.game.tools.Pregenerate \
+ *     --seed=12345 --radius=32 --center-x=0 --center-z=0 --out=world/pregen.bin \
+ *     --threads=8 --scaling
+ * </pre>
+ *
+ * Chunks are generated, encoded and compressed on a fork-join pool, splitting
+ * the square until each task holds a few chunks; the file is appended in
+ * completion order. Prints chunks per second and the file size. With
+ * {@code --scaling} it first generates the same square without writing at 1,
+ * 2, 4... threads up to the core count and prints the speedup and the scaling
+ * efficiency (speedup / threads) of each.
+ */
+public final class Pregenerate {
+
+    // chunks a task generates itself instead of splitting further
+    private static final int CHUNKS_PER_TASK = 4;
+    private static final int WARM_UP_CHUNKS = 256;
+
+    private final long seed;
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int side;
+    private final PerlinNoise noise;
+
+    private Pregenerate(long seed, int minChunkX, int minChunkZ, int side) {
+        this.seed = seed;
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        this.side = side;
+        this.noise = new PerlinNoise(seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+
+        long seed = Long.parseLong(options.getOrDefault("seed", String.valueOf(World.DEFAULT_SEED)));
+        int radius = Integer.parseInt(options.getOrDefault("radius", "32"));
+        int centerX = Integer.parseInt(options.getOrDefault("center-x", "0"));
+        int centerZ = Integer.parseInt(options.getOrDefault("center-z", "0"));
+        Path out = Paths.get(options.getOrDefault("out", "pregen.bin"));
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(cores)));
+        if (radius < 0 || threads < 1) {
+            throw new IllegalArgumentException("Need --radius >= 0 and --threads >= 1");
+        }
+
+        Pregenerate pregenerate = new Pregenerate(seed, centerX - radius, centerZ - radius, 2 * radius + 1);
+        System.out.printf(Locale.ROOT, "%d chunks (%dx%d) around %d,%d, seed %d, world height %d, %d cores%n",
+                pregenerate.chunkCount(), pregenerate.side, pregenerate.side, centerX, centerZ, seed,
+                Chunk.SIZE_Y, cores);
+
+        if (options.containsKey("scaling")) {
+            pregenerate.measureScaling(cores);
+        }
+        pregenerate.writeFile(out, threads);
+    }
+
+    private int chunkCount() {
+        return side * side;
+    }
+
+    private void measureScaling(int cores) {
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(cores);
+
+        // compile the generator before the first timed run
+        run(1, Math.min(WARM_UP_CHUNKS, chunkCount()), null, new AtomicLong());
+
+        double baseRate = 0;
+        for (int threads : threadCounts) {
+            long start = System.nanoTime();
+            run(threads, chunkCount(), null, new AtomicLong());
+            double rate = chunkCount() / ((System.nanoTime() - start) / 1e9);
+            if (threads == 1) {
+                baseRate = rate;
+            }
+            double speedup = rate / baseRate;
+            System.out.printf(Locale.ROOT, "threads %3d | chunks/s %8.1f | speedup %5.2f | efficiency %3.0f%%%n",
+                    threads, rate, speedup, 100 * speedup / threads);
+        }
+    }
+
+    private void writeFile(Path out, int threads) throws IOException {
+        AtomicLong payloadBytes = new AtomicLong();
+        long start = System.nanoTime();
+        long fileBytes;
+        try (PregenCache.Writer writer = new PregenCache.Writer(out, seed, minChunkX, minChunkZ, side)) {
+            run(threads, chunkCount(), writer, payloadBytes);
+            fileBytes = writer.size();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT,
+                "wrote %s | threads %d | %.2f s | chunks/s %.1f | %.1f MB, %d bytes/chunk%n",
+                out, threads, seconds, chunkCount() / seconds, fileBytes / 1048576.0,
+                payloadBytes.get() / chunkCount());
+    }
+
+    /**
+     * Generates the first {@code count} chunks of the square on {@code threads}
+     * threads, writing them to {@code writer} unless it is {@code null}.
+     */
+    private void run(int threads, int count, PregenCache.Writer writer, AtomicLong payloadBytes) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new GenerateTask(0, count, writer, payloadBytes));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private final class GenerateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final PregenCache.Writer writer;
+        private final AtomicLong payloadBytes;
+
+        GenerateTask(int from, int to, PregenCache.Writer writer, AtomicLong payloadBytes) {
+            this.from = from;
+            this.to = to;
+            this.writer = writer;
+            this.payloadBytes = payloadBytes;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNKS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new GenerateTask(from, mid, writer, payloadBytes),
+                        new GenerateTask(mid, to, writer, payloadBytes));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                int chunkX = minChunkX + i % side;
+                int chunkZ = minChunkZ + i / side;
+                byte[] payload = PregenCache.encode(World.generateChunk(noise, chunkX, chunkZ));
+                payloadBytes.addAndGet(payload.length);
+                if (writer != null) {
+                    try {
+                        writer.write(chunkX, chunkZ, payload);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+    }
+}
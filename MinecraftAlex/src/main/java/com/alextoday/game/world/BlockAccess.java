@@ -0,0 +1,18 @@
+package com.alextoday.game.world;
+
+/**
+ * Read-only access to blocks by world coordinates.
+ * Unknown or unloaded positions are reported as {@link BlockType#AIR}.
+ */
+public interface BlockAccess {
+
+    BlockType getBlockType(int x, int y, int z);
+
+    /**
+     * Light as {@code sky << 4 | block}, see {@link LightStorage#getPacked}.
+     * Unknown positions are in open sky.
+     */
+    default int getLight(int x, int y, int z) {
+        return LightStorage.FULL_SKY;
+    }
+}
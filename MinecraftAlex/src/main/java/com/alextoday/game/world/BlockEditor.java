@@ -0,0 +1,383 @@
+package com.alextoday.game.world;
+
+import com.alextoday.game.metrics.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Changes many blocks at once. Unlike {@link World#setBlockType}, which
+ * updates light and water after every block, an operation writes straight
+ * into chunk storage, remembers which blocks it changed and updates light,
+ * water and dirty sections once at the end; every touched chunk is then
+ * rebuilt once in the next {@link World#update(float)}.
+ *
+ * Every operation can be undone. Its previous blocks are kept per chunk
+ * section as a 12-bit index within the section plus one byte for type and
+ * flow level per changed block,
+ * within {@link #setMaxUndoBytes}. Blocks in chunks that are not loaded are
+ * skipped, by operations and by undo alike. Render thread only.
+ */
+public class BlockEditor {
+
+    private static final BlockType[] TYPES = BlockType.values();
+
+    static {
+        // the undo byte holds the type in the low and the flow level in the high 4 bits
+        if (TYPES.length > 16) {
+            throw new IllegalStateException("Too many block types for undo records");
+        }
+    }
+
+    // above this many changed blocks per chunk of the relight area relighting
+    // it from scratch beats incremental updates
+    private static final int RELIGHT_BLOCKS_PER_CHUNK = 32;
+
+    private final World world;
+    private final LightEngine lightEngine;
+    private final FluidSimulator fluids;
+
+    private final ArrayDeque<SectionChanges[]> undoRecords = new ArrayDeque<>();
+    private long undoBytes;
+    private long maxUndoBytes = 16L << 20;
+
+    // changes of the running operation, per chunk section
+    private final LongObjectMap<SectionChanges> touched = new LongObjectMap<>(16);
+    private final List<SectionChanges> touchedList = new ArrayList<>();
+    private Chunk cached;
+    private int changed;
+
+    /**
+     * Previous blocks of one chunk section, in the order they were changed.
+     */
+    private static final class SectionChanges {
+        final int chunkX;
+        final int chunkZ;
+        final int section;
+        // only while the operation runs, undo records do not keep chunks alive
+        Chunk chunk;
+        short[] indices = new short[64];
+        byte[] previous = new byte[64];
+        int count;
+
+        SectionChanges(Chunk chunk, int section) {
+            this.chunkX = chunk.getChunkX();
+            this.chunkZ = chunk.getChunkZ();
+            this.section = section;
+            this.chunk = chunk;
+        }
+
+        void add(int index, BlockType type, int level) {
+            if (count == indices.length) {
+                indices = Arrays.copyOf(indices, count * 2);
+                previous = Arrays.copyOf(previous, count * 2);
+            }
+            indices[count] = (short) index;
+            previous[count] = (byte) (type.ordinal() | level << 4);
+            count++;
+        }
+
+        void trim() {
+            indices = Arrays.copyOf(indices, count);
+            previous = Arrays.copyOf(previous, count);
+        }
+
+        long estimateMemoryBytes() {
+            return 48 + 3L * count;
+        }
+    }
+
+    BlockEditor(World world, LightEngine lightEngine, FluidSimulator fluids) {
+        this.world = world;
+        this.lightEngine = lightEngine;
+        this.fluids = fluids;
+    }
+
+    /**
+     * Memory for undo records; the oldest are dropped beyond it. An operation
+     * larger than the whole budget cannot be undone.
+     */
+    public void setMaxUndoBytes(long maxBytes) {
+        this.maxUndoBytes = Math.max(0, maxBytes);
+        trimUndo();
+    }
+
+    public int getUndoDepth() {
+        return undoRecords.size();
+    }
+
+    public long getUndoBytes() {
+        return undoBytes;
+    }
+
+    /**
+     * Sets every block in the box between both corners, inclusive.
+     *
+     * @return the number of blocks changed
+     */
+    public int fillBox(int x0, int y0, int z0, int x1, int y1, int z1, BlockType type) {
+        int minY = Math.max(0, Math.min(y0, y1));
+        int maxY = Math.min(Chunk.SIZE_Y - 1, Math.max(y0, y1));
+        for (int x = Math.min(x0, x1); x <= Math.max(x0, x1); x++) {
+            for (int z = Math.min(z0, z1); z <= Math.max(z0, z1); z++) {
+                for (int y = minY; y <= maxY; y++) {
+                    set(x, y, z, type);
+                }
+            }
+        }
+        return finish(true);
+    }
+
+    /**
+     * Sets the one block thick walls, floor and ceiling of the box between
+     * both corners and leaves its inside alone.
+     */
+    public int hollowBox(int x0, int y0, int z0, int x1, int y1, int z1, BlockType type) {
+        int minX = Math.min(x0, x1);
+        int maxX = Math.max(x0, x1);
+        int minY = Math.min(y0, y1);
+        int maxY = Math.max(y0, y1);
+        int minZ = Math.min(z0, z1);
+        int maxZ = Math.max(z0, z1);
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                boolean wall = x == minX || x == maxX || z == minZ || z == maxZ;
+                for (int y = Math.max(0, minY); y <= Math.min(Chunk.SIZE_Y - 1, maxY); y++) {
+                    if (wall || y == minY || y == maxY) {
+                        set(x, y, z, type);
+                    }
+                }
+            }
+        }
+        return finish(true);
+    }
+
+    /**
+     * Sets every block whose center lies within {@code radius} of the center
+     * of block {@code (cx, cy, cz)}.
+     */
+    public int fillSphere(int cx, int cy, int cz, float radius, BlockType type) {
+        int r = (int) Math.floor(radius);
+        float radiusSq = radius * radius;
+        for (int dx = -r; dx <= r; dx++) {
+            for (int dz = -r; dz <= r; dz++) {
+                for (int dy = -r; dy <= r; dy++) {
+                    if (dx * dx + dy * dy + dz * dz <= radiusSq) {
+                        set(cx + dx, cy + dy, cz + dz, type);
+                    }
+                }
+            }
+        }
+        return finish(true);
+    }
+
+    /**
+     * Turns every {@code from} block in the box between both corners into {@code to}.
+     */
+    public int replace(int x0, int y0, int z0, int x1, int y1, int z1, BlockType from, BlockType to) {
+        int minY = Math.max(0, Math.min(y0, y1));
+        int maxY = Math.min(Chunk.SIZE_Y - 1, Math.max(y0, y1));
+        for (int x = Math.min(x0, x1); x <= Math.max(x0, x1); x++) {
+            for (int z = Math.min(z0, z1); z <= Math.max(z0, z1); z++) {
+                for (int y = minY; y <= maxY; y++) {
+                    if (world.getBlockType(x, y, z) == from) {
+                        set(x, y, z, to);
+                    }
+                }
+            }
+        }
+        return finish(true);
+    }
+
+    /**
+     * Copies the box between both corners; blocks outside the world or in
+     * chunks that are not loaded read as air.
+     */
+    public BlockVolume copy(int x0, int y0, int z0, int x1, int y1, int z1) {
+        int minX = Math.min(x0, x1);
+        int minY = Math.min(y0, y1);
+        int minZ = Math.min(z0, z1);
+        BlockVolume volume = new BlockVolume(
+                Math.max(x0, x1) - minX + 1, Math.max(y0, y1) - minY + 1, Math.max(z0, z1) - minZ + 1);
+        for (int y = 0; y < volume.getSizeY(); y++) {
+            for (int z = 0; z < volume.getSizeZ(); z++) {
+                for (int x = 0; x < volume.getSizeX(); x++) {
+                    volume.set(x, y, z, world.getBlockType(minX + x, minY + y, minZ + z));
+                }
+            }
+        }
+        return volume;
+    }
+
+    /**
+     * Writes a copied volume with its minimum corner at {@code (x, y, z)}.
+     *
+     * @param skipAir leave the world alone where the volume holds air
+     */
+    public int paste(BlockVolume volume, int x, int y, int z, boolean skipAir) {
+        for (int vy = 0; vy < volume.getSizeY(); vy++) {
+            for (int vz = 0; vz < volume.getSizeZ(); vz++) {
+                for (int vx = 0; vx < volume.getSizeX(); vx++) {
+                    BlockType type = volume.get(vx, vy, vz);
+                    if (!skipAir || type != BlockType.AIR) {
+                        set(x + vx, y + vy, z + vz, type);
+                    }
+                }
+            }
+        }
+        return finish(true);
+    }
+
+    /**
+     * Restores the blocks changed by the latest operation not undone yet.
+     *
+     * @return {@code false} if there was nothing to undo
+     */
+    public boolean undo() {
+        SectionChanges[] record = undoRecords.pollLast();
+        if (record == null) {
+            return false;
+        }
+        for (SectionChanges changes : record) {
+            undoBytes -= changes.estimateMemoryBytes();
+        }
+
+        for (int c = record.length - 1; c >= 0; c--) {
+            SectionChanges changes = record[c];
+            // the chunk may have been unloaded and loaded again since
+            Chunk chunk = world.getLoadedChunk(changes.chunkX, changes.chunkZ);
+            if (chunk == null) {
+                continue;
+            }
+            for (int i = changes.count - 1; i >= 0; i--) {
+                int index = changes.indices[i];
+                int lx = index % Chunk.SIZE_X;
+                int lz = (index / Chunk.SIZE_X) % Chunk.SIZE_Z;
+                int y = changes.section * Chunk.SECTION_HEIGHT + index / (Chunk.SIZE_X * Chunk.SIZE_Z);
+                int previous = changes.previous[i];
+                setLocal(chunk, lx, y, lz, TYPES[previous & 0xF]);
+                chunk.setFluidLevel(lx, y, lz, previous >>> 4 & 0xF);
+            }
+        }
+        finish(false);
+        return true;
+    }
+
+    public void clearUndo() {
+        undoRecords.clear();
+        undoBytes = 0;
+    }
+
+    // chunk x and z take 26 bits each, the section 12 bits
+    private static long sectionKey(int chunkX, int chunkZ, int section) {
+        return ((long) chunkX << 38) | (((long) chunkZ & 0x3FFFFFF) << 12) | section;
+    }
+
+    private void set(int x, int y, int z, BlockType type) {
+        if (y < 0 || y >= Chunk.SIZE_Y) {
+            return;
+        }
+        int cx = Math.floorDiv(x, Chunk.SIZE_X);
+        int cz = Math.floorDiv(z, Chunk.SIZE_Z);
+        Chunk chunk = cached;
+        if (chunk == null || chunk.getChunkX() != cx || chunk.getChunkZ() != cz) {
+            chunk = world.getLoadedChunk(cx, cz);
+            if (chunk == null) {
+                return;
+            }
+            cached = chunk;
+        }
+        setLocal(chunk, Math.floorMod(x, Chunk.SIZE_X), y, Math.floorMod(z, Chunk.SIZE_Z), type);
+    }
+
+    private void setLocal(Chunk chunk, int lx, int y, int lz, BlockType type) {
+        BlockType old = chunk.getBlock(lx, y, lz);
+        if (old == type) {
+            return;
+        }
+        int section = y / Chunk.SECTION_HEIGHT;
+        long key = sectionKey(chunk.getChunkX(), chunk.getChunkZ(), section);
+        SectionChanges changes = touched.get(key);
+        if (changes == null) {
+            changes = new SectionChanges(chunk, section);
+            touched.put(key, changes);
+            touchedList.add(changes);
+        }
+        changes.add(Chunk.index(lx, y, lz) & (Chunk.SECTION_VOLUME - 1), old, chunk.getFluidLevel(lx, y, lz));
+        chunk.setBlock(lx, y, lz, type);
+        changed++;
+    }
+
+    /**
+     * Brings light, water and dirty sections up to date with everything the
+     * operation changed and keeps its undo record.
+     */
+    private int finish(boolean recordUndo) {
+        int count = changed;
+        LongObjectMap<Chunk> seen = new LongObjectMap<>(touchedList.size());
+        List<Chunk> chunks = new ArrayList<>();
+        for (int c = 0; c < touchedList.size(); c++) {
+            Chunk chunk = touchedList.get(c).chunk;
+            long key = Chunk.key(chunk.getChunkX(), chunk.getChunkZ());
+            if (seen.get(key) == null) {
+                seen.put(key, chunk);
+                chunks.add(chunk);
+                chunk.markEdited();
+            }
+        }
+        // relighting costs about the same per chunk however few blocks changed
+        List<Chunk> area = world.relightArea(chunks);
+        boolean relight = count > RELIGHT_BLOCKS_PER_CHUNK * area.size();
+
+        for (int c = 0; c < touchedList.size(); c++) {
+            SectionChanges changes = touchedList.get(c);
+            Chunk chunk = changes.chunk;
+            int baseX = chunk.getChunkX() * Chunk.SIZE_X;
+            int baseZ = chunk.getChunkZ() * Chunk.SIZE_Z;
+            for (int i = 0; i < changes.count; i++) {
+                int index = changes.indices[i];
+                int lx = index % Chunk.SIZE_X;
+                int lz = (index / Chunk.SIZE_X) % Chunk.SIZE_Z;
+                int y = changes.section * Chunk.SECTION_HEIGHT + index / (Chunk.SIZE_X * Chunk.SIZE_Z);
+                world.markBlockDirty(chunk, lx, y, lz);
+                if (!relight) {
+                    lightEngine.onBlockChanged(baseX + lx, y, baseZ + lz);
+                }
+                fluids.onBlockChanged(baseX + lx, y, baseZ + lz);
+            }
+        }
+        if (relight) {
+            world.relight(area);
+        }
+        if (Metrics.ENABLED) {
+            Metrics.BLOCK_EDITS.add(count);
+        }
+
+        if (recordUndo && count > 0) {
+            SectionChanges[] record = touchedList.toArray(new SectionChanges[0]);
+            for (SectionChanges changes : record) {
+                changes.chunk = null;
+                changes.trim();
+                undoBytes += changes.estimateMemoryBytes();
+            }
+            undoRecords.addLast(record);
+            trimUndo();
+        }
+
+        touched.clear();
+        touchedList.clear();
+        cached = null;
+        changed = 0;
+        return count;
+    }
+
+    private void trimUndo() {
+        while (undoBytes > maxUndoBytes && !undoRecords.isEmpty()) {
+            for (SectionChanges changes : undoRecords.pollFirst()) {
+                undoBytes -= changes.estimateMemoryBytes();
+            }
+        }
+    }
+}
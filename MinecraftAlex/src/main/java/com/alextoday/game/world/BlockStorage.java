@@ -0,0 +1,296 @@
+package com.alextoday.game.world;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Flat, index-addressed block storage backed by a palette.
+ *
+ * Each entry stores an index into the palette using 1, 2, 4 or 8 bits packed
+ * into a {@code long[]}, so an entry never crosses a word boundary.
+ * While the storage holds a single block type no per-block data is allocated.
+ */
+public class BlockStorage {
+
+    private static final int MAX_BITS = 8;
+
+    private final int size;
+
+    private BlockType[] palette;
+    private int paletteSize;
+
+    // 0 while in single-value mode
+    private int bits;
+    private long[] data;
+
+    public BlockStorage(int size, BlockType fill) {
+        this.size = size;
+        this.palette = new BlockType[]{fill};
+        this.paletteSize = 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public BlockType get(int index) {
+        if (bits == 0) {
+            return palette[0];
+        }
+        int bitIndex = index * bits;
+        long word = data[bitIndex >>> 6];
+        int id = (int) (word >>> (bitIndex & 63)) & ((1 << bits) - 1);
+        return palette[id];
+    }
+
+    public void set(int index, BlockType type) {
+        if (bits == 0 && palette[0] == type) {
+            return;
+        }
+
+        int id = paletteIndexOf(type);
+        if (id < 0) {
+            id = addToPalette(type);
+        }
+        if (bits == 0) {
+            // the palette now holds two types, leave single-value mode
+            resize(1);
+        }
+
+        write(index, id);
+    }
+
+    /**
+     * Whether every block has the same type. Only reliable right after
+     * {@link #compact()}, otherwise unused palette entries are counted.
+     */
+    public boolean isSingleValue() {
+        return bits == 0;
+    }
+
+    public BlockType getSingleValue() {
+        return bits == 0 ? palette[0] : null;
+    }
+
+    /**
+     * Independent copy with the same palette and entries.
+     */
+    public BlockStorage copy() {
+        BlockStorage copy = new BlockStorage(size, palette[0]);
+        copy.palette = palette.clone();
+        copy.paletteSize = paletteSize;
+        copy.bits = bits;
+        copy.data = data == null ? null : data.clone();
+        return copy;
+    }
+
+    public int getPaletteSize() {
+        return paletteSize;
+    }
+
+    public int getBitsPerEntry() {
+        return bits;
+    }
+
+    /**
+     * Drops palette entries that are no longer used and shrinks the entry width,
+     * falling back to single-value mode when only one type is left.
+     */
+    public void compact() {
+        if (bits == 0) {
+            return;
+        }
+
+        int[] counts = new int[paletteSize];
+        for (int i = 0; i < size; i++) {
+            counts[read(i)]++;
+        }
+
+        int[] remap = new int[paletteSize];
+        BlockType[] newPalette = new BlockType[paletteSize];
+        int used = 0;
+        for (int id = 0; id < paletteSize; id++) {
+            if (counts[id] > 0) {
+                remap[id] = used;
+                newPalette[used++] = palette[id];
+            }
+        }
+
+        if (used == 1) {
+            palette = new BlockType[]{newPalette[0]};
+            paletteSize = 1;
+            bits = 0;
+            data = null;
+            return;
+        }
+
+        int newBits = bitsFor(used);
+        if (used == paletteSize && newBits == bits) {
+            return;
+        }
+
+        long[] oldData = data;
+        int oldBits = bits;
+
+        palette = newPalette;
+        paletteSize = used;
+        bits = newBits;
+        data = new long[wordsFor(newBits)];
+        for (int i = 0; i < size; i++) {
+            write(i, remap[read(oldData, oldBits, i)]);
+        }
+    }
+
+    /**
+     * Approximate heap size of this storage including the palette and packed data.
+     */
+    public long estimateMemoryBytes() {
+        // object header + fields
+        long bytes = 40;
+        // palette array of references
+        bytes += 16 + 4L * palette.length;
+        if (data != null) {
+            bytes += 16 + 8L * data.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the palette and the packed entries. Call {@link #compact()} first
+     * to keep the output small.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(paletteSize);
+        for (int i = 0; i < paletteSize; i++) {
+            out.writeByte(palette[i].ordinal());
+        }
+        out.writeByte(bits);
+        if (bits > 0) {
+            for (long word : data) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    /**
+     * Reads storage written by {@link #write(DataOutput)}. Entry widths the
+     * writer never produces and entries outside the palette are rejected, so
+     * corrupt data fails here instead of on a later {@link #get(int)}.
+     */
+    public static BlockStorage read(DataInput in, int size) throws IOException {
+        BlockType[] types = BlockType.values();
+
+        int paletteSize = in.readUnsignedByte();
+        if (paletteSize == 0) {
+            throw new IOException("Empty block palette");
+        }
+        BlockType[] palette = new BlockType[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            int ordinal = in.readUnsignedByte();
+            if (ordinal >= types.length) {
+                throw new IOException("Unknown block type " + ordinal);
+            }
+            palette[i] = types[ordinal];
+        }
+
+        int bits = in.readUnsignedByte();
+        // 1, 2, 4 or 8 bits, the widths that divide a word
+        boolean validWidth = bits <= MAX_BITS && (bits & (bits - 1)) == 0;
+        if (!validWidth || (bits == 0) != (paletteSize == 1) || (bits > 0 && (1 << bits) < paletteSize)) {
+            throw new IOException("Invalid entry width " + bits + " for palette of " + paletteSize);
+        }
+
+        BlockStorage storage = new BlockStorage(size, palette[0]);
+        storage.palette = palette;
+        storage.paletteSize = paletteSize;
+        storage.bits = bits;
+        if (bits > 0) {
+            long[] data = new long[storage.wordsFor(bits)];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = in.readLong();
+            }
+            for (int i = 0; i < size; i++) {
+                int id = read(data, bits, i);
+                if (id >= paletteSize) {
+                    throw new IOException("Entry " + i + " refers to palette slot " + id + " of " + paletteSize);
+                }
+            }
+            storage.data = data;
+        }
+        return storage;
+    }
+
+    private int paletteIndexOf(BlockType type) {
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int addToPalette(BlockType type) {
+        if (paletteSize == palette.length) {
+            BlockType[] grown = new BlockType[Math.max(2, palette.length * 2)];
+            System.arraycopy(palette, 0, grown, 0, paletteSize);
+            palette = grown;
+        }
+        palette[paletteSize] = type;
+        int id = paletteSize++;
+
+        if (bits > 0 && paletteSize > (1 << bits)) {
+            resize(bitsFor(paletteSize));
+        }
+        return id;
+    }
+
+    private void resize(int newBits) {
+        if (newBits > MAX_BITS) {
+            throw new IllegalStateException("Palette too large: " + paletteSize);
+        }
+
+        long[] oldData = data;
+        int oldBits = bits;
+
+        bits = newBits;
+        data = new long[wordsFor(newBits)];
+
+        if (oldBits == 0) {
+            // every entry was palette[0], which is id 0: nothing to copy
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            write(i, read(oldData, oldBits, i));
+        }
+    }
+
+    private int read(int index) {
+        return read(data, bits, index);
+    }
+
+    private static int read(long[] words, int bits, int index) {
+        int bitIndex = index * bits;
+        return (int) (words[bitIndex >>> 6] >>> (bitIndex & 63)) & ((1 << bits) - 1);
+    }
+
+    private void write(int index, int id) {
+        int bitIndex = index * bits;
+        int word = bitIndex >>> 6;
+        int shift = bitIndex & 63;
+        long mask = ((1L << bits) - 1) << shift;
+        data[word] = (data[word] & ~mask) | ((long) id << shift);
+    }
+
+    private int wordsFor(int entryBits) {
+        return (size * entryBits + 63) >>> 6;
+    }
+
+    private static int bitsFor(int paletteEntries) {
+        int bits = 1;
+        while ((1 << bits) < paletteEntries) {
+            bits <<= 1;
+        }
+        return bits;
+    }
+}
@@ -7,17 +7,37 @@ public enum BlockType {
     GRASS(true, new ColorRGBA(0.3f, 0.8f, 0.3f, 1f)),
     DIRT(true, new ColorRGBA(0.59f, 0.29f, 0.0f, 1f)),
     STONE(true, ColorRGBA.Gray),
-    WATER(false, new ColorRGBA(0.2f, 0.4f, 1f, 0.7f));
+    WATER(false, new ColorRGBA(0.2f, 0.4f, 1f, 0.7f), 2, 0),
+    LAMP(true, new ColorRGBA(1f, 0.85f, 0.5f, 1f), LightStorage.MAX_LEVEL, LightStorage.MAX_LEVEL);
 
     private final boolean solid;
     public final ColorRGBA color;
+    private final int lightOpacity;
+    private final int lightEmission;
 
     BlockType(boolean solid, ColorRGBA color) {
+        this(solid, color, solid ? LightStorage.MAX_LEVEL : 0, 0);
+    }
+
+    BlockType(boolean solid, ColorRGBA color, int lightOpacity, int lightEmission) {
         this.solid = solid;
         this.color = color;
+        this.lightOpacity = lightOpacity;
+        this.lightEmission = lightEmission;
     }
 
     public boolean isSolid() {
         return solid;
     }
+
+    /**
+     * Light lost when passing through this block; {@link LightStorage#MAX_LEVEL} blocks it.
+     */
+    public int getLightOpacity() {
+        return lightOpacity;
+    }
+
+    public int getLightEmission() {
+        return lightEmission;
+    }
 }
@@ -0,0 +1,49 @@
+package com.alextoday.game.world;
+
+/**
+ * A box of blocks cut out of the world with {@link BlockEditor#copy}, one byte
+ * per block, indexed {@code (y * sizeZ + z) * sizeX + x} like chunk storage.
+ */
+public class BlockVolume {
+
+    private static final BlockType[] TYPES = BlockType.values();
+
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final byte[] blocks;
+
+    public BlockVolume(int sizeX, int sizeY, int sizeZ) {
+        if (sizeX <= 0 || sizeY <= 0 || sizeZ <= 0) {
+            throw new IllegalArgumentException("Empty volume " + sizeX + "x" + sizeY + "x" + sizeZ);
+        }
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.blocks = new byte[sizeX * sizeY * sizeZ];
+    }
+
+    private int index(int x, int y, int z) {
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
+    public BlockType get(int x, int y, int z) {
+        return TYPES[blocks[index(x, y, z)]];
+    }
+
+    public void set(int x, int y, int z, BlockType type) {
+        blocks[index(x, y, z)] = (byte) type.ordinal();
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getSizeZ() {
+        return sizeZ;
+    }
+}
@@ -1,45 +1,200 @@
 package com.alextoday.game.world;
 
-import com.jme3.bullet.control.RigidBodyControl;
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.collision.shapes.CompoundCollisionShape;
+import com.jme3.bullet.objects.PhysicsRigidBody;
 import com.jme3.material.Material;
+import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
 import com.jme3.scene.shape.Box;
 
 import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
 
 public class Chunk {
 
     public static final int SIZE_X = 16;
-    public static final int SIZE_Y = 16;
     public static final int SIZE_Z = 16;
 
+    // a chunk is a column of 16x16x16 sections: block storage, light and meshes are kept per section
+    public static final int SECTION_HEIGHT = 16;
+
+    /**
+     * World height, a multiple of {@value #SECTION_HEIGHT} up to 512; set with
+     * {@code -Dminecraft.worldHeight}, 256 by default.
+     */
+    public static final int SIZE_Y = worldHeight();
+
     private final int chunkX;
     private final int chunkZ;
 
-    private final BlockType[][][] blocks;
+    public static final int VOLUME = SIZE_X * SIZE_Y * SIZE_Z;
+
+    public static final int SECTION_COUNT = SIZE_Y / SECTION_HEIGHT;
+    public static final int ALL_SECTIONS = SECTION_COUNT == 32 ? -1 : (1 << SECTION_COUNT) - 1;
+
+    // blocks per section; a block index shifted right by SECTION_SHIFT is its section
+    public static final int SECTION_VOLUME = SIZE_X * SIZE_Z * SECTION_HEIGHT;
+    static final int SECTION_SHIFT = Integer.numberOfTrailingZeros(SECTION_VOLUME);
+
+    // neighbor offsets in the order west (-x), east (+x), north (-z), south (+z)
+    static final int[] NEIGHBOR_DX = {-1, 1, 0, 0};
+    static final int[] NEIGHBOR_DZ = {0, 0, -1, 1};
+
+    // each section holds a single type without per-block data until it is mixed
+    private final BlockStorage[] sections;
+    // held for writing while block data changes once the chunk is published, see readBlock
+    private final StampedLock lock = new StampedLock();
+    private final LightStorage light = new LightStorage(SECTION_COUNT);
     private final Node node;
 
-    private RigidBodyControl terrainBody;
+    // per HeightmapType: y of the highest matching block + 1 per column, 0 if none
+    private final short[][] heightmaps = new short[HeightmapType.values().length][SIZE_X * SIZE_Z];
+
+    private CollisionShape collisionShape;
+    private PhysicsRigidBody terrainBody;
+
+    private final Chunk[] neighbors = new Chunk[4];
+
+    private final MeshData[] sectionOpaque = new MeshData[SECTION_COUNT];
+    private final MeshData[] sectionWater = new MeshData[SECTION_COUNT];
+    private int dirtySections;
+    // bumped whenever sections are remeshed in place, see copyForMeshing
+    private int meshVersion;
+    // bit per side as in NEIGHBOR_DX: neighbors whose blocks the meshes were built against
+    private int meshedNeighbors;
+    // sections meshed against a missing neighbor that has loaded since
+    private int staleBorderSections;
+    // per side as in NEIGHBOR_DX: bumped whenever a block or light level on that face changes
+    private final int[] borderVersions = new int[4];
+    // a solid block changed since the collision shape was built
+    private boolean collisionDirty;
+
+    // per section, see SectionConnectivity; recomputed for sections in connectivityDirty
+    private final short[] connectivity = new short[SECTION_COUNT];
+    private int connectivityDirty = ALL_SECTIONS;
+    // sections reached by VisibilityGraph walk number visibilityPass
+    private int visibilityPass;
+    private int reachedSections;
+    // sections currently drawn, the rest is culled
+    private int shownSections = ALL_SECTIONS;
+
+    // flow level per block for water, see FluidSimulator; allocated per section once it has flowing water
+    private final byte[][] fluidLevels = new byte[SECTION_COUNT][];
+
+    // differs from what the generator produces
+    private boolean edited;
+    // has edits that are not written to region storage yet
+    private boolean unsaved;
 
     public Chunk(int chunkX, int chunkZ) {
+        this(chunkX, chunkZ, emptySections());
+    }
+
+    /**
+     * Creates a chunk around existing block data, e.g. loaded from disk: one
+     * storage of {@link #SECTION_VOLUME} blocks per section, bottom first.
+     */
+    public Chunk(int chunkX, int chunkZ, BlockStorage[] sections) {
+        this(chunkX, chunkZ, sections, null);
+    }
+
+    /**
+     * Like {@link #Chunk(int, int, BlockStorage[])} with heightmaps saved along
+     * with the blocks, one array of {@code SIZE_X * SIZE_Z} heights per
+     * {@link HeightmapType} in declaration order, so they are not rebuilt.
+     * {@code null} computes them from the blocks.
+     */
+    public Chunk(int chunkX, int chunkZ, BlockStorage[] sections, short[][] heightmaps) {
+        if (sections.length != SECTION_COUNT) {
+            throw new IllegalArgumentException("Expected " + SECTION_COUNT + " sections, got " + sections.length);
+        }
+        for (BlockStorage section : sections) {
+            if (section.size() != SECTION_VOLUME) {
+                throw new IllegalArgumentException("Expected " + SECTION_VOLUME + " blocks, got " + section.size());
+            }
+        }
         this.chunkX = chunkX;
         this.chunkZ = chunkZ;
-        this.blocks = new BlockType[SIZE_X][SIZE_Y][SIZE_Z];
+        this.sections = sections;
         this.node = new Node("chunk_" + chunkX + "_" + chunkZ);
-        initAir();
-    }
 
-    private void initAir() {
-        for (int x = 0; x < SIZE_X; x++) {
-            for (int y = 0; y < SIZE_Y; y++) {
-                for (int z = 0; z < SIZE_Z; z++) {
-                    blocks[x][y][z] = BlockType.AIR;
-                }
+        if (heightmaps != null) {
+            if (heightmaps.length != this.heightmaps.length) {
+                throw new IllegalArgumentException("Expected " + this.heightmaps.length + " heightmaps, got "
+                        + heightmaps.length);
+            }
+            for (int type = 0; type < heightmaps.length; type++) {
+                System.arraycopy(heightmaps[type], 0, this.heightmaps[type], 0, SIZE_X * SIZE_Z);
+            }
+            return;
+        }
+        for (BlockStorage section : sections) {
+            if (section.getSingleValue() != BlockType.AIR) {
+                recomputeHeightmaps();
+                break;
             }
         }
     }
 
+    private static int worldHeight() {
+        int height = Integer.getInteger("minecraft.worldHeight", 256);
+        height = Math.max(SECTION_HEIGHT, Math.min(512, height));
+        return height / SECTION_HEIGHT * SECTION_HEIGHT;
+    }
+
+    private static BlockStorage[] emptySections() {
+        BlockStorage[] sections = new BlockStorage[SECTION_COUNT];
+        for (int s = 0; s < SECTION_COUNT; s++) {
+            sections[s] = new BlockStorage(SECTION_VOLUME, BlockType.AIR);
+        }
+        return sections;
+    }
+
+    /**
+     * Packs chunk coordinates into one {@code long} key.
+     */
+    public static long key(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public static int keyX(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int keyZ(long key) {
+        return (int) key;
+    }
+
+    private static int neighborSide(int dx, int dz) {
+        if (dx != 0) {
+            return dx < 0 ? 0 : 1;
+        }
+        return dz < 0 ? 2 : 3;
+    }
+
+    /**
+     * Loaded neighbor one chunk away along x or z, or {@code null}.
+     */
+    public Chunk getNeighbor(int dx, int dz) {
+        return neighbors[neighborSide(dx, dz)];
+    }
+
+    void setNeighbor(int dx, int dz, Chunk neighbor) {
+        neighbors[neighborSide(dx, dz)] = neighbor;
+    }
+
+    static int index(int x, int y, int z) {
+        return (y * SIZE_Z + z) * SIZE_X + x;
+    }
+
+    /**
+     * Flat grass over dirt and stone up to {@code groundHeight}. Writes without
+     * taking the chunk's lock, so only before the chunk is published.
+     */
     public void generateFlat(int groundHeight) {
         if (groundHeight < 1) {
             groundHeight = 1;
@@ -52,44 +207,80 @@ public class Chunk {
             for (int z = 0; z < SIZE_Z; z++) {
                 for (int y = 0; y < groundHeight; y++) {
                     if (y == groundHeight - 1) {
-                        blocks[x][y][z] = BlockType.GRASS;
+                        writeBlock(x, y, z, BlockType.GRASS);
                     } else if (y >= groundHeight - 3) {
-                        blocks[x][y][z] = BlockType.DIRT;
+                        writeBlock(x, y, z, BlockType.DIRT);
                     } else {
-                        blocks[x][y][z] = BlockType.STONE;
+                        writeBlock(x, y, z, BlockType.STONE);
                     }
                 }
             }
         }
+
+        compact();
     }
 
+    /**
+     * Horizontal noise frequency of the terrain height field, in 1/blocks.
+     */
+    public static final double TERRAIN_SCALE = 0.05;
+
+    /**
+     * Generated water fills columns up to this y. Lower in worlds up to 160
+     * blocks tall, so they keep the same proportions.
+     */
+    public static final int WATER_SURFACE_Y = Math.min(62, SIZE_Y * 3 / 8);
+
+    /**
+     * Column height for a noise value; shared by generation and
+     * {@link World#getTerrainHeightAt(float, float)}.
+     */
+    public static int terrainHeight(double noise, int baseHeight, int amplitude) {
+        int height = (int) Math.round(baseHeight + noise * amplitude);
+
+        if (height < 1) height = 1;
+        if (height > SIZE_Y) height = SIZE_Y;
+
+        return height;
+    }
+
+    /**
+     * Terrain from the height noise, with water up to {@link #WATER_SURFACE_Y}.
+     * Like {@link #generateFlat}, only before the chunk is published.
+     */
     public void generateTerrainWithNoise(PerlinNoise noise,
                                          int baseHeight,
                                          int amplitude) {
 
-        int waterSurfaceY = 6;
+        int waterSurfaceY = WATER_SURFACE_Y;
 
-        for (int x = 0; x < SIZE_X; x++) {
-            for (int z = 0; z < SIZE_Z; z++) {
-
-                int worldX = chunkX * SIZE_X + x;
-                int worldZ = chunkZ * SIZE_Z + z;
+        double[] heightNoise = new double[SIZE_X * SIZE_Z];
+        noise.fill(heightNoise, chunkX * SIZE_X, chunkZ * SIZE_Z, SIZE_X, SIZE_Z, TERRAIN_SCALE);
 
-                double scale = 0.05;
-                double n = noise.noise(worldX * scale, worldZ * scale);
+        int minHeight = SIZE_Y;
+        for (double n : heightNoise) {
+            minHeight = Math.min(minHeight, terrainHeight(n, baseHeight, amplitude));
+        }
+        // sections below the lowest dirt are all stone and need no per-block data
+        int stoneSections = Math.max(0, minHeight - 3) / SECTION_HEIGHT;
+        for (int s = 0; s < stoneSections; s++) {
+            sections[s] = new BlockStorage(SECTION_VOLUME, BlockType.STONE);
+        }
+        connectivityDirty |= (1 << stoneSections) - 1;
+        int fromY = stoneSections * SECTION_HEIGHT;
 
-                int height = (int) Math.round(baseHeight + n * amplitude);
+        for (int x = 0; x < SIZE_X; x++) {
+            for (int z = 0; z < SIZE_Z; z++) {
 
-                if (height < 1) height = 1;
-                if (height > SIZE_Y) height = SIZE_Y;
+                int height = terrainHeight(heightNoise[z * SIZE_X + x], baseHeight, amplitude);
 
-                for (int y = 0; y < height; y++) {
+                for (int y = fromY; y < height; y++) {
                     if (y == height - 1) {
-                        setBlock(x, y, z, BlockType.GRASS);
+                        writeBlock(x, y, z, BlockType.GRASS);
                     } else if (y >= height - 3) {
-                        setBlock(x, y, z, BlockType.DIRT);
+                        writeBlock(x, y, z, BlockType.DIRT);
                     } else {
-                        setBlock(x, y, z, BlockType.STONE);
+                        writeBlock(x, y, z, BlockType.STONE);
                     }
                 }
 
@@ -97,13 +288,38 @@ public class Chunk {
                 if (topGroundY <= waterSurfaceY) {
                     int maxWaterY = Math.min(waterSurfaceY, SIZE_Y - 1);
                     for (int y = height; y <= maxWaterY; y++) {
-                        setBlock(x, y, z, BlockType.WATER);
+                        writeBlock(x, y, z, BlockType.WATER);
                     }
                 }
             }
         }
+
+        compact();
+        if (stoneSections > 0) {
+            // the stone sections were filled without going through setBlock
+            recomputeHeightmaps();
+        }
     }
 
+    /**
+     * Drops unused palette entries in every section and turns sections of a
+     * single block type back into storage without per-block data.
+     */
+    public void compact() {
+        long stamp = lock.writeLock();
+        try {
+            for (BlockStorage section : sections) {
+                section.compact();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Builds one cube geometry per visible block. The chunk node is attached
+     * to {@code rootNode} unless it is {@code null}.
+     */
     public void buildGeometry(Node rootNode,
                               Box cubeMesh,
                               Map<BlockType, Material> materials) {
@@ -117,7 +333,7 @@ public class Chunk {
             for (int y = 0; y < SIZE_Y; y++) {
                 for (int z = 0; z < SIZE_Z; z++) {
 
-                    BlockType type = blocks[x][y][z];
+                    BlockType type = getBlock(x, y, z);
                     if (type == null) {
                         continue;
                     }
@@ -149,17 +365,536 @@ public class Chunk {
             }
         }
 
-        if (node.getParent() == null) {
+        if (rootNode != null && node.getParent() == null) {
+            rootNode.attachChild(node);
+        }
+    }
+
+    /**
+     * Replaces the chunk geometry with the given merged meshes.
+     * Mesh vertices are chunk-local, {@code null} meshes are skipped.
+     * The chunk node is attached to {@code rootNode} unless it is {@code null}.
+     */
+    public void attachMeshes(Node rootNode,
+                             Mesh opaqueMesh,
+                             Mesh waterMesh,
+                             Material opaqueMaterial,
+                             Material waterMaterial) {
+
+        node.detachAllChildren();
+
+        float baseX = chunkX * SIZE_X;
+        float baseZ = chunkZ * SIZE_Z;
+
+        if (opaqueMesh != null) {
+            Geometry geom = new Geometry("chunk_opaque_" + chunkX + "_" + chunkZ, opaqueMesh);
+            geom.setMaterial(opaqueMaterial);
+            geom.setLocalTranslation(baseX, 0f, baseZ);
+            node.attachChild(geom);
+        }
+
+        if (waterMesh != null) {
+            Geometry geom = new Geometry("chunk_water_" + chunkX + "_" + chunkZ, waterMesh);
+            geom.setMaterial(waterMaterial);
+            geom.setQueueBucket(RenderQueue.Bucket.Transparent);
+            geom.setLocalTranslation(baseX, 0f, baseZ);
+            node.attachChild(geom);
+        }
+
+        if (rootNode != null && node.getParent() == null) {
             rootNode.attachChild(node);
         }
     }
 
+    /**
+     * Opaque faces of a section as last built by {@link ChunkMesher#buildSections},
+     * or {@code null} if it has none.
+     */
+    public MeshData getSectionOpaque(int section) {
+        return sectionOpaque[section];
+    }
+
+    /**
+     * Water faces of a section, or {@code null} if it has none.
+     */
+    public MeshData getSectionWater(int section) {
+        return sectionWater[section];
+    }
+
+    /**
+     * Replaces the meshes of a section; {@code null} for one without faces.
+     */
+    void setSectionMeshes(int section, MeshData opaque, MeshData water) {
+        sectionOpaque[section] = opaque;
+        sectionWater[section] = water;
+    }
+
+    /**
+     * Moves the section meshes of {@code sectionMask} over from {@code copy},
+     * once they were built on a worker, see {@link #copyForMeshing()}.
+     */
+    void takeSectionMeshes(Chunk copy, int sectionMask) {
+        for (int section = 0; section < SECTION_COUNT; section++) {
+            if ((sectionMask & (1 << section)) != 0) {
+                sectionOpaque[section] = copy.sectionOpaque[section];
+                sectionWater[section] = copy.sectionWater[section];
+            }
+        }
+    }
+
+    int getMeshVersion() {
+        return meshVersion;
+    }
+
+    /**
+     * Called after section meshes were rebuilt from the live blocks, which
+     * makes meshes still being built from an older copy outdated.
+     */
+    void markMeshRebuilt() {
+        meshVersion++;
+    }
+
+    /**
+     * Combines the cached section meshes into one opaque mesh, or {@code null} if empty.
+     */
+    public Mesh combineOpaqueSections() {
+        return MeshData.combine(sectionOpaque);
+    }
+
+    public Mesh combineWaterSections() {
+        return MeshData.combine(sectionWater);
+    }
+
+    /**
+     * Marks the sections whose meshes depend on a block at height {@code y}:
+     * its own section and the one across a section boundary it touches.
+     *
+     * @return {@code true} if the chunk had no dirty sections before
+     */
+    public boolean markDirtyAt(int y) {
+        int section = y / SECTION_HEIGHT;
+        int mask = 1 << section;
+        int inSection = y - section * SECTION_HEIGHT;
+        if (inSection == 0 && section > 0) {
+            mask |= 1 << (section - 1);
+        }
+        if (inSection == SECTION_HEIGHT - 1 && section < SECTION_COUNT - 1) {
+            mask |= 1 << (section + 1);
+        }
+        return markSectionsDirty(mask);
+    }
+
+    /**
+     * @return {@code true} if the chunk had no dirty sections before
+     */
+    public boolean markSectionsDirty(int sectionMask) {
+        boolean wasClean = dirtySections == 0;
+        dirtySections |= sectionMask;
+        return wasClean && sectionMask != 0;
+    }
+
+    public int getDirtySections() {
+        return dirtySections;
+    }
+
+    /**
+     * Sides, one bit per side as in {@link #NEIGHBOR_DX}, whose neighbor was
+     * loaded when the meshes were built. Toward the other sides the faces
+     * were built as if the neighbor were air.
+     */
+    int getMeshedNeighbors() {
+        return meshedNeighbors;
+    }
+
+    void setMeshedNeighbors(int sides) {
+        this.meshedNeighbors = sides;
+    }
+
+    /**
+     * Changes whenever a block or light level on the face toward {@code side},
+     * as in {@link #NEIGHBOR_DX}, changes, so a copy of that face can tell
+     * whether it is still current.
+     */
+    int getBorderVersion(int side) {
+        return borderVersions[side];
+    }
+
+    void markBorderChanged(int side) {
+        borderVersions[side]++;
+    }
+
+    /**
+     * @return {@code true} if the chunk had no stale border sections before
+     */
+    boolean markBorderStale(int sectionMask) {
+        boolean wasClean = staleBorderSections == 0;
+        staleBorderSections |= sectionMask;
+        return wasClean && sectionMask != 0;
+    }
+
+    int getStaleBorderSections() {
+        return staleBorderSections;
+    }
+
+    /**
+     * Returns the stale border section mask and clears it.
+     */
+    int takeStaleBorderSections() {
+        int mask = staleBorderSections;
+        staleBorderSections = 0;
+        return mask;
+    }
+
+    /**
+     * Returns the dirty section mask and clears it.
+     */
+    public int takeDirtySections() {
+        int mask = dirtySections;
+        dirtySections = 0;
+        return mask;
+    }
+
     public BlockType getBlock(int x, int y, int z) {
-        return blocks[x][y][z];
+        int i = index(x, y, z);
+        return sections[i >> SECTION_SHIFT].get(i & (SECTION_VOLUME - 1));
+    }
+
+    /**
+     * Block type at a chunk-local position, safe to call from any thread while
+     * the render thread edits the chunk. Reads optimistically and retries
+     * under the read lock only if a write overlapped.
+     */
+    public BlockType readBlock(int x, int y, int z) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                BlockType type = getBlock(x, y, z);
+                if (lock.validate(stamp)) {
+                    return type;
+                }
+            } catch (RuntimeException e) {
+                // storage seen halfway through a resize; the locked read below is consistent
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return getBlock(x, y, z);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Guards block data against readers on other threads, see {@link WorldSnapshot}.
+     */
+    StampedLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Copies of the block storage of every section. The caller holds the lock
+     * or validates an optimistic stamp afterwards.
+     */
+    BlockStorage[] copySections() {
+        BlockStorage[] copy = new BlockStorage[SECTION_COUNT];
+        for (int s = 0; s < SECTION_COUNT; s++) {
+            copy[s] = sections[s].copy();
+        }
+        return copy;
+    }
+
+    /**
+     * A detached copy of the blocks and light to rebuild section meshes from
+     * on a worker while this chunk stays in use. It remembers the mesh version
+     * so the result can be dropped if the meshes were rebuilt meanwhile.
+     * Render thread only.
+     */
+    Chunk copyForMeshing() {
+        Chunk copy = new Chunk(chunkX, chunkZ, copySections(), heightmaps);
+        copy.light.copyFrom(light);
+        copy.meshVersion = meshVersion;
+        return copy;
     }
 
+    /**
+     * Changes a block under the write lock. Getters on the render thread need
+     * no lock since it is the only writer; other threads use {@link #readBlock}.
+     */
     public void setBlock(int x, int y, int z, BlockType type) {
-        blocks[x][y][z] = type;
+        long stamp = lock.writeLock();
+        try {
+            writeBlock(x, y, z, type);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // without locking, for chunks no other thread can see yet
+    private void writeBlock(int x, int y, int z, BlockType type) {
+        int i = index(x, y, z);
+        BlockStorage section = sections[i >> SECTION_SHIFT];
+        int local = i & (SECTION_VOLUME - 1);
+        BlockType old = section.get(local);
+        if (old == type) {
+            return;
+        }
+        section.set(local, type);
+        updateHeightmaps(x, y, z, old, type);
+        byte[] levels = fluidLevels[i >> SECTION_SHIFT];
+        if (levels != null) {
+            levels[local] = 0;
+        }
+        if (old.isSolid() != type.isSolid()) {
+            collisionDirty = true;
+            connectivityDirty |= 1 << (i >> SECTION_SHIFT);
+        }
+    }
+
+    /**
+     * Flow level of the water at a chunk-local position, 0 for source blocks
+     * and everything that is not water.
+     */
+    public int getFluidLevel(int x, int y, int z) {
+        int i = index(x, y, z);
+        byte[] levels = fluidLevels[i >> SECTION_SHIFT];
+        return levels == null ? 0 : levels[i & (SECTION_VOLUME - 1)];
+    }
+
+    public void setFluidLevel(int x, int y, int z, int level) {
+        int i = index(x, y, z);
+        byte[] levels = fluidLevels[i >> SECTION_SHIFT];
+        if (levels == null) {
+            if (level == 0) {
+                return;
+            }
+            levels = new byte[SECTION_VOLUME];
+            fluidLevels[i >> SECTION_SHIFT] = levels;
+        }
+        levels[i & (SECTION_VOLUME - 1)] = (byte) level;
+    }
+
+    /**
+     * Flow levels of one section in block index order, or {@code null} if it never had flowing water.
+     */
+    public byte[] getFluidLevels(int section) {
+        return fluidLevels[section];
+    }
+
+    public void setFluidLevels(int section, byte[] levels) {
+        if (levels != null && levels.length != SECTION_VOLUME) {
+            throw new IllegalArgumentException("Expected " + SECTION_VOLUME + " fluid levels, got " + levels.length);
+        }
+        fluidLevels[section] = levels;
+    }
+
+    /**
+     * Marks the collision shape outdated, e.g. when the caller cannot tell
+     * which blocks changed.
+     */
+    public void markCollisionDirty() {
+        collisionDirty = true;
+    }
+
+    /**
+     * Returns whether a solid block changed since the last call and resets the flag.
+     */
+    public boolean takeCollisionDirty() {
+        boolean dirty = collisionDirty;
+        collisionDirty = false;
+        return dirty;
+    }
+
+    /**
+     * Face connectivity of a section for {@link VisibilityGraph}, recomputed
+     * with {@code builder} if a solid block in it changed since the last call.
+     */
+    public int getConnectivity(int section, SectionConnectivity builder) {
+        int bit = 1 << section;
+        if ((connectivityDirty & bit) != 0) {
+            connectivity[section] = (short) builder.compute(sections[section]);
+            connectivityDirty &= ~bit;
+        }
+        return connectivity[section];
+    }
+
+    /**
+     * Computes the connectivity of every section that needs it, e.g. on a
+     * worker thread before the chunk is handed to the render thread.
+     */
+    public void updateConnectivity(SectionConnectivity builder) {
+        for (int s = 0; s < SECTION_COUNT; s++) {
+            getConnectivity(s, builder);
+        }
+    }
+
+    /**
+     * Records that walk {@code pass} reached {@code section}.
+     *
+     * @return {@code false} if the walk had reached it already
+     */
+    boolean markReached(int pass, int section) {
+        if (visibilityPass != pass) {
+            visibilityPass = pass;
+            reachedSections = 0;
+        }
+        int bit = 1 << section;
+        if ((reachedSections & bit) != 0) {
+            return false;
+        }
+        reachedSections |= bit;
+        return true;
+    }
+
+    int getReachedSections(int pass) {
+        return visibilityPass == pass ? reachedSections : 0;
+    }
+
+    /**
+     * Sections drawn by the renderer; the others are hidden by occlusion culling.
+     */
+    public int getShownSections() {
+        return shownSections;
+    }
+
+    /**
+     * @return {@code true} if the mask changed
+     */
+    public boolean setShownSections(int sectionMask) {
+        if (shownSections == sectionMask) {
+            return false;
+        }
+        shownSections = sectionMask;
+        return true;
+    }
+
+    /**
+     * Height of column {@code (x, z)}: y of the highest block matching
+     * {@code type} plus one, or 0 if the column has none. O(1).
+     */
+    public int getHeight(HeightmapType type, int x, int z) {
+        return heightmaps[type.ordinal()][z * SIZE_X + x];
+    }
+
+    private void updateHeightmaps(int x, int y, int z, BlockType oldType, BlockType newType) {
+        int column = z * SIZE_X + x;
+        for (HeightmapType type : HeightmapType.values()) {
+            short[] heights = heightmaps[type.ordinal()];
+            boolean was = type.matches(oldType);
+            boolean is = type.matches(newType);
+
+            if (is && y >= heights[column]) {
+                heights[column] = (short) (y + 1);
+            } else if (was && !is && y + 1 == heights[column]) {
+                // the top block went away, look for the next one below
+                heights[column] = (short) scanDown(type, x, y - 1, z);
+            }
+        }
+    }
+
+    private int scanDown(HeightmapType type, int x, int fromY, int z) {
+        for (int y = fromY; y >= 0; y--) {
+            BlockType uniform = sections[y / SECTION_HEIGHT].getSingleValue();
+            if (uniform != null) {
+                if (type.matches(uniform)) {
+                    return y + 1;
+                }
+                // skip the rest of a section that holds a single type
+                y = y / SECTION_HEIGHT * SECTION_HEIGHT;
+            } else if (type.matches(getBlock(x, y, z))) {
+                return y + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Rebuilds all heightmaps from the block data, e.g. after loading.
+     */
+    public void recomputeHeightmaps() {
+        for (HeightmapType type : HeightmapType.values()) {
+            short[] heights = heightmaps[type.ordinal()];
+            for (int z = 0; z < SIZE_Z; z++) {
+                for (int x = 0; x < SIZE_X; x++) {
+                    heights[z * SIZE_X + x] = (short) scanDown(type, x, SIZE_Y - 1, z);
+                }
+            }
+        }
+    }
+
+    public BlockStorage getSection(int section) {
+        return sections[section];
+    }
+
+    /**
+     * The block type filling a whole section, or {@code null} if it is mixed.
+     * Exact after {@link #compact()}; in between a section that became uniform
+     * through edits may still report {@code null}.
+     */
+    public BlockType getUniformType(int section) {
+        return sections[section].getSingleValue();
+    }
+
+    /**
+     * Sky and block light, filled by {@link LightEngine}.
+     */
+    public LightStorage getLight() {
+        return light;
+    }
+
+    /**
+     * Light at a chunk-local position as {@code sky << 4 | block}.
+     */
+    public int getPackedLight(int x, int y, int z) {
+        return light.getPacked(index(x, y, z));
+    }
+
+    /**
+     * Approximate heap used by block data of this chunk.
+     */
+    public long getBlockMemoryBytes() {
+        long bytes = 16 + 4L * SECTION_COUNT;
+        for (BlockStorage section : sections) {
+            bytes += section.estimateMemoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Approximate memory held by this chunk: block data, cached section meshes,
+     * the vertex buffers of its geometry and its collision shape.
+     * Used to size the cache of unloaded chunks.
+     */
+    public long estimateMemoryBytes() {
+        long bytes = 128 + getBlockMemoryBytes() + light.estimateMemoryBytes();
+        for (byte[] levels : fluidLevels) {
+            if (levels != null) {
+                bytes += 16 + levels.length;
+            }
+        }
+
+        for (int s = 0; s < SECTION_COUNT; s++) {
+            if (sectionOpaque[s] != null) {
+                bytes += sectionOpaque[s].estimateMemoryBytes();
+            }
+            if (sectionWater[s] != null) {
+                bytes += sectionWater[s].estimateMemoryBytes();
+            }
+        }
+
+        for (Spatial child : node.getChildren()) {
+            // legacy geometries share one cube mesh, count only the spatial
+            bytes += 256;
+            if (child instanceof Geometry && child.getName().startsWith("chunk_")) {
+                Mesh mesh = ((Geometry) child).getMesh();
+                // position + normal + color floats and int indices
+                bytes += 40L * mesh.getVertexCount() + 12L * mesh.getTriangleCount();
+            }
+        }
+
+        if (collisionShape instanceof CompoundCollisionShape) {
+            bytes += 64 + 96L * ((CompoundCollisionShape) collisionShape).getChildren().size();
+        }
+        return bytes;
     }
 
     public Node getNode() {
@@ -174,11 +909,51 @@ public class Chunk {
         return chunkZ;
     }
 
-    public RigidBodyControl getTerrainBody() {
+    /**
+     * Whether the blocks differ from generator output and need to be persisted.
+     */
+    public boolean isEdited() {
+        return edited;
+    }
+
+    public boolean isUnsaved() {
+        return unsaved;
+    }
+
+    /**
+     * Records a player or world edit.
+     */
+    public void markEdited() {
+        edited = true;
+        unsaved = true;
+    }
+
+    /**
+     * Called once the current block data has been handed to storage,
+     * or for chunks that were loaded from storage.
+     */
+    public void markSaved() {
+        edited = true;
+        unsaved = false;
+    }
+
+    public CollisionShape getCollisionShape() {
+        return collisionShape;
+    }
+
+    public void setCollisionShape(CollisionShape collisionShape) {
+        this.collisionShape = collisionShape;
+    }
+
+    /**
+     * Static body in the physics space, or {@code null} while the chunk is
+     * out of physics range.
+     */
+    public PhysicsRigidBody getTerrainBody() {
         return terrainBody;
     }
 
-    public void setTerrainBody(RigidBodyControl terrainBody) {
+    public void setTerrainBody(PhysicsRigidBody terrainBody) {
         this.terrainBody = terrainBody;
     }
 }
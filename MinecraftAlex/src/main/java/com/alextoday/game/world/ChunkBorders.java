@@ -0,0 +1,188 @@
+package com.alextoday.game.world;
+
+/**
+ * Copy of the block columns that touch a chunk from its four neighbors,
+ * with their light.
+ * Taken on the render thread so a worker can mesh the chunk without reading
+ * live neighbor data. Neighbors that were not loaded read as air. Remembers
+ * which chunk each side was copied from and its {@link Chunk#getBorderVersion
+ * border version}, so {@link #changedSections} can tell afterwards whether
+ * the copy is still current.
+ */
+public class ChunkBorders implements BlockAccess {
+
+    private static final int WEST = 0;
+    private static final int EAST = 1;
+    private static final int NORTH = 2;
+    private static final int SOUTH = 3;
+
+    private final int baseX;
+    private final int baseZ;
+    private final BlockType[][] sides = new BlockType[4][];
+    private final byte[][] lightSides = new byte[4][];
+    private final Chunk[] copiedFrom = new Chunk[4];
+    private final int[] versions = new int[4];
+
+    private ChunkBorders(int chunkX, int chunkZ) {
+        this.baseX = chunkX * Chunk.SIZE_X;
+        this.baseZ = chunkZ * Chunk.SIZE_Z;
+    }
+
+    /**
+     * Sides that were copied, one bit per side as in {@link Chunk#NEIGHBOR_DX}.
+     */
+    int getCapturedSides() {
+        int captured = 0;
+        for (int side = 0; side < sides.length; side++) {
+            if (sides[side] != null) {
+                captured |= 1 << side;
+            }
+        }
+        return captured;
+    }
+
+    public static ChunkBorders capture(World world, int chunkX, int chunkZ) {
+        ChunkBorders borders = new ChunkBorders(chunkX, chunkZ);
+
+        Chunk west = world.getLoadedChunk(chunkX - 1, chunkZ);
+        if (west != null) {
+            borders.copyColumnX(WEST, west, Chunk.SIZE_X - 1);
+        }
+        Chunk east = world.getLoadedChunk(chunkX + 1, chunkZ);
+        if (east != null) {
+            borders.copyColumnX(EAST, east, 0);
+        }
+        Chunk north = world.getLoadedChunk(chunkX, chunkZ - 1);
+        if (north != null) {
+            borders.copyColumnZ(NORTH, north, Chunk.SIZE_Z - 1);
+        }
+        Chunk south = world.getLoadedChunk(chunkX, chunkZ + 1);
+        if (south != null) {
+            borders.copyColumnZ(SOUTH, south, 0);
+        }
+        return borders;
+    }
+
+    private void copyColumnX(int side, Chunk chunk, int x) {
+        BlockType[] column = new BlockType[Chunk.SIZE_Y * Chunk.SIZE_Z];
+        byte[] light = new byte[column.length];
+        for (int y = 0; y < Chunk.SIZE_Y; y++) {
+            for (int z = 0; z < Chunk.SIZE_Z; z++) {
+                column[y * Chunk.SIZE_Z + z] = chunk.getBlock(x, y, z);
+                light[y * Chunk.SIZE_Z + z] = (byte) chunk.getPackedLight(x, y, z);
+            }
+        }
+        sides[side] = column;
+        lightSides[side] = light;
+        copiedFrom[side] = chunk;
+        versions[side] = chunk.getBorderVersion(side ^ 1);
+    }
+
+    private void copyColumnZ(int side, Chunk chunk, int z) {
+        BlockType[] column = new BlockType[Chunk.SIZE_Y * Chunk.SIZE_X];
+        byte[] light = new byte[column.length];
+        for (int y = 0; y < Chunk.SIZE_Y; y++) {
+            for (int x = 0; x < Chunk.SIZE_X; x++) {
+                column[y * Chunk.SIZE_X + x] = chunk.getBlock(x, y, z);
+                light[y * Chunk.SIZE_X + x] = (byte) chunk.getPackedLight(x, y, z);
+            }
+        }
+        sides[side] = column;
+        lightSides[side] = light;
+        copiedFrom[side] = chunk;
+        versions[side] = chunk.getBorderVersion(side ^ 1);
+    }
+
+    /**
+     * Sections, one bit each, in which the copy of side {@code side} no longer
+     * matches the face of {@code neighbor}, the chunk now loaded on that side.
+     * 0 without comparing if it is the chunk copied and its face has not
+     * changed since, or if the side was not copied.
+     */
+    int changedSections(int side, Chunk neighbor) {
+        if (sides[side] == null
+                || (neighbor == copiedFrom[side] && neighbor.getBorderVersion(side ^ 1) == versions[side])) {
+            return 0;
+        }
+        boolean alongZ = side == WEST || side == EAST;
+        int length = alongZ ? Chunk.SIZE_Z : Chunk.SIZE_X;
+        int fixed;
+        if (side == WEST) {
+            fixed = Chunk.SIZE_X - 1;
+        } else if (side == NORTH) {
+            fixed = Chunk.SIZE_Z - 1;
+        } else {
+            fixed = 0;
+        }
+
+        int sections = 0;
+        for (int y = 0; y < Chunk.SIZE_Y; y++) {
+            for (int i = 0; i < length; i++) {
+                int x = alongZ ? fixed : i;
+                int z = alongZ ? i : fixed;
+                int index = y * length + i;
+                if (sides[side][index] != neighbor.getBlock(x, y, z)
+                        || lightSides[side][index] != (byte) neighbor.getPackedLight(x, y, z)) {
+                    sections |= 1 << (y / Chunk.SECTION_HEIGHT);
+                    // on to the next section
+                    y = (y / Chunk.SECTION_HEIGHT + 1) * Chunk.SECTION_HEIGHT - 1;
+                    break;
+                }
+            }
+        }
+        return sections;
+    }
+
+    @Override
+    public BlockType getBlockType(int x, int y, int z) {
+        if (y < 0 || y >= Chunk.SIZE_Y) {
+            return BlockType.AIR;
+        }
+        int side = sideOf(x, z);
+        if (side < 0 || sides[side] == null) {
+            return BlockType.AIR;
+        }
+        return sides[side][borderIndex(side, x, y, z)];
+    }
+
+    @Override
+    public int getLight(int x, int y, int z) {
+        if (y < 0 || y >= Chunk.SIZE_Y) {
+            return LightStorage.FULL_SKY;
+        }
+        int side = sideOf(x, z);
+        if (side < 0 || lightSides[side] == null) {
+            return LightStorage.FULL_SKY;
+        }
+        return lightSides[side][borderIndex(side, x, y, z)] & 0xFF;
+    }
+
+    /**
+     * Which captured side holds world column {@code (x, z)}, or -1.
+     */
+    private int sideOf(int x, int z) {
+        int localX = x - baseX;
+        int localZ = z - baseZ;
+
+        boolean insideX = localX >= 0 && localX < Chunk.SIZE_X;
+        boolean insideZ = localZ >= 0 && localZ < Chunk.SIZE_Z;
+
+        if (localX == -1 && insideZ) {
+            return WEST;
+        } else if (localX == Chunk.SIZE_X && insideZ) {
+            return EAST;
+        } else if (localZ == -1 && insideX) {
+            return NORTH;
+        } else if (localZ == Chunk.SIZE_Z && insideX) {
+            return SOUTH;
+        }
+        return -1;
+    }
+
+    private int borderIndex(int side, int x, int y, int z) {
+        if (side == WEST || side == EAST) {
+            return y * Chunk.SIZE_Z + (z - baseZ);
+        }
+        return y * Chunk.SIZE_X + (x - baseX);
+    }
+}
@@ -0,0 +1,130 @@
+package com.alextoday.game.world;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recently unloaded chunks, kept detached together with their meshes and
+ * collision shape so that walking back into them only has to reattach.
+ *
+ * The chunks unloaded longest ago are evicted once the estimated size
+ * ({@link Chunk#estimateMemoryBytes()}) exceeds the byte limit.
+ * Render thread only.
+ */
+public class ChunkCache {
+
+    private final LinkedHashMap<Long, Chunk> chunks = new LinkedHashMap<>(64);
+    private final Map<Long, Long> sizes = new HashMap<>();
+
+    private long maxBytes;
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ChunkCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Adds a detached chunk, evicting older entries if the cache gets too large.
+     * A chunk larger than the whole cache is not kept.
+     */
+    public void put(Chunk chunk) {
+        long key = Chunk.key(chunk.getChunkX(), chunk.getChunkZ());
+        discard(key);
+
+        long size = chunk.estimateMemoryBytes();
+        if (size > maxBytes) {
+            evictions++;
+            return;
+        }
+
+        chunks.put(key, chunk);
+        sizes.put(key, size);
+        bytes += size;
+        trim();
+    }
+
+    /**
+     * Removes and returns the cached chunk, or {@code null}. Counts a hit or a miss.
+     */
+    public Chunk take(int cx, int cz) {
+        long key = Chunk.key(cx, cz);
+        Chunk chunk = chunks.remove(key);
+        if (chunk == null) {
+            misses++;
+            return null;
+        }
+        bytes -= sizes.remove(key);
+        hits++;
+        return chunk;
+    }
+
+    /**
+     * Cached chunk without removing it or counting a hit or miss.
+     */
+    public Chunk peek(int cx, int cz) {
+        return chunks.get(Chunk.key(cx, cz));
+    }
+
+    private void discard(long key) {
+        if (chunks.remove(key) != null) {
+            bytes -= sizes.remove(key);
+        }
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<Long, Chunk>> it = chunks.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            long key = it.next().getKey();
+            it.remove();
+            bytes -= sizes.remove(key);
+            evictions++;
+        }
+    }
+
+    public void clear() {
+        chunks.clear();
+        sizes.clear();
+        bytes = 0;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public int size() {
+        return chunks.size();
+    }
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    public long getMissCount() {
+        return misses;
+    }
+
+    public long getEvictionCount() {
+        return evictions;
+    }
+
+    public void resetCounters() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+}
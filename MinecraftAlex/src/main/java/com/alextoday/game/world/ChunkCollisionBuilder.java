@@ -0,0 +1,163 @@
+package com.alextoday.game.world;
+
+import com.jme3.bullet.collision.shapes.BoxCollisionShape;
+import com.jme3.bullet.collision.shapes.CompoundCollisionShape;
+import com.jme3.math.Vector3f;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns the solid blocks of a chunk into a compound of merged axis-aligned boxes.
+ *
+ * Solid cells are merged greedily, first along x, then z, then y, so flat
+ * terrain layers collapse into a handful of boxes and a stack of all-stone
+ * sections into a single one. Sections of one block type are filled without
+ * reading their blocks, and only the rows between the lowest and highest
+ * solid block are scanned. Box shapes of equal size are
+ * shared between all chunks. Child positions are chunk-local, so the body is
+ * placed at the chunk origin (see {@link #chunkOrigin(Chunk)}).
+ *
+ * Not thread-safe: keep one instance per thread.
+ */
+public class ChunkCollisionBuilder {
+
+    private static final ConcurrentHashMap<Integer, BoxCollisionShape> BOXES = new ConcurrentHashMap<>();
+
+    private final boolean[] solid = new boolean[Chunk.VOLUME];
+    private final boolean[] used = new boolean[Chunk.VOLUME];
+    private int boxCount;
+
+    private static int index(int x, int y, int z) {
+        return (y * Chunk.SIZE_Z + z) * Chunk.SIZE_X + x;
+    }
+
+    /**
+     * @return the compound shape, or {@code null} if the chunk has no solid blocks
+     */
+    public CompoundCollisionShape build(Chunk chunk) {
+        boxCount = 0;
+
+        int minY = Chunk.SIZE_Y;
+        int maxY = -1;
+        for (int section = 0; section < Chunk.SECTION_COUNT; section++) {
+            int y0 = section * Chunk.SECTION_HEIGHT;
+            int from = index(0, y0, 0);
+            int to = from + Chunk.SECTION_VOLUME;
+            Arrays.fill(used, from, to, false);
+
+            BlockType uniform = chunk.getUniformType(section);
+            if (uniform != null) {
+                Arrays.fill(solid, from, to, uniform.isSolid());
+                if (uniform.isSolid()) {
+                    minY = Math.min(minY, y0);
+                    maxY = y0 + Chunk.SECTION_HEIGHT - 1;
+                }
+                continue;
+            }
+            for (int y = y0; y < y0 + Chunk.SECTION_HEIGHT; y++) {
+                for (int z = 0; z < Chunk.SIZE_Z; z++) {
+                    for (int x = 0; x < Chunk.SIZE_X; x++) {
+                        int i = index(x, y, z);
+                        solid[i] = chunk.getBlock(x, y, z).isSolid();
+                        if (solid[i]) {
+                            minY = Math.min(minY, y);
+                            maxY = y;
+                        }
+                    }
+                }
+            }
+        }
+        if (maxY < 0) {
+            return null;
+        }
+
+        CompoundCollisionShape compound = new CompoundCollisionShape();
+
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = 0; z < Chunk.SIZE_Z; z++) {
+                for (int x = 0; x < Chunk.SIZE_X; x++) {
+                    if (!isFree(x, y, z)) {
+                        continue;
+                    }
+
+                    int w = 1;
+                    while (x + w < Chunk.SIZE_X && isFree(x + w, y, z)) {
+                        w++;
+                    }
+
+                    int d = 1;
+                    while (z + d < Chunk.SIZE_Z && isRowFree(x, w, y, z + d)) {
+                        d++;
+                    }
+
+                    int h = 1;
+                    while (y + h <= maxY && isLayerFree(x, w, y + h, z, d)) {
+                        h++;
+                    }
+
+                    markUsed(x, y, z, w, h, d);
+                    addBox(compound, x, y, z, w, h, d);
+                }
+            }
+        }
+        return compound;
+    }
+
+    /**
+     * Number of boxes in the last built shape.
+     */
+    public int getBoxCount() {
+        return boxCount;
+    }
+
+    public static Vector3f chunkOrigin(Chunk chunk) {
+        return new Vector3f(chunk.getChunkX() * Chunk.SIZE_X, 0f, chunk.getChunkZ() * Chunk.SIZE_Z);
+    }
+
+    private boolean isFree(int x, int y, int z) {
+        int i = index(x, y, z);
+        return solid[i] && !used[i];
+    }
+
+    private boolean isRowFree(int x, int w, int y, int z) {
+        for (int t = 0; t < w; t++) {
+            if (!isFree(x + t, y, z)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isLayerFree(int x, int w, int y, int z, int d) {
+        for (int t = 0; t < d; t++) {
+            if (!isRowFree(x, w, y, z + t)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void markUsed(int x, int y, int z, int w, int h, int d) {
+        for (int dy = 0; dy < h; dy++) {
+            for (int dz = 0; dz < d; dz++) {
+                for (int dx = 0; dx < w; dx++) {
+                    used[index(x + dx, y + dy, z + dz)] = true;
+                }
+            }
+        }
+    }
+
+    private void addBox(CompoundCollisionShape compound, int x, int y, int z, int w, int h, int d) {
+        BoxCollisionShape box = BOXES.computeIfAbsent((w << 20) | (h << 10) | d,
+                key -> new BoxCollisionShape(new Vector3f(w * 0.5f, h * 0.5f, d * 0.5f)));
+
+        // block centers are on integers, so a box starting at x spans [x - 0.5, x + w - 0.5]
+        Vector3f center = new Vector3f(
+                x - 0.5f + w * 0.5f,
+                y - 0.5f + h * 0.5f,
+                z - 0.5f + d * 0.5f);
+        compound.addChildShape(box, center);
+        boxCount++;
+    }
+}
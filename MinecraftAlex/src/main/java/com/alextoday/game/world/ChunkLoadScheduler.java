@@ -0,0 +1,126 @@
+package com.alextoday.game.world;
+
+import java.util.Arrays;
+
+/**
+ * Orders the chunks of the view square so the ones the player is likely to
+ * see are loaded first: nearer chunks before farther ones, and chunks in the
+ * look direction before chunks behind.
+ *
+ * The ranking is rebuilt only when the player enters another chunk, turns by
+ * more than {@link #RERANK_ANGLE_COS}, or the radius changes; between those,
+ * {@link #next()} walks the ranked list with a cursor. Render thread only.
+ */
+public class ChunkLoadScheduler {
+
+    // cos(20°)
+    private static final float RERANK_ANGLE_COS = 0.94f;
+
+    // how much a chunk directly behind counts as farther than one straight ahead
+    private static final float BEHIND_PENALTY = 3f;
+
+    private long[] ranked = new long[0];
+    private long[] keys = new long[0];
+    private int count;
+    private int cursor;
+
+    private boolean valid;
+    private int centerCx;
+    private int centerCz;
+    private int radius = -1;
+    private float dirX;
+    private float dirZ;
+
+    /**
+     * Re-ranks the view square if the player moved to another chunk, turned
+     * noticeably or the radius changed. A zero direction ranks by distance only.
+     *
+     * @return {@code true} if the ranking was rebuilt
+     */
+    public boolean update(int centerCx, int centerCz, int radiusChunks, float lookX, float lookZ) {
+        float length = (float) Math.sqrt(lookX * lookX + lookZ * lookZ);
+        if (length > 1e-4f) {
+            lookX /= length;
+            lookZ /= length;
+        } else {
+            lookX = 0f;
+            lookZ = 0f;
+        }
+
+        boolean turned = (lookX * dirX + lookZ * dirZ) < RERANK_ANGLE_COS
+                && (lookX != 0f || lookZ != 0f || dirX != 0f || dirZ != 0f);
+        if (valid && !turned
+                && centerCx == this.centerCx && centerCz == this.centerCz
+                && radiusChunks == radius) {
+            return false;
+        }
+
+        this.centerCx = centerCx;
+        this.centerCz = centerCz;
+        this.radius = radiusChunks;
+        this.dirX = lookX;
+        this.dirZ = lookZ;
+        rank();
+        valid = true;
+        return true;
+    }
+
+    /**
+     * Forces a re-rank on the next {@link #update}, e.g. after chunks inside
+     * the radius were dropped.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    private void rank() {
+        int side = radius * 2 + 1;
+        int total = side * side;
+        if (ranked.length < total) {
+            ranked = new long[total];
+            keys = new long[total];
+        }
+
+        int i = 0;
+        for (int dx = -radius; dx <= radius; dx++) {
+            for (int dz = -radius; dz <= radius; dz++) {
+                float distance = (float) Math.sqrt(dx * dx + dz * dz);
+
+                float score = distance;
+                if (distance > 0f) {
+                    // 0 straight ahead, 1 directly behind
+                    float behind = (1f - (dx * dirX + dz * dirZ) / distance) * 0.5f;
+                    score *= 1f + BEHIND_PENALTY * behind;
+                }
+
+                keys[i] = Chunk.key(centerCx + dx, centerCz + dz);
+                // non-negative float bits sort like the floats themselves
+                ranked[i] = ((long) Float.floatToIntBits(score) << 32) | i;
+                i++;
+            }
+        }
+
+        Arrays.sort(ranked, 0, total);
+        count = total;
+        cursor = 0;
+    }
+
+    public boolean hasNext() {
+        return cursor < count;
+    }
+
+    /**
+     * Key ({@link Chunk#key}) of the next chunk in priority order.
+     */
+    public long next() {
+        int index = (int) ranked[cursor++];
+        return keys[index];
+    }
+
+    /**
+     * Chunks of the current ranking not returned by {@link #next()} yet.
+     */
+    public int getRemaining() {
+        return count - cursor;
+    }
+}
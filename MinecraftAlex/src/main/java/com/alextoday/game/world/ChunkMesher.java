@@ -0,0 +1,377 @@
+package com.alextoday.game.world;
+
+import com.jme3.math.ColorRGBA;
+
+/**
+ * Builds one opaque and one water mesh for a chunk.
+ * Only faces that border a non-solid block are emitted, and coplanar faces
+ * of the same {@link BlockType} and light level are merged into larger quads
+ * (greedy meshing). Each face is shaded by the light of the block in front of
+ * it, baked into the vertex color.
+ *
+ * Vertices are in chunk-local coordinates with block centers on integer positions,
+ * the same layout the per-block cube geometry uses. A chunk can be meshed as a
+ * whole or per {@link Chunk#SECTION_HEIGHT}-tall section, so an edit only remeshes
+ * the sections it touches. Sections of a single block type that cannot show a
+ * face, such as open air or buried rock, are skipped without being scanned.
+ *
+ * Not thread-safe: keep one instance per thread.
+ */
+public class ChunkMesher {
+
+    private static final BlockType[] TYPES = BlockType.values();
+
+    // block color per type and light level, darker by 20% per level with a floor
+    private static final ColorRGBA[][] LIT_COLORS = new ColorRGBA[TYPES.length][LightStorage.MAX_LEVEL + 1];
+
+    static {
+        for (BlockType type : TYPES) {
+            if (type.color == null) {
+                continue;
+            }
+            for (int level = 0; level <= LightStorage.MAX_LEVEL; level++) {
+                float brightness = 0.08f + 0.92f * (float) Math.pow(0.8, LightStorage.MAX_LEVEL - level);
+                LIT_COLORS[type.ordinal()][level] = new ColorRGBA(
+                        type.color.r * brightness,
+                        type.color.g * brightness,
+                        type.color.b * brightness,
+                        type.color.a);
+            }
+        }
+    }
+
+    private static final int PAD_X = Chunk.SIZE_X + 2;
+    private static final int PAD_Y = Chunk.SIZE_Y + 2;
+    private static final int PAD_Z = Chunk.SIZE_Z + 2;
+
+    // padded array strides for axes x, y, z
+    private static final int[] STRIDES = {1, PAD_X * PAD_Z, PAD_X};
+
+    private final byte[] padded = new byte[PAD_X * PAD_Y * PAD_Z];
+    private final byte[] paddedLight = new byte[PAD_X * PAD_Y * PAD_Z];
+    // face type + 1 in the low byte and its light level above, 0 for no face
+    private final int[] mask = new int[Math.max(Chunk.SIZE_X, Chunk.SECTION_HEIGHT) * Math.max(Chunk.SECTION_HEIGHT, Chunk.SIZE_Z)];
+    private final float[] corners = new float[12];
+
+    private final MeshData opaqueData = new MeshData();
+    private final MeshData waterData = new MeshData();
+    // one section at a time, kept in the chunk as a trimmed copy if not empty
+    private final MeshData sectionOpaque = new MeshData();
+    private final MeshData sectionWater = new MeshData();
+
+    // meshed box, inclusive lower and exclusive upper bound per axis
+    private final int[] lo = new int[3];
+    private final int[] hi = new int[3];
+
+    /**
+     * Builds into this mesher's own buffers, see {@link #getOpaqueData()} and {@link #getWaterData()}.
+     */
+    public void build(Chunk chunk, BlockAccess neighbors) {
+        build(chunk, neighbors, opaqueData, waterData);
+    }
+
+    public MeshData getOpaqueData() {
+        return opaqueData;
+    }
+
+    public MeshData getWaterData() {
+        return waterData;
+    }
+
+    /**
+     * Builds the whole chunk as one mesh pair.
+     *
+     * @param neighbors used to look up blocks just outside the chunk border,
+     *                  may be {@code null} to treat everything outside as air
+     */
+    public void build(Chunk chunk, BlockAccess neighbors, MeshData opaque, MeshData water) {
+        opaque.clear();
+        water.clear();
+
+        for (int section = 0; section < Chunk.SECTION_COUNT; section++) {
+            if (isHidden(chunk, neighbors, section)) {
+                continue;
+            }
+            int y0 = section * Chunk.SECTION_HEIGHT;
+            fillPadded(chunk, neighbors, y0, y0 + Chunk.SECTION_HEIGHT);
+            meshRange(y0, y0 + Chunk.SECTION_HEIGHT, opaque, water);
+        }
+    }
+
+    /**
+     * Rebuilds the cached meshes of the sections whose bits are set in
+     * {@code sectionMask}, see {@link Chunk#getSectionOpaque(int)}.
+     * Faces are still culled against blocks in the neighboring sections.
+     */
+    public void buildSections(Chunk chunk, BlockAccess neighbors, int sectionMask) {
+        if (sectionMask == 0) {
+            return;
+        }
+
+        for (int section = 0; section < Chunk.SECTION_COUNT; section++) {
+            if ((sectionMask & (1 << section)) == 0) {
+                continue;
+            }
+            if (isHidden(chunk, neighbors, section)) {
+                chunk.setSectionMeshes(section, null, null);
+                continue;
+            }
+
+            sectionOpaque.clear();
+            sectionWater.clear();
+            int y0 = section * Chunk.SECTION_HEIGHT;
+            fillPadded(chunk, neighbors, y0, y0 + Chunk.SECTION_HEIGHT);
+            meshRange(y0, y0 + Chunk.SECTION_HEIGHT, sectionOpaque, sectionWater);
+            chunk.setSectionMeshes(section, trimmed(sectionOpaque), trimmed(sectionWater));
+        }
+    }
+
+    private static MeshData trimmed(MeshData data) {
+        return data.isEmpty() ? null : data.copy();
+    }
+
+    /**
+     * Whether a section holds a single block type that shows no face: air
+     * never does, any other type only where it touches a block it is visible
+     * against, so only the six layers around the section are checked.
+     */
+    private static boolean isHidden(Chunk chunk, BlockAccess neighbors, int section) {
+        BlockType type = chunk.getUniformType(section);
+        if (type == null) {
+            return false;
+        }
+        if (type.color == null) {
+            return true;
+        }
+        byte self = (byte) type.ordinal();
+
+        int y0 = section * Chunk.SECTION_HEIGHT;
+        int y1 = y0 + Chunk.SECTION_HEIGHT - 1;
+        if (section > 0 && !isLayerHiding(chunk, section - 1, y0 - 1, self)) {
+            return false;
+        }
+        // nothing below the world is ever visible, open sky above it is
+        if (section == Chunk.SECTION_COUNT - 1 || !isLayerHiding(chunk, section + 1, y1 + 1, self)) {
+            return false;
+        }
+
+        if (neighbors == null) {
+            return false;
+        }
+        int baseX = chunk.getChunkX() * Chunk.SIZE_X;
+        int baseZ = chunk.getChunkZ() * Chunk.SIZE_Z;
+        for (int y = y0; y <= y1; y++) {
+            for (int i = 0; i < Chunk.SIZE_X; i++) {
+                if (isFaceVisible(self, (byte) neighbors.getBlockType(baseX - 1, y, baseZ + i).ordinal())
+                        || isFaceVisible(self, (byte) neighbors.getBlockType(baseX + Chunk.SIZE_X, y, baseZ + i).ordinal())
+                        || isFaceVisible(self, (byte) neighbors.getBlockType(baseX + i, y, baseZ - 1).ordinal())
+                        || isFaceVisible(self, (byte) neighbors.getBlockType(baseX + i, y, baseZ + Chunk.SIZE_Z).ordinal())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether no block in row {@code y} of the given section shows a face of {@code self}.
+     */
+    private static boolean isLayerHiding(Chunk chunk, int section, int y, byte self) {
+        BlockType uniform = chunk.getUniformType(section);
+        if (uniform != null) {
+            return !isFaceVisible(self, (byte) uniform.ordinal());
+        }
+        for (int z = 0; z < Chunk.SIZE_Z; z++) {
+            for (int x = 0; x < Chunk.SIZE_X; x++) {
+                if (isFaceVisible(self, (byte) chunk.getBlock(x, y, z).ordinal())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void meshRange(int y0, int y1, MeshData opaque, MeshData water) {
+        lo[0] = 0;
+        lo[1] = y0;
+        lo[2] = 0;
+        hi[0] = Chunk.SIZE_X;
+        hi[1] = y1;
+        hi[2] = Chunk.SIZE_Z;
+
+        for (int d = 0; d < 3; d++) {
+            int u = (d + 1) % 3;
+            int v = (d + 2) % 3;
+            for (int side = -1; side <= 1; side += 2) {
+                for (int k = lo[d]; k < hi[d]; k++) {
+                    buildMask(d, u, v, side, k);
+                    mergeMask(d, u, v, side, k, opaque, water);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the padded copy for chunk rows {@code [y0, y1)} plus one row above and below.
+     */
+    private void fillPadded(Chunk chunk, BlockAccess neighbors, int y0, int y1) {
+        int baseX = chunk.getChunkX() * Chunk.SIZE_X;
+        int baseZ = chunk.getChunkZ() * Chunk.SIZE_Z;
+
+        byte air = (byte) BlockType.AIR.ordinal();
+        byte stone = (byte) BlockType.STONE.ordinal();
+        byte sky = (byte) LightStorage.FULL_SKY;
+        LightStorage chunkLight = chunk.getLight();
+
+        for (int y = y0 - 1; y <= y1; y++) {
+            for (int z = -1; z <= Chunk.SIZE_Z; z++) {
+                for (int x = -1; x <= Chunk.SIZE_X; x++) {
+                    boolean outX = x < 0 || x >= Chunk.SIZE_X;
+                    boolean outZ = z < 0 || z >= Chunk.SIZE_Z;
+
+                    byte value;
+                    byte light;
+                    if (y < 0) {
+                        // nothing below the world is ever visible
+                        value = stone;
+                        light = 0;
+                    } else if (y >= Chunk.SIZE_Y) {
+                        value = air;
+                        light = sky;
+                    } else if (outX && outZ) {
+                        // corners are never sampled
+                        value = air;
+                        light = sky;
+                    } else if (outX || outZ) {
+                        if (neighbors == null) {
+                            value = air;
+                            light = sky;
+                        } else {
+                            value = (byte) neighbors.getBlockType(baseX + x, y, baseZ + z).ordinal();
+                            light = (byte) neighbors.getLight(baseX + x, y, baseZ + z);
+                        }
+                    } else {
+                        value = (byte) chunk.getBlock(x, y, z).ordinal();
+                        light = (byte) chunkLight.getPacked(Chunk.index(x, y, z));
+                    }
+
+                    int index = (x + 1) + (y + 1) * STRIDES[1] + (z + 1) * STRIDES[2];
+                    padded[index] = value;
+                    paddedLight[index] = light;
+                }
+            }
+        }
+    }
+
+    private void buildMask(int d, int u, int v, int side, int k) {
+        int offset = side * STRIDES[d];
+        int n = 0;
+        for (int j = lo[v]; j < hi[v]; j++) {
+            for (int i = lo[u]; i < hi[u]; i++) {
+                int index = (k + 1) * STRIDES[d] + (i + 1) * STRIDES[u] + (j + 1) * STRIDES[v];
+                byte self = padded[index];
+                byte other = padded[index + offset];
+                if (isFaceVisible(self, other)) {
+                    int light = paddedLight[index + offset] & 0xFF;
+                    int level = Math.max(Math.max(light >> 4, light & 0xF), TYPES[self].getLightEmission());
+                    mask[n++] = (self + 1) | (level << 8);
+                } else {
+                    mask[n++] = 0;
+                }
+            }
+        }
+    }
+
+    private static boolean isFaceVisible(byte self, byte other) {
+        BlockType selfType = TYPES[self];
+        if (selfType.color == null) {
+            return false;
+        }
+        BlockType otherType = TYPES[other];
+        if (selfType.isSolid()) {
+            return !otherType.isSolid();
+        }
+        return otherType != selfType && !otherType.isSolid();
+    }
+
+    private void mergeMask(int d, int u, int v, int side, int k, MeshData opaque, MeshData water) {
+        int du = hi[u] - lo[u];
+        int dv = hi[v] - lo[v];
+
+        int n = 0;
+        for (int j = 0; j < dv; j++) {
+            for (int i = 0; i < du; ) {
+                int value = mask[n];
+                if (value == 0) {
+                    i++;
+                    n++;
+                    continue;
+                }
+
+                int w = 1;
+                while (i + w < du && mask[n + w] == value) {
+                    w++;
+                }
+
+                int h = 1;
+                grow:
+                while (j + h < dv) {
+                    for (int t = 0; t < w; t++) {
+                        if (mask[n + t + h * du] != value) {
+                            break grow;
+                        }
+                    }
+                    h++;
+                }
+
+                BlockType type = TYPES[(value & 0xFF) - 1];
+                emitQuad(type.isSolid() ? opaque : water, LIT_COLORS[type.ordinal()][value >> 8], d, u, v, side, k,
+                        lo[u] + i, lo[v] + j, w, h);
+
+                for (int l = 0; l < h; l++) {
+                    for (int t = 0; t < w; t++) {
+                        mask[n + t + l * du] = 0;
+                    }
+                }
+
+                i += w;
+                n += w;
+            }
+        }
+    }
+
+    private void emitQuad(MeshData target, ColorRGBA color,
+                          int d, int u, int v, int side, int k,
+                          int i, int j, int w, int h) {
+        float plane = k + side * 0.5f;
+        float u0 = i - 0.5f;
+        float u1 = i + w - 0.5f;
+        float v0 = j - 0.5f;
+        float v1 = j + h - 0.5f;
+
+        if (side > 0) {
+            setCorner(0, d, u, v, plane, u0, v0);
+            setCorner(1, d, u, v, plane, u1, v0);
+            setCorner(2, d, u, v, plane, u1, v1);
+            setCorner(3, d, u, v, plane, u0, v1);
+        } else {
+            setCorner(0, d, u, v, plane, u0, v0);
+            setCorner(1, d, u, v, plane, u0, v1);
+            setCorner(2, d, u, v, plane, u1, v1);
+            setCorner(3, d, u, v, plane, u1, v0);
+        }
+
+        float nx = d == 0 ? side : 0f;
+        float ny = d == 1 ? side : 0f;
+        float nz = d == 2 ? side : 0f;
+
+        target.addQuad(corners, nx, ny, nz, color);
+    }
+
+    private void setCorner(int corner, int d, int u, int v, float plane, float cu, float cv) {
+        int base = corner * 3;
+        corners[base + d] = plane;
+        corners[base + u] = cu;
+        corners[base + v] = cv;
+    }
+}
@@ -0,0 +1,252 @@
+package com.alextoday.game.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs chunk generation and mesh building on a worker pool, and rebuilds
+ * sections of loaded chunks from a copy, see {@link #submitRemesh}.
+ *
+ * Jobs are submitted and integrated on the render thread only. Workers put
+ * finished chunks into a queue, and {@link #integrate(long, Consumer)} hands them
+ * back to the render thread within a time budget so scene-graph and physics
+ * changes stay on that thread.
+ */
+public class ChunkPipeline {
+
+    /**
+     * Work done on a worker thread. Should check {@link Job#isCancelled()}
+     * between stages and return {@code null} when the job was cancelled.
+     */
+    public interface ChunkBuilder {
+        Chunk build(Job job);
+    }
+
+    public static final class Job {
+        private final int chunkX;
+        private final int chunkZ;
+        private final BlockAccess borders;
+        private final Chunk target;
+        private final Chunk copy;
+        private final int sections;
+
+        private volatile boolean cancelled;
+        private volatile Chunk result;
+        private volatile Throwable error;
+        private Future<?> future;
+
+        private Job(int chunkX, int chunkZ, BlockAccess borders, Chunk target, Chunk copy, int sections) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.borders = borders;
+            this.target = target;
+            this.copy = copy;
+            this.sections = sections;
+        }
+
+        public int getChunkX() {
+            return chunkX;
+        }
+
+        public int getChunkZ() {
+            return chunkZ;
+        }
+
+        public BlockAccess getBorders() {
+            return borders;
+        }
+
+        /**
+         * The loaded chunk whose sections are rebuilt, or {@code null} when
+         * the chunk is to be loaded or generated.
+         */
+        public Chunk getTarget() {
+            return target;
+        }
+
+        /**
+         * Detached copy of {@link #getTarget()} to mesh on the worker.
+         */
+        public Chunk getCopy() {
+            return copy;
+        }
+
+        /**
+         * Sections to rebuild, one bit each.
+         */
+        public int getSections() {
+            return sections;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * The built chunk, once the job was handed to the integration sink.
+         */
+        public Chunk getResult() {
+            return result;
+        }
+    }
+
+    private final ChunkBuilder builder;
+    private final ExecutorService workers;
+
+    private final LongObjectMap<Job> pending = new LongObjectMap<>(64);
+    private final List<Job> cancelScratch = new ArrayList<>();
+    private final Queue<Job> completed = new ConcurrentLinkedQueue<>();
+
+    public ChunkPipeline(ChunkBuilder builder, int threads) {
+        this.builder = builder;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "chunk-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+    }
+
+    public static int defaultThreadCount() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    public boolean isPending(int chunkX, int chunkZ) {
+        return pending.containsKey(Chunk.key(chunkX, chunkZ));
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public void submit(int chunkX, int chunkZ, BlockAccess borders) {
+        long key = Chunk.key(chunkX, chunkZ);
+        if (pending.containsKey(key)) {
+            return;
+        }
+
+        start(key, new Job(chunkX, chunkZ, borders, null, null, 0));
+    }
+
+    /**
+     * Rebuilds {@code sections} of the loaded {@code chunk} on a worker from
+     * {@code copy}, taken on the render thread, so the sink can move the new
+     * section meshes over. Does nothing while a job for the chunk is pending.
+     */
+    public void submitRemesh(Chunk chunk, Chunk copy, int sections, BlockAccess borders) {
+        long key = Chunk.key(chunk.getChunkX(), chunk.getChunkZ());
+        if (pending.containsKey(key)) {
+            return;
+        }
+
+        start(key, new Job(chunk.getChunkX(), chunk.getChunkZ(), borders, chunk, copy, sections));
+    }
+
+    private void start(long key, Job job) {
+        pending.put(key, job);
+        job.future = workers.submit(() -> run(job));
+    }
+
+    private void run(Job job) {
+        if (job.cancelled) {
+            return;
+        }
+        try {
+            job.result = builder.build(job);
+        } catch (Throwable t) {
+            job.error = t;
+        }
+        if (!job.cancelled) {
+            completed.add(job);
+        }
+    }
+
+    /**
+     * Cancels queued or running jobs for chunks outside the square radius.
+     * Remesh jobs are left to finish, the sink hands their sections back to a
+     * chunk that was unloaded meanwhile.
+     */
+    public void cancelOutside(int centerCx, int centerCz, int radiusChunks) {
+        for (Job job : pending.values()) {
+            if (job.target == null && (Math.abs(job.chunkX - centerCx) > radiusChunks
+                    || Math.abs(job.chunkZ - centerCz) > radiusChunks)) {
+                cancelScratch.add(job);
+            }
+        }
+        for (Job job : cancelScratch) {
+            job.cancelled = true;
+            job.future.cancel(false);
+            pending.remove(Chunk.key(job.chunkX, job.chunkZ));
+        }
+        cancelScratch.clear();
+    }
+
+    /**
+     * Hands finished jobs with their chunk to {@code sink} until the budget is
+     * used up. At least one chunk is integrated per call so loading always progresses.
+     *
+     * @return number of chunks integrated
+     */
+    public int integrate(long budgetNanos, Consumer<Job> sink) {
+        long start = System.nanoTime();
+        int integrated = 0;
+
+        Job job;
+        while ((job = completed.poll()) != null) {
+            long key = Chunk.key(job.chunkX, job.chunkZ);
+            if (job.cancelled || pending.get(key) != job) {
+                continue;
+            }
+            pending.remove(key);
+
+            if (job.error != null) {
+                throw new IllegalStateException(
+                        "Chunk " + job.chunkX + "," + job.chunkZ + " failed to build", job.error);
+            }
+            if (job.result == null) {
+                continue;
+            }
+
+            sink.accept(job);
+            integrated++;
+
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+        return integrated;
+    }
+
+    /**
+     * Blocks until every pending job has finished, then integrates all of them.
+     */
+    public void awaitAll(Consumer<Job> sink) {
+        for (Job job : pending.values().toArray(new Job[0])) {
+            try {
+                job.future.get();
+            } catch (Exception e) {
+                throw new IllegalStateException("Chunk " + job.chunkX + "," + job.chunkZ
+                        + " failed to build", e);
+            }
+        }
+        integrate(Long.MAX_VALUE, sink);
+    }
+
+    public void shutdown() {
+        for (Job job : pending.values()) {
+            job.cancelled = true;
+        }
+        pending.clear();
+        completed.clear();
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,147 @@
+package com.alextoday.game.world;
+
+import java.util.Collection;
+
+/**
+ * Loaded chunks keyed by {@link Chunk#key(int, int)}.
+ *
+ * Lookups go through the last chunk that was returned and its direct
+ * neighbor links before falling back to the hash table, so the usual
+ * access pattern (many reads in one chunk or across its border) skips
+ * hashing entirely. Render thread only, except for the published copy
+ * read through {@link #getPublished}.
+ */
+public class ChunkRegistry {
+
+    private final LongObjectMap<Chunk> chunks = new LongObjectMap<>(64);
+    private Chunk lastHit;
+    private long lookups;
+
+    // immutable copy for other threads, replaced by publish(); the volatile write publishes the chunks in it
+    private volatile LongObjectMap<Chunk> published = new LongObjectMap<>();
+    private boolean changed;
+
+    public Chunk get(int cx, int cz) {
+        lookups++;
+
+        Chunk last = lastHit;
+        if (last != null) {
+            int dx = cx - last.getChunkX();
+            int dz = cz - last.getChunkZ();
+            if (dx == 0 && dz == 0) {
+                return last;
+            }
+            if (Math.abs(dx) + Math.abs(dz) == 1) {
+                Chunk neighbor = last.getNeighbor(dx, dz);
+                if (neighbor != null) {
+                    lastHit = neighbor;
+                    return neighbor;
+                }
+            }
+        }
+
+        Chunk chunk = chunks.get(Chunk.key(cx, cz));
+        if (chunk != null) {
+            lastHit = chunk;
+        }
+        return chunk;
+    }
+
+    public boolean contains(int cx, int cz) {
+        return chunks.containsKey(Chunk.key(cx, cz));
+    }
+
+    public void put(Chunk chunk) {
+        int cx = chunk.getChunkX();
+        int cz = chunk.getChunkZ();
+
+        Chunk old = chunks.put(Chunk.key(cx, cz), chunk);
+        changed = true;
+        if (old != null && old != chunk) {
+            unlink(old);
+        }
+
+        link(chunk, chunks.get(Chunk.key(cx - 1, cz)), -1, 0);
+        link(chunk, chunks.get(Chunk.key(cx + 1, cz)), 1, 0);
+        link(chunk, chunks.get(Chunk.key(cx, cz - 1)), 0, -1);
+        link(chunk, chunks.get(Chunk.key(cx, cz + 1)), 0, 1);
+    }
+
+    public Chunk remove(int cx, int cz) {
+        Chunk chunk = chunks.remove(Chunk.key(cx, cz));
+        if (chunk != null) {
+            unlink(chunk);
+            changed = true;
+        }
+        return chunk;
+    }
+
+    private static void link(Chunk chunk, Chunk neighbor, int dx, int dz) {
+        chunk.setNeighbor(dx, dz, neighbor);
+        if (neighbor != null) {
+            neighbor.setNeighbor(-dx, -dz, chunk);
+        }
+    }
+
+    private void unlink(Chunk chunk) {
+        for (int side = 0; side < 4; side++) {
+            int dx = Chunk.NEIGHBOR_DX[side];
+            int dz = Chunk.NEIGHBOR_DZ[side];
+            Chunk neighbor = chunk.getNeighbor(dx, dz);
+            if (neighbor != null && neighbor.getNeighbor(-dx, -dz) == chunk) {
+                neighbor.setNeighbor(-dx, -dz, null);
+            }
+            chunk.setNeighbor(dx, dz, null);
+        }
+        if (lastHit == chunk) {
+            lastHit = null;
+        }
+    }
+
+    /**
+     * Makes the chunks added and removed since the last call visible to
+     * {@link #getPublished}. Copies the table, so call it once per frame
+     * rather than per chunk.
+     */
+    public void publish() {
+        if (!changed) {
+            return;
+        }
+        LongObjectMap<Chunk> copy = new LongObjectMap<>(chunks.size());
+        for (Chunk chunk : chunks.values()) {
+            copy.put(Chunk.key(chunk.getChunkX(), chunk.getChunkZ()), chunk);
+        }
+        published = copy;
+        changed = false;
+    }
+
+    /**
+     * Chunk as of the last {@link #publish()}, safe to call from any thread.
+     * A chunk unloaded since then is still returned and still readable.
+     */
+    public Chunk getPublished(int cx, int cz) {
+        return published.get(Chunk.key(cx, cz));
+    }
+
+    public int size() {
+        return chunks.size();
+    }
+
+    /**
+     * Read-only view of the loaded chunks. Do not add or remove while iterating.
+     */
+    public Collection<Chunk> values() {
+        return chunks.values();
+    }
+
+    /**
+     * Number of {@link #get(int, int)} calls since the last reset.
+     */
+    public long getLookupCount() {
+        return lookups;
+    }
+
+    public void resetLookupCount() {
+        lookups = 0;
+    }
+}
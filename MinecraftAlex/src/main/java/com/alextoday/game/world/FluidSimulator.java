@@ -0,0 +1,160 @@
+package com.alextoday.game.world;
+
+/**
+ * Flowing water on top of {@link TickScheduler}. Nothing is simulated until a
+ * block next to water changes; then only the water blocks around the change
+ * are ticked, and each of them schedules its neighbors only when it changes
+ * something, so still water costs nothing.
+ *
+ * Water keeps a flow level per block ({@link Chunk#getFluidLevel}): 0 for
+ * source blocks, 1..{@value #MAX_SPREAD} for water spreading sideways, one
+ * more per block, and {@value #FALLING} for water falling from above. Flowing
+ * water that loses its supply dries up one level per update.
+ */
+public class FluidSimulator implements TickScheduler.Handler {
+
+    public static final int FALLING = 8;
+    public static final int MAX_SPREAD = 7;
+
+    // ticks between a change and the water reacting to it
+    private static final int FLOW_DELAY_TICKS = 5;
+
+    private static final int[] SIDE_DX = {-1, 1, 0, 0};
+    private static final int[] SIDE_DZ = {0, 0, -1, 1};
+
+    private final World world;
+    private final TickScheduler scheduler;
+
+    public FluidSimulator(World world, TickScheduler scheduler) {
+        this.world = world;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Wakes up the water at and around a block that just changed.
+     */
+    public void onBlockChanged(int x, int y, int z) {
+        scheduleIfWater(x, y, z);
+        scheduleIfWater(x, y + 1, z);
+        scheduleIfWater(x, y - 1, z);
+        for (int d = 0; d < 4; d++) {
+            scheduleIfWater(x + SIDE_DX[d], y, z + SIDE_DZ[d]);
+        }
+    }
+
+    private void scheduleIfWater(int x, int y, int z) {
+        if (world.getBlockType(x, y, z) == BlockType.WATER) {
+            scheduler.schedule(x, y, z, FLOW_DELAY_TICKS);
+        }
+    }
+
+    @Override
+    public void onScheduledTick(int x, int y, int z) {
+        if (world.getBlockType(x, y, z) != BlockType.WATER) {
+            return;
+        }
+
+        int level = world.getFluidLevel(x, y, z);
+        if (level != 0) {
+            int expected = supportedLevel(x, y, z);
+            if (expected < 0) {
+                // cut off from its source; the change wakes up the neighbors
+                world.setBlockType(x, y, z, BlockType.AIR);
+                return;
+            }
+            if (expected != level) {
+                world.setFluidLevel(x, y, z, expected);
+                level = expected;
+                onBlockChanged(x, y, z);
+            }
+        }
+
+        if (y > 0) {
+            BlockType below = world.getBlockType(x, y - 1, z);
+            if (below == BlockType.AIR && world.isLoaded(x, z)) {
+                placeWater(x, y - 1, z, FALLING);
+                return;
+            }
+            int belowLevel = below == BlockType.WATER ? world.getFluidLevel(x, y - 1, z) : 0;
+            if (belowLevel != 0) {
+                // pours into flowing water below instead of spreading over it
+                if (belowLevel != FALLING) {
+                    world.setFluidLevel(x, y - 1, z, FALLING);
+                    onBlockChanged(x, y - 1, z);
+                }
+                return;
+            }
+        }
+
+        int spread = (level == FALLING ? 0 : level) + 1;
+        if (spread > MAX_SPREAD) {
+            return;
+        }
+        for (int d = 0; d < 4; d++) {
+            int nx = x + SIDE_DX[d];
+            int nz = z + SIDE_DZ[d];
+            if (!world.isLoaded(nx, nz)) {
+                continue;
+            }
+            BlockType side = world.getBlockType(nx, y, nz);
+            if (side == BlockType.AIR) {
+                placeWater(nx, y, nz, spread);
+            } else if (side == BlockType.WATER) {
+                int sideLevel = world.getFluidLevel(nx, y, nz);
+                if (sideLevel != 0 && sideLevel != FALLING && sideLevel > spread) {
+                    world.setFluidLevel(nx, y, nz, spread);
+                    onBlockChanged(nx, y, nz);
+                }
+            }
+        }
+    }
+
+    private void placeWater(int x, int y, int z, int level) {
+        world.setBlockType(x, y, z, BlockType.WATER);
+        world.setFluidLevel(x, y, z, level);
+    }
+
+    /**
+     * Water spreads sideways only where it cannot flow down: on solid ground
+     * or on a source block.
+     */
+    private boolean spreadsSideways(int x, int y, int z) {
+        if (y == 0) {
+            return true;
+        }
+        BlockType below = world.getBlockType(x, y - 1, z);
+        if (below == BlockType.WATER) {
+            return world.getFluidLevel(x, y - 1, z) == 0;
+        }
+        return below.isSolid();
+    }
+
+    /**
+     * Level a flowing block should have given its neighbors: falling under
+     * water, otherwise one more than the strongest water beside it.
+     *
+     * @return -1 if nothing feeds it
+     */
+    private int supportedLevel(int x, int y, int z) {
+        if (world.getBlockType(x, y + 1, z) == BlockType.WATER) {
+            return FALLING;
+        }
+        int best = Integer.MAX_VALUE;
+        for (int d = 0; d < 4; d++) {
+            int nx = x + SIDE_DX[d];
+            int nz = z + SIDE_DZ[d];
+            if (world.getBlockType(nx, y, nz) != BlockType.WATER) {
+                continue;
+            }
+            if (!spreadsSideways(nx, y, nz)) {
+                continue;
+            }
+            int sideLevel = world.getFluidLevel(nx, y, nz);
+            best = Math.min(best, sideLevel == FALLING ? 0 : sideLevel);
+        }
+        if (best == Integer.MAX_VALUE || best + 1 > MAX_SPREAD) {
+            return -1;
+        }
+        return best + 1;
+    }
+}
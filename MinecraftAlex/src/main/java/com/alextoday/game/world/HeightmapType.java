@@ -0,0 +1,24 @@
+package com.alextoday.game.world;
+
+/**
+ * Kinds of per-column height kept by every {@link Chunk}.
+ */
+public enum HeightmapType {
+    /** Highest block that blocks movement. */
+    SOLID,
+    /** Highest block that is not air, including water. */
+    NON_AIR,
+    /** Highest water block. */
+    WATER;
+
+    public boolean matches(BlockType type) {
+        switch (this) {
+            case SOLID:
+                return type.isSolid();
+            case NON_AIR:
+                return type != BlockType.AIR;
+            default:
+                return type == BlockType.WATER;
+        }
+    }
+}
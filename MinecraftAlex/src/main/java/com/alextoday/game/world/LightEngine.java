@@ -0,0 +1,455 @@
+package com.alextoday.game.world;
+
+/**
+ * Spreads sky and block light through the voxel grid with breadth-first
+ * flood fills, Minecraft style: a level drops by at least one per block and by
+ * the block's {@link BlockType#getLightOpacity() opacity}, and full sky light
+ * travels straight down through transparent blocks without loss.
+ *
+ * A fresh chunk is lit on its own on a worker ({@link #lightChunk}), then
+ * {@link #stitch} lets light cross into and out of its loaded neighbors.
+ * After a block change {@link #onBlockChanged} removes the light that came
+ * through the changed block and refills the hole from its surroundings, so
+ * only the affected area is touched. Every changed level marks the sections
+ * around it dirty so they get remeshed.
+ *
+ * Not thread-safe: keep one instance per thread. Incremental updates run on
+ * the render thread.
+ */
+public class LightEngine {
+
+    // unit steps in the order -x, +x, -y, +y, -z, +z
+    private static final int[] DX = {-1, 1, 0, 0, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1, 0, 0};
+    private static final int[] DZ = {0, 0, 0, 0, -1, 1};
+    private static final int DOWN = 2;
+
+    private final World world;
+
+    // when set, only this chunk is visible and nothing is marked dirty
+    private Chunk isolated;
+
+    // last chunk looked up, most steps stay inside one chunk
+    private Chunk cached;
+
+    private long[] increase = new long[256];
+    private int increaseHead;
+    private int increaseTail;
+
+    private long[] decrease = new long[256];
+    private int decreaseHead;
+    private int decreaseTail;
+
+    private long updatedCells;
+
+    private final int[] columnSunTops = new int[Chunk.SIZE_X * Chunk.SIZE_Z];
+
+    /**
+     * @param world source of neighbor chunks and dirty marking; may be
+     *              {@code null} for an engine that only lights single chunks
+     */
+    public LightEngine(World world) {
+        this.world = world;
+    }
+
+    // x and z take 25 bits each, y 10 bits, the level 4 bits
+    private static long pack(int x, int y, int z, int level) {
+        return ((long) x << 39) | (((long) z & 0x1FFFFFF) << 14) | ((long) (y & 0x3FF) << 4) | level;
+    }
+
+    private static int unpackX(long cell) {
+        return (int) (cell >> 39);
+    }
+
+    private static int unpackZ(long cell) {
+        return (int) ((cell << 25) >> 39);
+    }
+
+    private static int unpackY(long cell) {
+        return (int) (cell >>> 4) & 0x3FF;
+    }
+
+    private static int unpackLevel(long cell) {
+        return (int) cell & 0xF;
+    }
+
+    private void pushIncrease(int x, int y, int z) {
+        if (increaseTail == increase.length) {
+            increase = compact(increase, increaseHead, increaseTail);
+            increaseTail -= increaseHead;
+            increaseHead = 0;
+        }
+        increase[increaseTail++] = pack(x, y, z, 0);
+    }
+
+    private void pushDecrease(int x, int y, int z, int level) {
+        if (decreaseTail == decrease.length) {
+            decrease = compact(decrease, decreaseHead, decreaseTail);
+            decreaseTail -= decreaseHead;
+            decreaseHead = 0;
+        }
+        decrease[decreaseTail++] = pack(x, y, z, level);
+    }
+
+    /**
+     * Drops the consumed head of a full queue, growing it if that frees too little.
+     */
+    private static long[] compact(long[] queue, int head, int tail) {
+        int size = tail - head;
+        long[] target = size > queue.length / 2 ? new long[queue.length * 2] : queue;
+        System.arraycopy(queue, head, target, 0, size);
+        return target;
+    }
+
+    private Chunk chunkAt(int x, int z) {
+        int cx = Math.floorDiv(x, Chunk.SIZE_X);
+        int cz = Math.floorDiv(z, Chunk.SIZE_Z);
+        Chunk chunk = cached;
+        if (chunk != null && chunk.getChunkX() == cx && chunk.getChunkZ() == cz) {
+            return chunk;
+        }
+        if (isolated != null) {
+            return null;
+        }
+        chunk = world.getLoadedChunk(cx, cz);
+        if (chunk != null) {
+            cached = chunk;
+        }
+        return chunk;
+    }
+
+    private static int localIndex(int x, int y, int z) {
+        return Chunk.index(Math.floorMod(x, Chunk.SIZE_X), y, Math.floorMod(z, Chunk.SIZE_Z));
+    }
+
+    private void setLevel(Chunk chunk, int x, int y, int z, boolean sky, int level) {
+        chunk.getLight().set(localIndex(x, y, z), sky, level);
+        updatedCells++;
+        if (isolated == null) {
+            world.markLightDirty(chunk, Math.floorMod(x, Chunk.SIZE_X), y, Math.floorMod(z, Chunk.SIZE_Z));
+        }
+    }
+
+    /**
+     * Lights a chunk that is not in the world yet, treating everything outside
+     * it as dark. Safe on a worker thread while nothing else touches the chunk.
+     */
+    public void lightChunk(Chunk chunk) {
+        isolated = chunk;
+        cached = chunk;
+        try {
+            LightStorage light = chunk.getLight();
+            light.clear();
+
+            int baseX = chunk.getChunkX() * Chunk.SIZE_X;
+            int baseZ = chunk.getChunkZ() * Chunk.SIZE_Z;
+
+            // per column the lowest y reached by direct sunlight
+            int[] sunTop = columnSunTops;
+            int maxSunTop = 0;
+            for (int z = 0; z < Chunk.SIZE_Z; z++) {
+                for (int x = 0; x < Chunk.SIZE_X; x++) {
+                    int top = sunTop(chunk, x, z);
+                    sunTop[z * Chunk.SIZE_X + x] = top;
+                    maxSunTop = Math.max(maxSunTop, top);
+                }
+            }
+
+            // sections above all terrain are in full sky as a whole
+            int firstOpenSection = (maxSunTop + Chunk.SECTION_HEIGHT - 1) / Chunk.SECTION_HEIGHT;
+            for (int s = firstOpenSection; s < Chunk.SECTION_COUNT; s++) {
+                light.fill(s, true, LightStorage.MAX_LEVEL);
+            }
+
+            for (int z = 0; z < Chunk.SIZE_Z; z++) {
+                for (int x = 0; x < Chunk.SIZE_X; x++) {
+                    int top = sunTop[z * Chunk.SIZE_X + x];
+                    // only sunlit blocks beside a darker column or above a block
+                    // that takes light in have anywhere to spread to
+                    int spreadBelow = Math.max(top, neighborSunTop(sunTop, x, z));
+                    for (int y = firstOpenSection * Chunk.SECTION_HEIGHT - 1; y >= top; y--) {
+                        light.setSky(Chunk.index(x, y, z), LightStorage.MAX_LEVEL);
+                        if (y < spreadBelow || y == top) {
+                            pushIncrease(baseX + x, y, baseZ + z);
+                        }
+                    }
+                }
+            }
+            spread(true);
+
+            for (int s = 0; s < Chunk.SECTION_COUNT; s++) {
+                BlockType uniform = chunk.getUniformType(s);
+                if (uniform != null && uniform.getLightEmission() == 0) {
+                    continue;
+                }
+                int y0 = s * Chunk.SECTION_HEIGHT;
+                for (int y = y0; y < y0 + Chunk.SECTION_HEIGHT; y++) {
+                    for (int z = 0; z < Chunk.SIZE_Z; z++) {
+                        for (int x = 0; x < Chunk.SIZE_X; x++) {
+                            int emission = chunk.getBlock(x, y, z).getLightEmission();
+                            if (emission > 0) {
+                                light.setBlock(Chunk.index(x, y, z), emission);
+                                pushIncrease(baseX + x, y, baseZ + z);
+                            }
+                        }
+                    }
+                }
+            }
+            spread(false);
+        } finally {
+            isolated = null;
+            cached = null;
+        }
+    }
+
+    /**
+     * Lowest y of column {@code (x, z)} that direct sunlight reaches, skipping
+     * sections that hold only blocks it passes through.
+     */
+    private static int sunTop(Chunk chunk, int x, int z) {
+        for (int y = Chunk.SIZE_Y - 1; y >= 0; y--) {
+            BlockType uniform = chunk.getUniformType(y / Chunk.SECTION_HEIGHT);
+            if (uniform != null && uniform.getLightOpacity() == 0) {
+                y = y / Chunk.SECTION_HEIGHT * Chunk.SECTION_HEIGHT;
+            } else if (chunk.getBlock(x, y, z).getLightOpacity() != 0) {
+                return y + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Highest sun top among the columns beside {@code (x, z)} within the chunk.
+     */
+    private static int neighborSunTop(int[] sunTop, int x, int z) {
+        int top = 0;
+        if (x > 0) {
+            top = Math.max(top, sunTop[z * Chunk.SIZE_X + x - 1]);
+        }
+        if (x < Chunk.SIZE_X - 1) {
+            top = Math.max(top, sunTop[z * Chunk.SIZE_X + x + 1]);
+        }
+        if (z > 0) {
+            top = Math.max(top, sunTop[(z - 1) * Chunk.SIZE_X + x]);
+        }
+        if (z < Chunk.SIZE_Z - 1) {
+            top = Math.max(top, sunTop[(z + 1) * Chunk.SIZE_X + x]);
+        }
+        return top;
+    }
+
+    /**
+     * Lets light flow across the borders between a newly added chunk and its
+     * loaded neighbors, in both directions.
+     */
+    public void stitch(Chunk chunk) {
+        for (int channel = 0; channel < 2; channel++) {
+            boolean sky = channel == 0;
+            for (int side = 0; side < 4; side++) {
+                Chunk neighbor = chunk.getNeighbor(Chunk.NEIGHBOR_DX[side], Chunk.NEIGHBOR_DZ[side]);
+                if (neighbor == null) {
+                    continue;
+                }
+                seedBorder(chunk, side, neighbor, sky);
+                seedBorder(neighbor, side ^ 1, chunk, sky);
+            }
+            spread(sky);
+        }
+        cached = null;
+    }
+
+    /**
+     * Queues the blocks on one chunk face, {@code side} as in {@link Chunk#NEIGHBOR_DX},
+     * that are bright enough to raise the block facing them in {@code neighbor}.
+     */
+    private void seedBorder(Chunk chunk, int side, Chunk neighbor, boolean sky) {
+        boolean alongZ = side < 2;
+        int size = alongZ ? Chunk.SIZE_X : Chunk.SIZE_Z;
+        int fixed = (side & 1) == 0 ? 0 : size - 1;
+        int opposite = size - 1 - fixed;
+        int length = alongZ ? Chunk.SIZE_Z : Chunk.SIZE_X;
+        int baseX = chunk.getChunkX() * Chunk.SIZE_X;
+        int baseZ = chunk.getChunkZ() * Chunk.SIZE_Z;
+        LightStorage light = chunk.getLight();
+        LightStorage neighborLight = neighbor.getLight();
+
+        for (int y = 0; y < Chunk.SIZE_Y; y++) {
+            int section = y / Chunk.SECTION_HEIGHT;
+            int level = light.getUniformLevel(section, sky);
+            int neighborLevel = neighborLight.getUniformLevel(section, sky);
+            if (level >= 0 && (level <= 1 || (neighborLevel >= 0 && level - 1 <= neighborLevel))) {
+                // nothing in this section is bright enough to raise the other side
+                y += Chunk.SECTION_HEIGHT - 1;
+                continue;
+            }
+            for (int i = 0; i < length; i++) {
+                int x = alongZ ? fixed : i;
+                int z = alongZ ? i : fixed;
+                level = light.get(Chunk.index(x, y, z), sky);
+                if (level <= 1) {
+                    continue;
+                }
+                int nx = alongZ ? opposite : i;
+                int nz = alongZ ? i : opposite;
+                int opacity = neighbor.getBlock(nx, y, nz).getLightOpacity();
+                if (level - Math.max(1, opacity) > neighborLight.get(Chunk.index(nx, y, nz), sky)) {
+                    pushIncrease(baseX + x, y, baseZ + z);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates both light channels after the block at {@code (x, y, z)} changed.
+     */
+    public void onBlockChanged(int x, int y, int z) {
+        Chunk chunk = chunkAt(x, z);
+        if (chunk == null) {
+            return;
+        }
+        BlockType newType = chunk.getBlock(Math.floorMod(x, Chunk.SIZE_X), y, Math.floorMod(z, Chunk.SIZE_Z));
+        for (int channel = 0; channel < 2; channel++) {
+            boolean sky = channel == 0;
+            int index = localIndex(x, y, z);
+
+            int old = chunk.getLight().get(index, sky);
+            if (old > 0) {
+                setLevel(chunk, x, y, z, sky, 0);
+                pushDecrease(x, y, z, old);
+                unspread(sky);
+            }
+
+            if (!sky && newType.getLightEmission() > 0) {
+                setLevel(chunk, x, y, z, false, newType.getLightEmission());
+                pushIncrease(x, y, z);
+            } else if (sky && y == Chunk.SIZE_Y - 1 && newType.getLightOpacity() == 0) {
+                setLevel(chunk, x, y, z, true, LightStorage.MAX_LEVEL);
+                pushIncrease(x, y, z);
+            }
+
+            // let the surroundings flow back into the block
+            for (int d = 0; d < 6; d++) {
+                int ny = y + DY[d];
+                if (ny < 0 || ny >= Chunk.SIZE_Y) {
+                    continue;
+                }
+                Chunk neighbor = chunkAt(x + DX[d], z + DZ[d]);
+                if (neighbor != null && neighbor.getLight().get(localIndex(x + DX[d], ny, z + DZ[d]), sky) > 0) {
+                    pushIncrease(x + DX[d], ny, z + DZ[d]);
+                }
+            }
+            spread(sky);
+        }
+        cached = null;
+    }
+
+    /**
+     * Removal pass: clears every level that was fed by the queued blocks and
+     * queues the brighter blocks around the cleared area for {@link #spread}.
+     */
+    private void unspread(boolean sky) {
+        while (decreaseHead < decreaseTail) {
+            long cell = decrease[decreaseHead++];
+            int x = unpackX(cell);
+            int y = unpackY(cell);
+            int z = unpackZ(cell);
+            int level = unpackLevel(cell);
+
+            for (int d = 0; d < 6; d++) {
+                int ny = y + DY[d];
+                if (ny < 0 || ny >= Chunk.SIZE_Y) {
+                    continue;
+                }
+                int nx = x + DX[d];
+                int nz = z + DZ[d];
+                Chunk chunk = chunkAt(nx, nz);
+                if (chunk == null) {
+                    continue;
+                }
+
+                int index = localIndex(nx, ny, nz);
+                int neighborLevel = chunk.getLight().get(index, sky);
+                if (neighborLevel == 0) {
+                    continue;
+                }
+
+                boolean sunColumn = sky && d == DOWN && level == LightStorage.MAX_LEVEL;
+                if (neighborLevel < level || sunColumn) {
+                    setLevel(chunk, nx, ny, nz, sky, 0);
+                    pushDecrease(nx, ny, nz, neighborLevel);
+
+                    int emission = sky ? 0 : chunk.getBlock(Math.floorMod(nx, Chunk.SIZE_X), ny,
+                            Math.floorMod(nz, Chunk.SIZE_Z)).getLightEmission();
+                    if (emission > 0) {
+                        setLevel(chunk, nx, ny, nz, false, emission);
+                        pushIncrease(nx, ny, nz);
+                    }
+                } else {
+                    pushIncrease(nx, ny, nz);
+                }
+            }
+        }
+        decreaseHead = 0;
+        decreaseTail = 0;
+    }
+
+    /**
+     * Propagation pass: raises the neighbors of every queued block to its
+     * level minus the loss through them, queueing each block that got brighter.
+     */
+    private void spread(boolean sky) {
+        while (increaseHead < increaseTail) {
+            long cell = increase[increaseHead++];
+            int x = unpackX(cell);
+            int y = unpackY(cell);
+            int z = unpackZ(cell);
+
+            Chunk chunk = chunkAt(x, z);
+            if (chunk == null) {
+                continue;
+            }
+            int level = chunk.getLight().get(localIndex(x, y, z), sky);
+            if (level <= 1) {
+                continue;
+            }
+
+            for (int d = 0; d < 6; d++) {
+                int ny = y + DY[d];
+                if (ny < 0 || ny >= Chunk.SIZE_Y) {
+                    continue;
+                }
+                int nx = x + DX[d];
+                int nz = z + DZ[d];
+                Chunk target = chunkAt(nx, nz);
+                if (target == null) {
+                    continue;
+                }
+
+                int lx = Math.floorMod(nx, Chunk.SIZE_X);
+                int lz = Math.floorMod(nz, Chunk.SIZE_Z);
+                int opacity = target.getBlock(lx, ny, lz).getLightOpacity();
+                if (opacity >= LightStorage.MAX_LEVEL) {
+                    continue;
+                }
+
+                int next = sky && d == DOWN && level == LightStorage.MAX_LEVEL && opacity == 0
+                        ? LightStorage.MAX_LEVEL
+                        : level - Math.max(1, opacity);
+                int index = Chunk.index(lx, ny, lz);
+                if (next > target.getLight().get(index, sky)) {
+                    setLevel(target, nx, ny, nz, sky, next);
+                    pushIncrease(nx, ny, nz);
+                }
+            }
+        }
+        increaseHead = 0;
+        increaseTail = 0;
+    }
+
+    /**
+     * Light levels written since the engine was created.
+     */
+    public long getUpdatedCellCount() {
+        return updatedCells;
+    }
+}
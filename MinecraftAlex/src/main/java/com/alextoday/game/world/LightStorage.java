@@ -0,0 +1,194 @@
+package com.alextoday.game.world;
+
+import java.util.Arrays;
+
+/**
+ * Sky and block light of a chunk, 0..{@value #MAX_LEVEL} per block, packed as
+ * two 4-bit values per byte in one array per channel and section. Indexed like
+ * the block storage: {@code (y * SIZE_Z + z) * SIZE_X + x}.
+ *
+ * A section whose blocks all have the same level, such as open sky above the
+ * terrain or dark rock below it, keeps only that level and gets its arrays
+ * once a block in it differs.
+ */
+public class LightStorage {
+
+    public static final int MAX_LEVEL = 15;
+
+    /**
+     * {@link #getPacked} value of a block in open sky without block light.
+     */
+    public static final int FULL_SKY = MAX_LEVEL << 4;
+
+    private static final int SECTION_BYTES = Chunk.SECTION_VOLUME / 2;
+
+    private final byte[][] sky;
+    private final byte[][] block;
+    // level of every block of a section without an array
+    private final byte[] uniformSky;
+    private final byte[] uniformBlock;
+
+    public LightStorage(int sections) {
+        this.sky = new byte[sections][];
+        this.block = new byte[sections][];
+        this.uniformSky = new byte[sections];
+        this.uniformBlock = new byte[sections];
+    }
+
+    private static int get(byte[][] channel, byte[] uniform, int index) {
+        byte[] nibbles = channel[index >> Chunk.SECTION_SHIFT];
+        if (nibbles == null) {
+            return uniform[index >> Chunk.SECTION_SHIFT];
+        }
+        int local = index & (Chunk.SECTION_VOLUME - 1);
+        return (nibbles[local >> 1] >> ((local & 1) << 2)) & 0xF;
+    }
+
+    private static void set(byte[][] channel, byte[] uniform, int index, int level) {
+        int section = index >> Chunk.SECTION_SHIFT;
+        byte[] nibbles = channel[section];
+        if (nibbles == null) {
+            if (uniform[section] == level) {
+                return;
+            }
+            nibbles = new byte[SECTION_BYTES];
+            Arrays.fill(nibbles, (byte) (uniform[section] * 0x11));
+            channel[section] = nibbles;
+        }
+        int local = index & (Chunk.SECTION_VOLUME - 1);
+        int shift = (local & 1) << 2;
+        int i = local >> 1;
+        nibbles[i] = (byte) ((nibbles[i] & ~(0xF << shift)) | ((level & 0xF) << shift));
+    }
+
+    public int getSky(int index) {
+        return get(sky, uniformSky, index);
+    }
+
+    public void setSky(int index, int level) {
+        set(sky, uniformSky, index, level);
+    }
+
+    public int getBlock(int index) {
+        return get(block, uniformBlock, index);
+    }
+
+    public void setBlock(int index, int level) {
+        set(block, uniformBlock, index, level);
+    }
+
+    public int get(int index, boolean skyChannel) {
+        return skyChannel ? getSky(index) : getBlock(index);
+    }
+
+    public void set(int index, boolean skyChannel, int level) {
+        if (skyChannel) {
+            setSky(index, level);
+        } else {
+            setBlock(index, level);
+        }
+    }
+
+    /**
+     * Both channels as {@code sky << 4 | block}.
+     */
+    public int getPacked(int index) {
+        return (getSky(index) << 4) | getBlock(index);
+    }
+
+    /**
+     * Sets the level of every block in a section of one channel and drops its array.
+     */
+    public void fill(int section, boolean skyChannel, int level) {
+        if (skyChannel) {
+            sky[section] = null;
+            uniformSky[section] = (byte) level;
+        } else {
+            block[section] = null;
+            uniformBlock[section] = (byte) level;
+        }
+    }
+
+    /**
+     * The level of every block in a section of one channel, or -1 if the
+     * section has its own array.
+     */
+    public int getUniformLevel(int section, boolean skyChannel) {
+        if (skyChannel) {
+            return sky[section] == null ? uniformSky[section] : -1;
+        }
+        return block[section] == null ? uniformBlock[section] : -1;
+    }
+
+    /**
+     * A copy of both channels, e.g. to find the sections a relight changed.
+     */
+    public LightStorage copy() {
+        LightStorage copy = new LightStorage(sky.length);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /**
+     * Replaces both channels with a copy of {@code other}'s, which has as many sections.
+     */
+    public void copyFrom(LightStorage other) {
+        for (int s = 0; s < sky.length; s++) {
+            sky[s] = other.sky[s] == null ? null : other.sky[s].clone();
+            block[s] = other.block[s] == null ? null : other.block[s].clone();
+        }
+        System.arraycopy(other.uniformSky, 0, uniformSky, 0, uniformSky.length);
+        System.arraycopy(other.uniformBlock, 0, uniformBlock, 0, uniformBlock.length);
+    }
+
+    /**
+     * Sections, one bit each, in which a level of either channel differs from {@code other}.
+     */
+    public int changedSections(LightStorage other) {
+        int mask = 0;
+        for (int s = 0; s < sky.length; s++) {
+            if (differs(sky[s], uniformSky[s], other.sky[s], other.uniformSky[s])
+                    || differs(block[s], uniformBlock[s], other.block[s], other.uniformBlock[s])) {
+                mask |= 1 << s;
+            }
+        }
+        return mask;
+    }
+
+    private static boolean differs(byte[] nibbles, byte uniform, byte[] otherNibbles, byte otherUniform) {
+        if (nibbles == null && otherNibbles == null) {
+            return uniform != otherUniform;
+        }
+        if (nibbles != null && otherNibbles != null) {
+            return !Arrays.equals(nibbles, otherNibbles);
+        }
+        byte[] array = nibbles != null ? nibbles : otherNibbles;
+        byte filled = (byte) ((nibbles != null ? otherUniform : uniform) * 0x11);
+        for (byte b : array) {
+            if (b != filled) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void clear() {
+        Arrays.fill(sky, null);
+        Arrays.fill(block, null);
+        Arrays.fill(uniformSky, (byte) 0);
+        Arrays.fill(uniformBlock, (byte) 0);
+    }
+
+    public long estimateMemoryBytes() {
+        long bytes = 48 + 2L * (16 + 4L * sky.length) + 2L * (16 + uniformSky.length);
+        for (int s = 0; s < sky.length; s++) {
+            if (sky[s] != null) {
+                bytes += 16 + SECTION_BYTES;
+            }
+            if (block[s] != null) {
+                bytes += 16 + SECTION_BYTES;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,335 @@
+package com.alextoday.game.world;
+
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Low-detail terrain around the full-detail chunks.
+ *
+ * The world is split into tiles of {@value #TILE_CHUNKS}x{@value #TILE_CHUNKS}
+ * chunks. Each tile is one heightfield mesh sampled straight from the terrain
+ * noise every 2, 4 or 8 blocks depending on its distance, so it has no block
+ * storage and no physics. Chunks that are loaded in full detail are cut out of
+ * their tile, which makes the rings give way to real chunks as they arrive.
+ * Cell edges get walls down to the neighbor cell, and skirts at cut-outs and
+ * tile borders hide the cracks between resolutions. Render thread only.
+ */
+public class LodTerrain {
+
+    public static final int TILE_CHUNKS = 4;
+
+    private static final int TILE_BLOCKS = TILE_CHUNKS * Chunk.SIZE_X;
+
+    private static final ColorRGBA WATER_COLOR = new ColorRGBA(
+            BlockType.WATER.color.r, BlockType.WATER.color.g, BlockType.WATER.color.b, 1f);
+
+    private static final class Tile {
+        final int tileX;
+        final int tileZ;
+        int step;
+        int excludedMask;
+        int distance;
+        boolean wanted;
+        boolean built;
+        Geometry geometry;
+
+        Tile(int tileX, int tileZ) {
+            this.tileX = tileX;
+            this.tileZ = tileZ;
+        }
+    }
+
+    private final Node node = new Node("lod");
+    private final ChunkRegistry chunks;
+    private final PerlinNoise noise;
+    private final int baseHeight;
+    private final int amplitude;
+    private final Material material;
+
+    private final LongObjectMap<Tile> tiles = new LongObjectMap<>(64);
+    private final List<Tile> scratch = new ArrayList<>();
+    private final MeshData meshData = new MeshData(256);
+    private final float[] corners = new float[12];
+    private double[] heights = new double[0];
+
+    private int radiusChunks;
+    private long buildBudgetNanos = 2_000_000L;
+
+    LodTerrain(ChunkRegistry chunks, PerlinNoise noise, int baseHeight, int amplitude, Material material) {
+        this.chunks = chunks;
+        this.noise = noise;
+        this.baseHeight = baseHeight;
+        this.amplitude = amplitude;
+        this.material = material;
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    /**
+     * Outer radius in chunks; 0 turns the rings off.
+     */
+    public void setRadius(int radiusChunks) {
+        this.radiusChunks = Math.max(0, radiusChunks);
+    }
+
+    public int getRadius() {
+        return radiusChunks;
+    }
+
+    /**
+     * Time per {@link #update} call that may be spent (re)building tiles.
+     * At least one tile is built per call.
+     */
+    public void setBuildBudgetMillis(float millis) {
+        this.buildBudgetNanos = (long) (millis * 1_000_000L);
+    }
+
+    public int getTileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * Horizontal sample spacing in blocks for a tile whose nearest chunk is
+     * {@code distance} chunks from the player.
+     */
+    private int stepFor(int distance) {
+        if (distance <= Math.max(4, radiusChunks / 4)) {
+            return 2;
+        }
+        if (distance <= radiusChunks / 2) {
+            return 4;
+        }
+        return 8;
+    }
+
+    /**
+     * @param loadedRadius chunks farther than this from the center are never
+     *                     loaded in full detail, so their tiles skip the lookups
+     */
+    public void update(int centerCx, int centerCz, int loadedRadius) {
+        for (Tile tile : tiles.values()) {
+            tile.wanted = false;
+        }
+
+        if (radiusChunks > 0) {
+            int minTx = Math.floorDiv(centerCx - radiusChunks, TILE_CHUNKS);
+            int maxTx = Math.floorDiv(centerCx + radiusChunks, TILE_CHUNKS);
+            int minTz = Math.floorDiv(centerCz - radiusChunks, TILE_CHUNKS);
+            int maxTz = Math.floorDiv(centerCz + radiusChunks, TILE_CHUNKS);
+
+            for (int tx = minTx; tx <= maxTx; tx++) {
+                for (int tz = minTz; tz <= maxTz; tz++) {
+                    updateTile(tx, tz, centerCx, centerCz, loadedRadius);
+                }
+            }
+        }
+
+        scratch.clear();
+        for (Tile tile : tiles.values()) {
+            if (!tile.wanted || !tile.built) {
+                scratch.add(tile);
+            }
+        }
+
+        // drop unwanted tiles first, then build the nearest missing ones
+        scratch.sort((a, b) -> Integer.compare(a.distance, b.distance));
+        long start = System.nanoTime();
+        boolean first = true;
+        for (Tile tile : scratch) {
+            if (!tile.wanted) {
+                if (tile.geometry != null) {
+                    tile.geometry.removeFromParent();
+                }
+                tiles.remove(Chunk.key(tile.tileX, tile.tileZ));
+            } else if (first || System.nanoTime() - start < buildBudgetNanos) {
+                build(tile);
+                first = false;
+            }
+        }
+        scratch.clear();
+    }
+
+    private void updateTile(int tx, int tz, int centerCx, int centerCz, int loadedRadius) {
+        int x0 = tx * TILE_CHUNKS;
+        int z0 = tz * TILE_CHUNKS;
+
+        // Chebyshev distance from the center chunk to the nearest chunk of the tile
+        int dx = Math.max(0, Math.max(x0 - centerCx, centerCx - (x0 + TILE_CHUNKS - 1)));
+        int dz = Math.max(0, Math.max(z0 - centerCz, centerCz - (z0 + TILE_CHUNKS - 1)));
+        int distance = Math.max(dx, dz);
+        if (distance > radiusChunks) {
+            return;
+        }
+
+        int mask = 0;
+        if (distance <= loadedRadius) {
+            for (int cz = 0; cz < TILE_CHUNKS; cz++) {
+                for (int cx = 0; cx < TILE_CHUNKS; cx++) {
+                    if (chunks.contains(x0 + cx, z0 + cz)) {
+                        mask |= 1 << (cz * TILE_CHUNKS + cx);
+                    }
+                }
+            }
+        }
+
+        long key = Chunk.key(tx, tz);
+        Tile tile = tiles.get(key);
+        if (tile == null) {
+            tile = new Tile(tx, tz);
+            tiles.put(key, tile);
+        }
+
+        int step = stepFor(distance);
+        if (tile.step != step || tile.excludedMask != mask) {
+            tile.step = step;
+            tile.excludedMask = mask;
+            tile.built = false;
+        }
+        tile.distance = distance;
+        tile.wanted = true;
+    }
+
+    private boolean isExcluded(Tile tile, int blockX, int blockZ) {
+        int cx = blockX / Chunk.SIZE_X;
+        int cz = blockZ / Chunk.SIZE_Z;
+        return (tile.excludedMask & (1 << (cz * TILE_CHUNKS + cx))) != 0;
+    }
+
+    private void build(Tile tile) {
+        tile.built = true;
+        if (tile.geometry != null) {
+            tile.geometry.removeFromParent();
+            tile.geometry = null;
+        }
+        if (tile.excludedMask == (1 << (TILE_CHUNKS * TILE_CHUNKS)) - 1) {
+            return;
+        }
+
+        int step = tile.step;
+        int cells = TILE_BLOCKS / step;
+        int side = cells + 2;
+
+        // one extra sample on each side for the walls along the tile border
+        if (heights.length < side * side) {
+            heights = new double[side * side];
+        }
+        int originX = tile.tileX * cells - 1;
+        int originZ = tile.tileZ * cells - 1;
+        noise.fill(heights, originX, originZ, side, side, step * Chunk.TERRAIN_SCALE);
+
+        meshData.clear();
+        for (int j = 0; j < cells; j++) {
+            for (int i = 0; i < cells; i++) {
+                if (isExcluded(tile, i * step, j * step)) {
+                    continue;
+                }
+                addCell(tile, i, j, step, cells, side);
+            }
+        }
+
+        if (meshData.isEmpty()) {
+            return;
+        }
+
+        Geometry geometry = new Geometry("lod_" + tile.tileX + "_" + tile.tileZ, meshData.toMesh());
+        geometry.setMaterial(material);
+        geometry.setLocalTranslation(tile.tileX * TILE_BLOCKS, 0f, tile.tileZ * TILE_BLOCKS);
+        node.attachChild(geometry);
+        tile.geometry = geometry;
+    }
+
+    /**
+     * Top of the column at sample {@code (i, j)} of the padded grid, with water
+     * filling low columns up to {@link Chunk#WATER_SURFACE_Y}.
+     */
+    private int surfaceHeight(int i, int j, int side) {
+        int height = Chunk.terrainHeight(heights[j * side + i], baseHeight, amplitude);
+        return Math.max(height, Chunk.WATER_SURFACE_Y + 1);
+    }
+
+    private boolean isWater(int i, int j, int side) {
+        return Chunk.terrainHeight(heights[j * side + i], baseHeight, amplitude) <= Chunk.WATER_SURFACE_Y + 1;
+    }
+
+    private void addCell(Tile tile, int i, int j, int step, int cells, int side) {
+        // padded grid index of this cell
+        int pi = i + 1;
+        int pj = j + 1;
+
+        int height = surfaceHeight(pi, pj, side);
+        boolean water = isWater(pi, pj, side);
+        ColorRGBA topColor = water ? WATER_COLOR : BlockType.GRASS.color;
+        ColorRGBA sideColor = water ? WATER_COLOR : BlockType.DIRT.color;
+
+        // blocks are centered on integers, so cell blocks [x, x + step) span [x - 0.5, x + step - 0.5]
+        float x0 = i * step - 0.5f;
+        float x1 = x0 + step;
+        float z0 = j * step - 0.5f;
+        float z1 = z0 + step;
+        float top = height - 0.5f;
+
+        quad(x0, top, z0, 0f, 0f, step, step, 0f, 0f, 0f, 1f, 0f, topColor);
+
+        wall(tile, i - 1, j, pi - 1, pj, cells, side, step, top, sideColor,
+                x0, z1, 0f, 0f, -step, -1f, 0f);
+        wall(tile, i + 1, j, pi + 1, pj, cells, side, step, top, sideColor,
+                x1, z0, 0f, 0f, step, 1f, 0f);
+        wall(tile, i, j - 1, pi, pj - 1, cells, side, step, top, sideColor,
+                x0, z0, step, 0f, 0f, 0f, -1f);
+        wall(tile, i, j + 1, pi, pj + 1, cells, side, step, top, sideColor,
+                x1, z1, -step, 0f, 0f, 0f, 1f);
+    }
+
+    /**
+     * Vertical face on one side of a cell, from its top down to the neighbor
+     * cell, or a skirt of one step where the neighbor is not part of this mesh.
+     * {@code (ex, ez)} is the bottom edge, running so that edge x up faces outwards.
+     */
+    private void wall(Tile tile, int ni, int nj, int npi, int npj, int cells, int side, int step,
+                      float top, ColorRGBA color,
+                      float px, float pz, float ex, float ey, float ez, float nx, float nz) {
+        float neighborTop = surfaceHeight(npi, npj, side) - 0.5f;
+
+        boolean inMesh = ni >= 0 && nj >= 0 && ni < cells && nj < cells
+                && !isExcluded(tile, ni * step, nj * step);
+        float bottom = inMesh ? neighborTop : Math.min(neighborTop, top - step);
+        if (bottom >= top) {
+            return;
+        }
+
+        quad(px, bottom, pz, ex, ey, ez, 0f, top - bottom, 0f, nx, 0f, nz, color);
+    }
+
+    /**
+     * Quad from corner {@code p} spanned by edges {@code a} and {@code b};
+     * the normal {@code a x b} decides the front side.
+     */
+    private void quad(float px, float py, float pz,
+                      float ax, float ay, float az,
+                      float bx, float by, float bz,
+                      float nx, float ny, float nz, ColorRGBA color) {
+        set(0, px, py, pz);
+        set(1, px + ax, py + ay, pz + az);
+        set(2, px + ax + bx, py + ay + by, pz + az + bz);
+        set(3, px + bx, py + by, pz + bz);
+        meshData.addQuad(corners, nx, ny, nz, color);
+    }
+
+    private void set(int corner, float x, float y, float z) {
+        corners[corner * 3] = x;
+        corners[corner * 3 + 1] = y;
+        corners[corner * 3 + 2] = z;
+    }
+
+    public void clear() {
+        node.detachAllChildren();
+        tiles.clear();
+    }
+}
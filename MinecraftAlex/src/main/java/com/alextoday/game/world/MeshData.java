@@ -0,0 +1,223 @@
+package com.alextoday.game.world;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable vertex buffers (position, normal, color, index) for building a mesh
+ * without touching the scene graph. Can be filled on any thread.
+ */
+public class MeshData {
+
+    private float[] positions;
+    private float[] normals;
+    private float[] colors;
+    private int[] indices;
+
+    private int vertexCount;
+    private int indexCount;
+
+    public MeshData() {
+        this(256);
+    }
+
+    public MeshData(int initialQuads) {
+        int vertices = Math.max(4, initialQuads * 4);
+        this.positions = new float[vertices * 3];
+        this.normals = new float[vertices * 3];
+        this.colors = new float[vertices * 4];
+        this.indices = new int[Math.max(6, initialQuads * 6)];
+    }
+
+    private MeshData(float[] positions, float[] normals, float[] colors, int[] indices) {
+        this.positions = positions;
+        this.normals = normals;
+        this.colors = colors;
+        this.indices = indices;
+        this.vertexCount = positions.length / 3;
+        this.indexCount = indices.length;
+    }
+
+    /**
+     * A copy with the arrays trimmed to what was written, to keep after
+     * building into a reused buffer.
+     */
+    public MeshData copy() {
+        return new MeshData(
+                Arrays.copyOf(positions, vertexCount * 3),
+                Arrays.copyOf(normals, vertexCount * 3),
+                Arrays.copyOf(colors, vertexCount * 4),
+                Arrays.copyOf(indices, indexCount));
+    }
+
+    public void clear() {
+        vertexCount = 0;
+        indexCount = 0;
+    }
+
+    public boolean isEmpty() {
+        return indexCount == 0;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getIndexCount() {
+        return indexCount;
+    }
+
+    public int getTriangleCount() {
+        return indexCount / 3;
+    }
+
+    /**
+     * Approximate heap held by the backing arrays, including unused capacity.
+     */
+    public long estimateMemoryBytes() {
+        return 4 * 16 + 4L * (positions.length + normals.length + colors.length + indices.length);
+    }
+
+    /**
+     * Adds a quad given by its four corners in counter-clockwise order
+     * as seen from the side the normal points to.
+     */
+    public void addQuad(float[] corners, float nx, float ny, float nz, ColorRGBA color) {
+        ensureCapacity(4, 6);
+
+        int base = vertexCount;
+        for (int i = 0; i < 4; i++) {
+            int p = (base + i) * 3;
+            positions[p] = corners[i * 3];
+            positions[p + 1] = corners[i * 3 + 1];
+            positions[p + 2] = corners[i * 3 + 2];
+
+            normals[p] = nx;
+            normals[p + 1] = ny;
+            normals[p + 2] = nz;
+
+            int c = (base + i) * 4;
+            colors[c] = color.r;
+            colors[c + 1] = color.g;
+            colors[c + 2] = color.b;
+            colors[c + 3] = color.a;
+        }
+        vertexCount += 4;
+
+        indices[indexCount++] = base;
+        indices[indexCount++] = base + 1;
+        indices[indexCount++] = base + 2;
+        indices[indexCount++] = base;
+        indices[indexCount++] = base + 2;
+        indices[indexCount++] = base + 3;
+    }
+
+    private void ensureCapacity(int extraVertices, int extraIndices) {
+        int neededVertices = vertexCount + extraVertices;
+        if (neededVertices * 3 > positions.length) {
+            int newVertices = Math.max(neededVertices, positions.length / 3 * 2);
+            positions = Arrays.copyOf(positions, newVertices * 3);
+            normals = Arrays.copyOf(normals, newVertices * 3);
+            colors = Arrays.copyOf(colors, newVertices * 4);
+        }
+        int neededIndices = indexCount + extraIndices;
+        if (neededIndices > indices.length) {
+            indices = Arrays.copyOf(indices, Math.max(neededIndices, indices.length * 2));
+        }
+    }
+
+    /**
+     * Concatenates the given parts into one mesh.
+     *
+     * @return {@code null} if all parts are empty
+     */
+    public static Mesh combine(MeshData[] parts) {
+        int vertices = 0;
+        int indexTotal = 0;
+        for (MeshData part : parts) {
+            if (part != null) {
+                vertices += part.vertexCount;
+                indexTotal += part.indexCount;
+            }
+        }
+        if (indexTotal == 0) {
+            return null;
+        }
+
+        float[] positions = new float[vertices * 3];
+        float[] normals = new float[vertices * 3];
+        float[] colors = new float[vertices * 4];
+        int[] indices = new int[indexTotal];
+
+        int vertexOffset = 0;
+        int indexOffset = 0;
+        for (MeshData part : parts) {
+            if (part == null || part.indexCount == 0) {
+                continue;
+            }
+            System.arraycopy(part.positions, 0, positions, vertexOffset * 3, part.vertexCount * 3);
+            System.arraycopy(part.normals, 0, normals, vertexOffset * 3, part.vertexCount * 3);
+            System.arraycopy(part.colors, 0, colors, vertexOffset * 4, part.vertexCount * 4);
+            for (int i = 0; i < part.indexCount; i++) {
+                indices[indexOffset + i] = part.indices[i] + vertexOffset;
+            }
+            vertexOffset += part.vertexCount;
+            indexOffset += part.indexCount;
+        }
+
+        return createMesh(positions, normals, colors, indices);
+    }
+
+    /**
+     * Copies the vertices into the buffers starting at vertex {@code vertexOffset},
+     * moved by {@code (dx, 0, dz)}, and the indices shifted to match starting at
+     * index {@code indexOffset}. Buffer positions are left unchanged.
+     */
+    public void writeTo(FloatBuffer positions, FloatBuffer normals, FloatBuffer colors, IntBuffer indices,
+                        int vertexOffset, int indexOffset, float dx, float dz) {
+        for (int v = 0; v < vertexCount; v++) {
+            int p = v * 3;
+            int out = (vertexOffset + v) * 3;
+            positions.put(out, this.positions[p] + dx);
+            positions.put(out + 1, this.positions[p + 1]);
+            positions.put(out + 2, this.positions[p + 2] + dz);
+        }
+        normals.duplicate().position(vertexOffset * 3).put(this.normals, 0, vertexCount * 3);
+        colors.duplicate().position(vertexOffset * 4).put(this.colors, 0, vertexCount * 4);
+        writeIndicesTo(indices, vertexOffset, indexOffset);
+    }
+
+    /**
+     * Writes only the indices, as {@link #writeTo} does, e.g. to show the mesh
+     * again after its range was collapsed to degenerate triangles.
+     */
+    public void writeIndicesTo(IntBuffer indices, int vertexOffset, int indexOffset) {
+        for (int i = 0; i < indexCount; i++) {
+            indices.put(indexOffset + i, this.indices[i] + vertexOffset);
+        }
+    }
+
+    private static Mesh createMesh(float[] positions, float[] normals, float[] colors, int[] indices) {
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, positions);
+        mesh.setBuffer(VertexBuffer.Type.Normal, 3, normals);
+        mesh.setBuffer(VertexBuffer.Type.Color, 4, colors);
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, indices);
+        mesh.updateBound();
+        mesh.setStatic();
+        return mesh;
+    }
+
+    public Mesh toMesh() {
+        return createMesh(
+                Arrays.copyOf(positions, vertexCount * 3),
+                Arrays.copyOf(normals, vertexCount * 3),
+                Arrays.copyOf(colors, vertexCount * 4),
+                Arrays.copyOf(indices, indexCount));
+    }
+}
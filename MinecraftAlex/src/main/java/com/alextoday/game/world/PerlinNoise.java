@@ -4,6 +4,9 @@ import java.util.Random;
 
 public class PerlinNoise {
 
+    // per thread, since chunk workers sample the same instance concurrently
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
     private final int[] perm = new int[512];
 
     public PerlinNoise(long seed) {
@@ -70,4 +73,187 @@ public class PerlinNoise {
         // Итоговая интерполяция по v
         return lerp(x1, x2, v);
     }
+
+    /**
+     * Samples a grid of {@code width x height} points at
+     * {@code ((originX + i) * frequency, (originY + j) * frequency)} into
+     * {@code out[j * width + i]}. Gives exactly the same values as calling
+     * {@link #noise(double, double)} per point, but computes the x lattice
+     * terms once per column, the y terms once per row and the permutation
+     * hashes once per lattice cell.
+     */
+    public void fill(double[] out, int originX, int originY, int width, int height, double frequency) {
+        fillOctave(out, null, originX, originY, width, height, frequency, 1.0, false);
+    }
+
+    /**
+     * Float variant of {@link #fill(double[], int, int, int, int, double)};
+     * each value is the double result rounded to float.
+     */
+    public void fill(float[] out, int originX, int originY, int width, int height, double frequency) {
+        fillOctave(null, out, originX, originY, width, height, frequency, 1.0, false);
+    }
+
+    /**
+     * Fractal (fBm) version of {@link #fill(double[], int, int, int, int, double)}:
+     * sums {@code octaves} layers, each with the frequency multiplied by
+     * {@code lacunarity} and the amplitude by {@code gain}, normalized so the
+     * result stays in the single-octave range. One octave equals {@code fill}.
+     */
+    public void fillFractal(double[] out, int originX, int originY, int width, int height,
+                            double frequency, int octaves, double lacunarity, double gain) {
+        double amplitude = 1.0;
+        double total = 0.0;
+        for (int o = 0; o < octaves; o++) {
+            fillOctave(out, null, originX, originY, width, height, frequency, amplitude, o > 0);
+            total += amplitude;
+            frequency *= lacunarity;
+            amplitude *= gain;
+        }
+        if (octaves > 1) {
+            double inv = 1.0 / total;
+            for (int i = 0; i < width * height; i++) {
+                out[i] *= inv;
+            }
+        }
+    }
+
+    /**
+     * Float variant of {@link #fillFractal(double[], int, int, int, int, double, int, double, double)};
+     * octaves are summed in double precision and each value is rounded once.
+     */
+    public void fillFractal(float[] out, int originX, int originY, int width, int height,
+                            double frequency, int octaves, double lacunarity, double gain) {
+        if (octaves == 1) {
+            fill(out, originX, originY, width, height, frequency);
+            return;
+        }
+        double[] values = SCRATCH.get().values(width * height);
+        fillFractal(values, originX, originY, width, height, frequency, octaves, lacunarity, gain);
+        for (int i = 0; i < width * height; i++) {
+            out[i] = (float) values[i];
+        }
+    }
+
+    /**
+     * Domain-warped fBm: each sample point is first displaced by up to
+     * {@code warpAmplitude} grid units using two noise lookups at
+     * {@code warpFrequency}, then {@link #fillFractal} is evaluated there.
+     * Warped points do not share lattice cells, so this is evaluated per point.
+     */
+    public void fillWarped(double[] out, int originX, int originY, int width, int height,
+                           double frequency, int octaves, double lacunarity, double gain,
+                           double warpAmplitude, double warpFrequency) {
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                double x = originX + i;
+                double y = originY + j;
+
+                // offset the second lookup so both displacements are uncorrelated
+                double wx = x + warpAmplitude * noise(x * warpFrequency, y * warpFrequency);
+                double wy = y + warpAmplitude * noise(x * warpFrequency + 31.7, y * warpFrequency + 47.3);
+
+                out[j * width + i] = fractal(wx, wy, frequency, octaves, lacunarity, gain);
+            }
+        }
+    }
+
+    private double fractal(double x, double y, double frequency, int octaves, double lacunarity, double gain) {
+        double amplitude = 1.0;
+        double total = 0.0;
+        double sum = 0.0;
+        for (int o = 0; o < octaves; o++) {
+            sum += amplitude * noise(x * frequency, y * frequency);
+            total += amplitude;
+            frequency *= lacunarity;
+            amplitude *= gain;
+        }
+        return octaves > 1 ? sum / total : sum;
+    }
+
+    /**
+     * Writes one octave into {@code out}, or rounded into {@code floatOut}
+     * when {@code out} is {@code null}, which is then never accumulated.
+     */
+    private void fillOctave(double[] out, float[] floatOut, int originX, int originY, int width, int height,
+                            double frequency, double amplitude, boolean accumulate) {
+        // x terms are the same for every row
+        Scratch scratch = SCRATCH.get();
+        scratch.ensureWidth(width);
+        int[] cellX = scratch.cellX;
+        double[] fracX = scratch.fracX;
+        double[] fadeX = scratch.fadeX;
+        for (int i = 0; i < width; i++) {
+            double x = (originX + i) * frequency;
+            cellX[i] = (int) Math.floor(x) & 255;
+            fracX[i] = x - Math.floor(x);
+            fadeX[i] = fade(fracX[i]);
+        }
+
+        for (int j = 0; j < height; j++) {
+            double y = (originY + j) * frequency;
+            int Y = (int) Math.floor(y) & 255;
+            double yf = y - Math.floor(y);
+            double v = fade(yf);
+
+            int row = j * width;
+            int lastX = -1;
+            int aa = 0;
+            int ab = 0;
+            int ba = 0;
+            int bb = 0;
+
+            for (int i = 0; i < width; i++) {
+                int X = cellX[i];
+                if (X != lastX) {
+                    aa = perm[perm[X] + Y];
+                    ab = perm[perm[X] + Y + 1];
+                    ba = perm[perm[X + 1] + Y];
+                    bb = perm[perm[X + 1] + Y + 1];
+                    lastX = X;
+                }
+
+                double xf = fracX[i];
+                double u = fadeX[i];
+
+                double x1 = lerp(grad(aa, xf, yf), grad(ba, xf - 1, yf), u);
+                double x2 = lerp(grad(ab, xf, yf - 1), grad(bb, xf - 1, yf - 1), u);
+                double n = lerp(x1, x2, v);
+
+                if (out == null) {
+                    floatOut[row + i] = (float) (amplitude * n);
+                } else if (accumulate) {
+                    out[row + i] += amplitude * n;
+                } else {
+                    out[row + i] = amplitude * n;
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-row lattice terms and the double sums behind the float variants,
+     * grown to the largest grid sampled on the thread.
+     */
+    private static final class Scratch {
+        int[] cellX = new int[0];
+        double[] fracX = new double[0];
+        double[] fadeX = new double[0];
+        private double[] values = new double[0];
+
+        void ensureWidth(int width) {
+            if (cellX.length < width) {
+                cellX = new int[width];
+                fracX = new double[width];
+                fadeX = new double[width];
+            }
+        }
+
+        double[] values(int size) {
+            if (values.length < size) {
+                values = new double[size];
+            }
+            return values;
+        }
+    }
 }
@@ -0,0 +1,27 @@
+package com.alextoday.game.world;
+
+/**
+ * Result of {@link World#raycast}. Owned by the caller and reused between casts.
+ */
+public class RaycastResult {
+
+    public boolean hit;
+    public BlockType type;
+
+    public int hitX, hitY, hitZ;
+    /** Cell next to the hit block on the side the ray entered from. */
+    public int placeX, placeY, placeZ;
+    /** Normal of the hit face, zero when the ray started inside the block. */
+    public int normalX, normalY, normalZ;
+
+    public float distance;
+
+    public void reset() {
+        hit = false;
+        type = null;
+        hitX = hitY = hitZ = 0;
+        placeX = placeY = placeZ = 0;
+        normalX = normalY = normalZ = 0;
+        distance = 0f;
+    }
+}
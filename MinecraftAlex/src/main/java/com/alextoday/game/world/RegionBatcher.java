@@ -0,0 +1,425 @@
+package com.alextoday.game.world;
+
+import com.jme3.material.Material;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws loaded chunks in groups of {@value #REGION_CHUNKS}x{@value #REGION_CHUNKS}:
+ * the section meshes of all chunks of a region go into one shared opaque and
+ * one shared water vertex buffer, so the number of geometries grows with
+ * regions instead of chunks.
+ *
+ * Every chunk owns a slot, a fixed range of quads with some spare room, in
+ * both buffers. When a chunk changes and its new mesh still fits, only its
+ * slot is rewritten and unused quads are collapsed to degenerate triangles;
+ * the region is repacked only when a slot overflows. Sections culled by
+ * {@link Chunk#getShownSections()} keep their vertices but have their
+ * indices collapsed, so showing them again rewrites only indices. Changes
+ * are collected and applied in {@link #flush()}. Render thread only.
+ */
+public class RegionBatcher {
+
+    public static final int REGION_CHUNKS = 4;
+
+    private static final int SLOTS = REGION_CHUNKS * REGION_CHUNKS;
+
+    // spare quads per slot on repack, so small edits rewrite the slot in place
+    private static final int MIN_SLACK_QUADS = 16;
+
+    private final Node node = new Node("regions");
+    private final Material opaqueMaterial;
+    private final Material waterMaterial;
+
+    private final LongObjectMap<Region> regions = new LongObjectMap<>(64);
+    private final List<Region> dirtyRegions = new ArrayList<>();
+
+    private long repacks;
+    private long slotUpdates;
+
+    private static final class Region {
+        final int regionX;
+        final int regionZ;
+        final Chunk[] chunks = new Chunk[SLOTS];
+        final Batch opaque = new Batch(false);
+        final Batch water = new Batch(true);
+        int dirtySlots;
+        // slots whose shown sections changed but not their meshes
+        int visibilitySlots;
+
+        Region(int regionX, int regionZ) {
+            this.regionX = regionX;
+            this.regionZ = regionZ;
+        }
+
+        boolean isEmpty() {
+            for (Chunk chunk : chunks) {
+                if (chunk != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * One shared mesh of a region, laid out as consecutive slots of quads.
+     */
+    private static final class Batch {
+        final boolean water;
+        final int[] slotStart = new int[SLOTS];
+        final int[] slotCapacity = new int[SLOTS];
+
+        Geometry geometry;
+        FloatBuffer positions;
+        FloatBuffer normals;
+        FloatBuffer colors;
+        IntBuffer indices;
+
+        Batch(boolean water) {
+            this.water = water;
+        }
+    }
+
+    public RegionBatcher(Material opaqueMaterial, Material waterMaterial) {
+        this.opaqueMaterial = opaqueMaterial;
+        this.waterMaterial = waterMaterial;
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    private static int slot(int cx, int cz) {
+        return Math.floorMod(cz, REGION_CHUNKS) * REGION_CHUNKS + Math.floorMod(cx, REGION_CHUNKS);
+    }
+
+    /**
+     * Adds a chunk with its section meshes built; shown after the next {@link #flush()}.
+     */
+    public void add(Chunk chunk) {
+        int cx = chunk.getChunkX();
+        int cz = chunk.getChunkZ();
+        int rx = Math.floorDiv(cx, REGION_CHUNKS);
+        int rz = Math.floorDiv(cz, REGION_CHUNKS);
+
+        long key = Chunk.key(rx, rz);
+        Region region = regions.get(key);
+        if (region == null) {
+            region = new Region(rx, rz);
+            regions.put(key, region);
+        }
+        int slot = slot(cx, cz);
+        region.chunks[slot] = chunk;
+        markDirty(region, slot);
+    }
+
+    public void remove(Chunk chunk) {
+        Region region = regionOf(chunk);
+        if (region == null) {
+            return;
+        }
+        int slot = slot(chunk.getChunkX(), chunk.getChunkZ());
+        region.chunks[slot] = null;
+        markDirty(region, slot);
+    }
+
+    /**
+     * Schedules the slot of a chunk whose section meshes were rebuilt.
+     */
+    public void update(Chunk chunk) {
+        Region region = regionOf(chunk);
+        if (region != null) {
+            markDirty(region, slot(chunk.getChunkX(), chunk.getChunkZ()));
+        }
+    }
+
+    /**
+     * Schedules the slot of a chunk whose {@link Chunk#getShownSections()} changed.
+     */
+    public void updateVisibility(Chunk chunk) {
+        Region region = regionOf(chunk);
+        if (region != null) {
+            if (region.dirtySlots == 0 && region.visibilitySlots == 0) {
+                dirtyRegions.add(region);
+            }
+            region.visibilitySlots |= 1 << slot(chunk.getChunkX(), chunk.getChunkZ());
+        }
+    }
+
+    private Region regionOf(Chunk chunk) {
+        int cx = chunk.getChunkX();
+        int cz = chunk.getChunkZ();
+        Region region = regions.get(Chunk.key(
+                Math.floorDiv(cx, REGION_CHUNKS), Math.floorDiv(cz, REGION_CHUNKS)));
+        if (region == null || region.chunks[slot(cx, cz)] != chunk) {
+            return null;
+        }
+        return region;
+    }
+
+    private void markDirty(Region region, int slot) {
+        if (region.dirtySlots == 0 && region.visibilitySlots == 0) {
+            dirtyRegions.add(region);
+        }
+        region.dirtySlots |= 1 << slot;
+    }
+
+    /**
+     * Writes all pending changes into the region meshes.
+     */
+    public void flush() {
+        for (int i = 0; i < dirtyRegions.size(); i++) {
+            Region region = dirtyRegions.get(i);
+            int dirty = region.dirtySlots;
+            int visibility = region.visibilitySlots & ~dirty;
+            region.dirtySlots = 0;
+            region.visibilitySlots = 0;
+
+            if (region.isEmpty()) {
+                detach(region.opaque);
+                detach(region.water);
+                regions.remove(Chunk.key(region.regionX, region.regionZ));
+                continue;
+            }
+            flushBatch(region, region.opaque, dirty, visibility);
+            flushBatch(region, region.water, dirty, visibility);
+        }
+        dirtyRegions.clear();
+    }
+
+    private static void detach(Batch batch) {
+        if (batch.geometry != null) {
+            batch.geometry.removeFromParent();
+            batch.geometry = null;
+        }
+    }
+
+    private static int quadCount(Chunk chunk, boolean water) {
+        if (chunk == null) {
+            return 0;
+        }
+        int vertices = 0;
+        for (int s = 0; s < Chunk.SECTION_COUNT; s++) {
+            MeshData data = water ? chunk.getSectionWater(s) : chunk.getSectionOpaque(s);
+            if (data != null) {
+                vertices += data.getVertexCount();
+            }
+        }
+        return vertices / 4;
+    }
+
+    private void flushBatch(Region region, Batch batch, int dirty, int visibility) {
+        if (dirty == 0 && batch.geometry == null) {
+            // nothing drawn, nothing to show or hide
+            return;
+        }
+        boolean fits = batch.geometry != null;
+        for (int slot = 0; fits && slot < SLOTS; slot++) {
+            if ((dirty & (1 << slot)) != 0
+                    && quadCount(region.chunks[slot], batch.water) > batch.slotCapacity[slot]) {
+                fits = false;
+            }
+        }
+
+        if (!fits) {
+            repack(region, batch);
+            return;
+        }
+
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if ((visibility & (1 << slot)) != 0) {
+                writeSlotIndices(region, batch, slot);
+            }
+        }
+        Mesh mesh = batch.geometry.getMesh();
+        updateCullHint(region, batch);
+        if (dirty == 0) {
+            if (visibility != 0) {
+                mesh.getBuffer(VertexBuffer.Type.Index).setUpdateNeeded();
+            }
+            return;
+        }
+
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if ((dirty & (1 << slot)) != 0) {
+                writeSlot(region, batch, slot);
+            }
+        }
+        mesh.getBuffer(VertexBuffer.Type.Position).setUpdateNeeded();
+        mesh.getBuffer(VertexBuffer.Type.Normal).setUpdateNeeded();
+        mesh.getBuffer(VertexBuffer.Type.Color).setUpdateNeeded();
+        mesh.getBuffer(VertexBuffer.Type.Index).setUpdateNeeded();
+        mesh.updateBound();
+        batch.geometry.updateModelBound();
+        slotUpdates++;
+    }
+
+    /**
+     * Lays the slots out again with fresh spare room and rebuilds the whole mesh.
+     */
+    private void repack(Region region, Batch batch) {
+        detach(batch);
+
+        int total = 0;
+        int used = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            Chunk chunk = region.chunks[slot];
+            int quads = quadCount(chunk, batch.water);
+            int capacity = chunk == null ? 0 : quads + Math.max(MIN_SLACK_QUADS, quads / 4);
+            batch.slotStart[slot] = total;
+            batch.slotCapacity[slot] = capacity;
+            total += capacity;
+            used += quads;
+        }
+        if (used == 0) {
+            batch.positions = null;
+            batch.normals = null;
+            batch.colors = null;
+            batch.indices = null;
+            return;
+        }
+
+        batch.positions = BufferUtils.createFloatBuffer(total * 4 * 3);
+        batch.normals = BufferUtils.createFloatBuffer(total * 4 * 3);
+        batch.colors = BufferUtils.createFloatBuffer(total * 4 * 4);
+        batch.indices = BufferUtils.createIntBuffer(total * 6);
+        for (int slot = 0; slot < SLOTS; slot++) {
+            writeSlot(region, batch, slot);
+        }
+
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, batch.positions);
+        mesh.setBuffer(VertexBuffer.Type.Normal, 3, batch.normals);
+        mesh.setBuffer(VertexBuffer.Type.Color, 4, batch.colors);
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, batch.indices);
+        mesh.setDynamic();
+        mesh.updateBound();
+
+        String name = (batch.water ? "region_water_" : "region_opaque_") + region.regionX + "_" + region.regionZ;
+        Geometry geometry = new Geometry(name, mesh);
+        if (batch.water) {
+            geometry.setMaterial(waterMaterial);
+            geometry.setQueueBucket(RenderQueue.Bucket.Transparent);
+        } else {
+            geometry.setMaterial(opaqueMaterial);
+        }
+        geometry.setLocalTranslation(region.regionX * REGION_CHUNKS * Chunk.SIZE_X, 0f,
+                region.regionZ * REGION_CHUNKS * Chunk.SIZE_Z);
+        node.attachChild(geometry);
+        batch.geometry = geometry;
+        updateCullHint(region, batch);
+        repacks++;
+    }
+
+    /**
+     * Skips the whole region mesh while none of its chunks shows a section.
+     */
+    private static void updateCullHint(Region region, Batch batch) {
+        boolean shown = false;
+        for (Chunk chunk : region.chunks) {
+            if (chunk != null && chunk.getShownSections() != 0) {
+                shown = true;
+                break;
+            }
+        }
+        batch.geometry.setCullHint(shown ? Spatial.CullHint.Inherit : Spatial.CullHint.Always);
+    }
+
+    /**
+     * Copies the chunk's section meshes into its slot and turns the rest of
+     * the slot into degenerate triangles.
+     */
+    private static void writeSlot(Region region, Batch batch, int slot) {
+        Chunk chunk = region.chunks[slot];
+        int vertex = batch.slotStart[slot] * 4;
+        int index = batch.slotStart[slot] * 6;
+        int end = (batch.slotStart[slot] + batch.slotCapacity[slot]) * 6;
+
+        if (chunk != null) {
+            float dx = (slot % REGION_CHUNKS) * Chunk.SIZE_X;
+            float dz = (slot / REGION_CHUNKS) * Chunk.SIZE_Z;
+            int shown = chunk.getShownSections();
+            for (int s = 0; s < Chunk.SECTION_COUNT; s++) {
+                MeshData data = batch.water ? chunk.getSectionWater(s) : chunk.getSectionOpaque(s);
+                if (data == null) {
+                    continue;
+                }
+                data.writeTo(batch.positions, batch.normals, batch.colors, batch.indices, vertex, index, dx, dz);
+                if ((shown & (1 << s)) == 0) {
+                    collapse(batch.indices, index, index + data.getIndexCount());
+                }
+                vertex += data.getVertexCount();
+                index += data.getIndexCount();
+            }
+        }
+        collapse(batch.indices, index, end);
+    }
+
+    /**
+     * Rewrites the indices of a slot for the chunk's current shown sections;
+     * the vertices stay where they are.
+     */
+    private static void writeSlotIndices(Region region, Batch batch, int slot) {
+        Chunk chunk = region.chunks[slot];
+        if (chunk == null || batch.geometry == null) {
+            return;
+        }
+        int vertex = batch.slotStart[slot] * 4;
+        int index = batch.slotStart[slot] * 6;
+        int shown = chunk.getShownSections();
+        for (int s = 0; s < Chunk.SECTION_COUNT; s++) {
+            MeshData data = batch.water ? chunk.getSectionWater(s) : chunk.getSectionOpaque(s);
+            if (data == null) {
+                continue;
+            }
+            if ((shown & (1 << s)) != 0) {
+                data.writeIndicesTo(batch.indices, vertex, index);
+            } else {
+                collapse(batch.indices, index, index + data.getIndexCount());
+            }
+            vertex += data.getVertexCount();
+            index += data.getIndexCount();
+        }
+    }
+
+    private static void collapse(IntBuffer indices, int from, int to) {
+        for (int i = from; i < to; i++) {
+            indices.put(i, 0);
+        }
+    }
+
+    public void clear() {
+        node.detachAllChildren();
+        regions.clear();
+        dirtyRegions.clear();
+    }
+
+    public int getRegionCount() {
+        return regions.size();
+    }
+
+    /**
+     * Region meshes rebuilt from scratch because a slot overflowed or the region was new.
+     */
+    public long getRepackCount() {
+        return repacks;
+    }
+
+    /**
+     * Region meshes updated by rewriting only the changed slots.
+     */
+    public long getSlotUpdateCount() {
+        return slotUpdates;
+    }
+}
@@ -0,0 +1,177 @@
+package com.alextoday.game.world;
+
+/**
+ * Which faces of a 16x16x16 section can see each other through it: two faces
+ * are connected if a path of non-solid blocks inside the section joins them.
+ * The result packs the 15 face pairs into the low bits of an {@code int}, see
+ * {@link #connects}.
+ *
+ * Found with a flood fill over the non-solid blocks starting at the section
+ * border, so it costs one visit per open block. Uniform sections are answered
+ * without looking at blocks. Not thread-safe, keep one per thread.
+ */
+public class SectionConnectivity {
+
+    public static final int DOWN = 0;
+    public static final int UP = 1;
+    public static final int NORTH = 2;
+    public static final int SOUTH = 3;
+    public static final int WEST = 4;
+    public static final int EAST = 5;
+
+    public static final int FACES = 6;
+
+    // every face sees every other face
+    public static final int ALL = (1 << 15) - 1;
+
+    private static final int[] FACE_DX = {0, 0, 0, 0, -1, 1};
+    private static final int[] FACE_DY = {-1, 1, 0, 0, 0, 0};
+    private static final int[] FACE_DZ = {0, 0, -1, 1, 0, 0};
+
+    private static final int STEP_X = 1;
+    private static final int STEP_Z = Chunk.SIZE_X;
+    private static final int STEP_Y = Chunk.SIZE_X * Chunk.SIZE_Z;
+
+    // bit of each face pair, symmetric
+    private static final int[] PAIR_BITS = new int[FACES * FACES];
+    // connectivity of a set of faces that all see each other
+    private static final int[] FACE_SET_PAIRS = new int[1 << FACES];
+
+    static {
+        int bit = 0;
+        for (int a = 0; a < FACES; a++) {
+            for (int b = a + 1; b < FACES; b++) {
+                PAIR_BITS[a * FACES + b] = 1 << bit;
+                PAIR_BITS[b * FACES + a] = 1 << bit;
+                bit++;
+            }
+        }
+        for (int set = 0; set < FACE_SET_PAIRS.length; set++) {
+            int pairs = 0;
+            for (int a = 0; a < FACES; a++) {
+                for (int b = a + 1; b < FACES; b++) {
+                    if ((set & (1 << a)) != 0 && (set & (1 << b)) != 0) {
+                        pairs |= PAIR_BITS[a * FACES + b];
+                    }
+                }
+            }
+            FACE_SET_PAIRS[set] = pairs;
+        }
+    }
+
+    private final boolean[] open = new boolean[Chunk.SECTION_VOLUME];
+    private final int[] queue = new int[Chunk.SECTION_VOLUME];
+
+    public static int opposite(int face) {
+        return face ^ 1;
+    }
+
+    public static int faceDx(int face) {
+        return FACE_DX[face];
+    }
+
+    public static int faceDy(int face) {
+        return FACE_DY[face];
+    }
+
+    public static int faceDz(int face) {
+        return FACE_DZ[face];
+    }
+
+    /**
+     * Whether {@code connectivity} lets a view entering through face {@code from}
+     * leave through face {@code to}.
+     */
+    public static boolean connects(int connectivity, int from, int to) {
+        return (connectivity & PAIR_BITS[from * FACES + to]) != 0;
+    }
+
+    public int compute(BlockStorage section) {
+        BlockType single = section.getSingleValue();
+        if (single != null) {
+            return single.isSolid() ? 0 : ALL;
+        }
+
+        for (int i = 0; i < Chunk.SECTION_VOLUME; i++) {
+            open[i] = !section.get(i).isSolid();
+        }
+
+        int connectivity = 0;
+        for (int y = 0; y < Chunk.SECTION_HEIGHT; y++) {
+            boolean yBorder = y == 0 || y == Chunk.SECTION_HEIGHT - 1;
+            for (int z = 0; z < Chunk.SIZE_Z; z++) {
+                boolean zBorder = z == 0 || z == Chunk.SIZE_Z - 1;
+                // inner rows only have their two end blocks on the border
+                int step = yBorder || zBorder ? 1 : Chunk.SIZE_X - 1;
+                for (int x = 0; x < Chunk.SIZE_X; x += step) {
+                    int i = (y * Chunk.SIZE_Z + z) * Chunk.SIZE_X + x;
+                    if (open[i]) {
+                        connectivity |= FACE_SET_PAIRS[fill(i)];
+                        if (connectivity == ALL) {
+                            return ALL;
+                        }
+                    }
+                }
+            }
+        }
+        return connectivity;
+    }
+
+    /**
+     * Flood fills the open blocks reachable from {@code start}, closing them.
+     *
+     * @return the faces the filled blocks touch
+     */
+    private int fill(int start) {
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        open[start] = false;
+
+        int faces = 0;
+        while (head < tail) {
+            int i = queue[head++];
+            int x = i & (Chunk.SIZE_X - 1);
+            int z = (i / STEP_Z) & (Chunk.SIZE_Z - 1);
+            int y = i / STEP_Y;
+
+            if (x == 0) {
+                faces |= 1 << WEST;
+            } else if (open[i - STEP_X]) {
+                open[i - STEP_X] = false;
+                queue[tail++] = i - STEP_X;
+            }
+            if (x == Chunk.SIZE_X - 1) {
+                faces |= 1 << EAST;
+            } else if (open[i + STEP_X]) {
+                open[i + STEP_X] = false;
+                queue[tail++] = i + STEP_X;
+            }
+            if (z == 0) {
+                faces |= 1 << NORTH;
+            } else if (open[i - STEP_Z]) {
+                open[i - STEP_Z] = false;
+                queue[tail++] = i - STEP_Z;
+            }
+            if (z == Chunk.SIZE_Z - 1) {
+                faces |= 1 << SOUTH;
+            } else if (open[i + STEP_Z]) {
+                open[i + STEP_Z] = false;
+                queue[tail++] = i + STEP_Z;
+            }
+            if (y == 0) {
+                faces |= 1 << DOWN;
+            } else if (open[i - STEP_Y]) {
+                open[i - STEP_Y] = false;
+                queue[tail++] = i - STEP_Y;
+            }
+            if (y == Chunk.SECTION_HEIGHT - 1) {
+                faces |= 1 << UP;
+            } else if (open[i + STEP_Y]) {
+                open[i + STEP_Y] = false;
+                queue[tail++] = i + STEP_Y;
+            }
+        }
+        return faces;
+    }
+}
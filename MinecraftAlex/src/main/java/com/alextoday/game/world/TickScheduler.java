@@ -0,0 +1,185 @@
+package com.alextoday.game.world;
+
+import java.util.Arrays;
+
+/**
+ * Block updates scheduled for a later game tick, ordered by due tick and
+ * then by scheduling order. A block position is queued at most once; the
+ * earlier request wins.
+ *
+ * Stored as a binary heap over parallel {@code long} arrays, so scheduling
+ * does not allocate once the arrays have grown. Render thread only.
+ */
+public class TickScheduler {
+
+    /**
+     * Receives due block updates.
+     */
+    public interface Handler {
+        void onScheduledTick(int x, int y, int z);
+    }
+
+    // check the clock only every few updates
+    private static final int BUDGET_CHECK_INTERVAL = 16;
+
+    private long[] dueTicks = new long[64];
+    private long[] sequence = new long[64];
+    private long[] positions = new long[64];
+    private int size;
+
+    private final LongObjectMap<Boolean> pending = new LongObjectMap<>(64);
+
+    private long currentTick;
+    private long nextSequence;
+    private long processed;
+
+    // x and z take 25 bits each, y 10 bits
+    static long pack(int x, int y, int z) {
+        return ((long) x << 39) | (((long) z & 0x1FFFFFF) << 14) | ((long) (y & 0x3FF) << 4);
+    }
+
+    static int unpackX(long position) {
+        return (int) (position >> 39);
+    }
+
+    static int unpackZ(long position) {
+        return (int) ((position << 25) >> 39);
+    }
+
+    static int unpackY(long position) {
+        return (int) (position >>> 4) & 0x3FF;
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    public void advance(int ticks) {
+        currentTick += ticks;
+    }
+
+    /**
+     * Queues an update of block {@code (x, y, z)} {@code delayTicks} ticks from now,
+     * unless one is already queued for that block.
+     */
+    public void schedule(int x, int y, int z, int delayTicks) {
+        long position = pack(x, y, z);
+        if (pending.containsKey(position)) {
+            return;
+        }
+        pending.put(position, Boolean.TRUE);
+
+        if (size == dueTicks.length) {
+            int capacity = size * 2;
+            dueTicks = Arrays.copyOf(dueTicks, capacity);
+            sequence = Arrays.copyOf(sequence, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+        dueTicks[size] = currentTick + Math.max(1, delayTicks);
+        sequence[size] = nextSequence++;
+        positions[size] = position;
+        siftUp(size++);
+    }
+
+    public boolean isScheduled(int x, int y, int z) {
+        return pending.containsKey(pack(x, y, z));
+    }
+
+    /**
+     * Runs due updates in order until none is left or {@code budgetNanos} is used up.
+     * Updates may schedule further ones; those run in a later tick.
+     *
+     * @return the number of updates run
+     */
+    public int run(long budgetNanos, Handler handler) {
+        long start = System.nanoTime();
+        int count = 0;
+        while (size > 0 && dueTicks[0] <= currentTick) {
+            if (count > 0 && count % BUDGET_CHECK_INTERVAL == 0
+                    && System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+            long position = positions[0];
+            removeHead();
+            pending.remove(position);
+
+            handler.onScheduledTick(unpackX(position), unpackY(position), unpackZ(position));
+            count++;
+        }
+        processed += count;
+        return count;
+    }
+
+    /**
+     * Updates queued, due or not.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Updates run since the scheduler was created.
+     */
+    public long getProcessedCount() {
+        return processed;
+    }
+
+    public void clear() {
+        size = 0;
+        pending.clear();
+    }
+
+    private boolean less(int a, int b) {
+        if (dueTicks[a] != dueTicks[b]) {
+            return dueTicks[a] < dueTicks[b];
+        }
+        return sequence[a] < sequence[b];
+    }
+
+    private void swap(int a, int b) {
+        long due = dueTicks[a];
+        dueTicks[a] = dueTicks[b];
+        dueTicks[b] = due;
+        long seq = sequence[a];
+        sequence[a] = sequence[b];
+        sequence[b] = seq;
+        long position = positions[a];
+        positions[a] = positions[b];
+        positions[b] = position;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(i, parent)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void removeHead() {
+        size--;
+        if (size == 0) {
+            return;
+        }
+        dueTicks[0] = dueTicks[size];
+        sequence[0] = sequence[size];
+        positions[0] = positions[size];
+
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && less(left + 1, left) ? left + 1 : left;
+            if (!less(smallest, i)) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.alextoday.game.world;
+
+/**
+ * Picks the chunk load radius from the frame time: shrinks it while frames
+ * take longer than a target and grows it again when there is room.
+ *
+ * Frame times and the render thread's chunk work per frame are smoothed with
+ * an exponential moving average, after clamping single stalls such as a GC
+ * pause, so one slow frame does not move the radius. Hysteresis keeps it from
+ * oscillating: the radius shrinks by one ring once the average has stayed
+ * above the target plus a margin for {@link #SHRINK_HOLD_SECONDS}, and grows
+ * by one only once frame and chunk work together have stayed well below the
+ * target for {@link #GROW_HOLD_SECONDS} with no chunks pending. Every change
+ * is followed by a cooldown while its effect shows up in the average.
+ *
+ * After a shrink {@link #getChunkWorkScale()} drops until the average is back
+ * under the target, so the world loads and unloads less per frame while the
+ * load is being reduced. Render thread only.
+ */
+public class ViewDistanceController {
+
+    private static final float SMOOTHING = 0.1f;
+    // samples are clamped to this multiple of the target before averaging
+    private static final float MAX_SAMPLE_FACTOR = 3f;
+    private static final float SHRINK_ABOVE = 1.1f;
+    // leaves room for the extra chunk work of loading one more ring
+    private static final float GROW_BELOW = 0.7f;
+    private static final float SHRINK_HOLD_SECONDS = 0.5f;
+    private static final float GROW_HOLD_SECONDS = 3f;
+    private static final float COOLDOWN_SECONDS = 1f;
+    // chunk work is throttled at most this long after the last shrink
+    private static final float THROTTLE_SECONDS = 3f;
+    private static final float THROTTLED_CHUNK_WORK = 0.25f;
+
+    private final int minRadius;
+    private final int maxRadius;
+    private final float targetSeconds;
+
+    private int radius;
+    private boolean sampled;
+    private float frameAverage;
+    private float chunkAverage;
+    private float overTime;
+    private float underTime;
+    private float cooldown;
+    private float throttleTime;
+
+    /**
+     * @param targetMillis frame time to hold, e.g. 16.6 for 60 frames per second
+     */
+    public ViewDistanceController(int minRadius, int maxRadius, int startRadius, float targetMillis) {
+        if (minRadius < 0 || maxRadius < minRadius) {
+            throw new IllegalArgumentException("Invalid radius range " + minRadius + ".." + maxRadius);
+        }
+        if (targetMillis <= 0f) {
+            throw new IllegalArgumentException("Invalid frame target " + targetMillis + " ms");
+        }
+        this.minRadius = minRadius;
+        this.maxRadius = maxRadius;
+        this.targetSeconds = targetMillis / 1000f;
+        this.radius = Math.max(minRadius, Math.min(maxRadius, startRadius));
+    }
+
+    /**
+     * Feeds the last frame and returns the radius to load chunks in.
+     *
+     * @param frameSeconds  length of the last frame
+     * @param chunkSeconds  render thread time the last frame spent loading, integrating and unloading chunks
+     * @param pendingChunks chunk jobs still queued or running
+     */
+    public int update(float frameSeconds, float chunkSeconds, int pendingChunks) {
+        return update(frameSeconds, frameSeconds, chunkSeconds, pendingChunks);
+    }
+
+    /**
+     * Like {@link #update(float, float, int)} for frames that are paced, e.g.
+     * simulation ticks: {@code workSeconds} is measured against the target,
+     * {@code elapsedSeconds} since the last update drives the hold times.
+     */
+    public int update(float elapsedSeconds, float workSeconds, float chunkSeconds, int pendingChunks) {
+        float maxSample = targetSeconds * MAX_SAMPLE_FACTOR;
+        float frame = Math.min(workSeconds, maxSample);
+        float chunk = Math.min(chunkSeconds, maxSample);
+        if (!sampled) {
+            sampled = true;
+            frameAverage = frame;
+            chunkAverage = chunk;
+        } else {
+            frameAverage += (frame - frameAverage) * SMOOTHING;
+            chunkAverage += (chunk - chunkAverage) * SMOOTHING;
+        }
+
+        // seconds rather than frames, so the hold times do not depend on the frame rate
+        if (frameAverage > targetSeconds * SHRINK_ABOVE) {
+            overTime += elapsedSeconds;
+            underTime = 0f;
+        } else if (frameAverage + chunkAverage < targetSeconds * GROW_BELOW && pendingChunks == 0) {
+            underTime += elapsedSeconds;
+            overTime = 0f;
+        } else {
+            overTime = 0f;
+            underTime = 0f;
+        }
+
+        cooldown -= elapsedSeconds;
+        if (cooldown <= 0f) {
+            if (overTime >= SHRINK_HOLD_SECONDS && radius > minRadius) {
+                radius--;
+                overTime = 0f;
+                cooldown = COOLDOWN_SECONDS;
+                throttleTime = THROTTLE_SECONDS;
+            } else if (underTime >= GROW_HOLD_SECONDS && radius < maxRadius) {
+                radius++;
+                underTime = 0f;
+                cooldown = COOLDOWN_SECONDS;
+            }
+        }
+
+        if (frameAverage <= targetSeconds) {
+            throttleTime = 0f;
+        } else if (throttleTime > 0f) {
+            throttleTime -= elapsedSeconds;
+        }
+        return radius;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Fraction of the usual chunk work per frame the world should do, see
+     * {@link World#setChunkWorkScale(float)}: 1, or less right after a shrink.
+     */
+    public float getChunkWorkScale() {
+        return throttleTime > 0f ? THROTTLED_CHUNK_WORK : 1f;
+    }
+
+    public float getAverageFrameMillis() {
+        return frameAverage * 1000f;
+    }
+
+    public float getAverageChunkMillis() {
+        return chunkAverage * 1000f;
+    }
+}
@@ -0,0 +1,150 @@
+package com.alextoday.game.world;
+
+import java.util.Arrays;
+
+/**
+ * Finds the sections that can be seen from the camera by walking a graph of
+ * sections outward from the camera's section. A step from one section into a
+ * neighbor is taken only if the section's {@link SectionConnectivity} joins
+ * the face the walk came in through to the face it leaves through, and never
+ * back toward the camera along an axis the walk already moved away on. Sections
+ * the walk does not reach are behind solid terrain from every angle, such as
+ * caves under the player's feet or the surface seen from a sealed tunnel.
+ *
+ * Each section is visited once, by the first path that reaches it, so a walk
+ * is linear in the number of loaded sections. It only reads loaded chunks
+ * through their neighbor links and runs without a renderer. Render thread only.
+ */
+public class VisibilityGraph {
+
+    // queue entry layout: section | entry face << 5 | directions moved << 8
+    private static final int ENTRY_SHIFT = 5;
+    private static final int DIRECTIONS_SHIFT = 8;
+    private static final int NO_FACE = 7;
+
+    private final SectionConnectivity connectivity = new SectionConnectivity();
+
+    private Chunk[] queueChunks = new Chunk[1024];
+    private int[] queueEntries = new int[1024];
+
+    private int pass;
+    private boolean walked;
+    private boolean stale = true;
+    private Chunk lastStart;
+    private int lastSection = -1;
+    private int reachedCount;
+
+    /**
+     * Forces the next {@link #update} to walk again, e.g. after blocks changed
+     * or chunks were loaded or unloaded.
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Walks from the camera at world position {@code (x, y, z)} unless neither
+     * the camera's section nor the world changed since the last walk.
+     *
+     * @return {@code true} if the visible sections may have changed
+     */
+    public boolean update(ChunkRegistry chunks, float x, float y, float z) {
+        int blockX = Math.round(x);
+        int blockZ = Math.round(z);
+        Chunk start = chunks.get(Math.floorDiv(blockX, Chunk.SIZE_X), Math.floorDiv(blockZ, Chunk.SIZE_Z));
+        // above or below the world the walk starts in the nearest section
+        int section = Math.floorDiv(Math.round(y), Chunk.SECTION_HEIGHT);
+        section = Math.max(0, Math.min(Chunk.SECTION_COUNT - 1, section));
+
+        if (!stale && start == lastStart && section == lastSection) {
+            return false;
+        }
+        stale = false;
+        lastStart = start;
+        lastSection = section;
+
+        pass++;
+        reachedCount = 0;
+        walked = start != null;
+        if (walked) {
+            walk(start, section);
+        }
+        return true;
+    }
+
+    private void walk(Chunk start, int startSection) {
+        int head = 0;
+        int tail = 0;
+        start.markReached(pass, startSection);
+        reachedCount++;
+        queueChunks[tail] = start;
+        // the camera's own section is left through every face
+        queueEntries[tail++] = startSection | NO_FACE << ENTRY_SHIFT;
+
+        while (head < tail) {
+            Chunk chunk = queueChunks[head];
+            int entry = queueEntries[head];
+            queueChunks[head++] = null;
+
+            int section = entry & ((1 << ENTRY_SHIFT) - 1);
+            int from = (entry >> ENTRY_SHIFT) & 7;
+            int directions = entry >> DIRECTIONS_SHIFT;
+            int sectionConnectivity = from == NO_FACE ? 0 : chunk.getConnectivity(section, connectivity);
+
+            for (int face = 0; face < SectionConnectivity.FACES; face++) {
+                if ((directions & (1 << SectionConnectivity.opposite(face))) != 0) {
+                    continue;
+                }
+                if (from != NO_FACE && !SectionConnectivity.connects(sectionConnectivity, from, face)) {
+                    continue;
+                }
+
+                Chunk next = chunk;
+                int nextSection = section + SectionConnectivity.faceDy(face);
+                if (nextSection < 0 || nextSection >= Chunk.SECTION_COUNT) {
+                    continue;
+                }
+                int dx = SectionConnectivity.faceDx(face);
+                int dz = SectionConnectivity.faceDz(face);
+                if (dx != 0 || dz != 0) {
+                    next = chunk.getNeighbor(dx, dz);
+                    if (next == null) {
+                        continue;
+                    }
+                }
+                if (!next.markReached(pass, nextSection)) {
+                    continue;
+                }
+                reachedCount++;
+
+                if (tail == queueChunks.length) {
+                    grow();
+                }
+                queueChunks[tail] = next;
+                queueEntries[tail++] = nextSection
+                        | SectionConnectivity.opposite(face) << ENTRY_SHIFT
+                        | (directions | 1 << face) << DIRECTIONS_SHIFT;
+            }
+        }
+    }
+
+    private void grow() {
+        queueChunks = Arrays.copyOf(queueChunks, queueChunks.length * 2);
+        queueEntries = Arrays.copyOf(queueEntries, queueEntries.length * 2);
+    }
+
+    /**
+     * Sections of {@code chunk} the last walk reached, all of them if the
+     * camera's chunk was not loaded and there was nothing to walk from.
+     */
+    public int getVisibleSections(Chunk chunk) {
+        return walked ? chunk.getReachedSections(pass) : Chunk.ALL_SECTIONS;
+    }
+
+    /**
+     * Sections reached by the last walk.
+     */
+    public int getVisibleCount() {
+        return reachedCount;
+    }
+}
@@ -0,0 +1,144 @@
+package com.alextoday.game.world;
+
+/**
+ * Exact voxel traversal (Amanatides &amp; Woo) over a {@link BlockAccess}.
+ *
+ * Block {@code (x, y, z)} covers {@code [x - 0.5, x + 0.5)} on each axis,
+ * matching how chunk geometry is placed. Every cell the ray crosses is
+ * visited exactly once, in order, and nothing is allocated per cast.
+ */
+public final class VoxelRaycaster {
+
+    private VoxelRaycaster() {
+    }
+
+    /**
+     * Finds the first non-air block along the ray.
+     *
+     * @param maxDistance maximum distance along the (normalized) direction
+     * @return {@code true} if a block was hit; details are written to {@code result}
+     */
+    public static boolean cast(BlockAccess blocks,
+                               float originX, float originY, float originZ,
+                               float dirX, float dirY, float dirZ,
+                               float maxDistance,
+                               RaycastResult result) {
+        result.reset();
+
+        float length = (float) Math.sqrt(dirX * dirX + dirY * dirY + dirZ * dirZ);
+        if (length == 0f) {
+            return false;
+        }
+        dirX /= length;
+        dirY /= length;
+        dirZ /= length;
+
+        // shift so that cell boundaries are on integers
+        float px = originX + 0.5f;
+        float py = originY + 0.5f;
+        float pz = originZ + 0.5f;
+
+        int x = (int) Math.floor(px);
+        int y = (int) Math.floor(py);
+        int z = (int) Math.floor(pz);
+
+        int stepX = dirX > 0 ? 1 : (dirX < 0 ? -1 : 0);
+        int stepY = dirY > 0 ? 1 : (dirY < 0 ? -1 : 0);
+        int stepZ = dirZ > 0 ? 1 : (dirZ < 0 ? -1 : 0);
+
+        float tDeltaX = stepX != 0 ? Math.abs(1f / dirX) : Float.POSITIVE_INFINITY;
+        float tDeltaY = stepY != 0 ? Math.abs(1f / dirY) : Float.POSITIVE_INFINITY;
+        float tDeltaZ = stepZ != 0 ? Math.abs(1f / dirZ) : Float.POSITIVE_INFINITY;
+
+        float tMaxX = boundaryDistance(px, x, stepX, dirX);
+        float tMaxY = boundaryDistance(py, y, stepY, dirY);
+        float tMaxZ = boundaryDistance(pz, z, stepZ, dirZ);
+
+        int normalX = 0;
+        int normalY = 0;
+        int normalZ = 0;
+        float t = 0f;
+
+        while (t <= maxDistance) {
+            if ((y < 0 && stepY <= 0) || (y >= Chunk.SIZE_Y && stepY >= 0)) {
+                // left the world vertically and not coming back
+                return false;
+            }
+
+            BlockType type = blocks.getBlockType(x, y, z);
+            if (type != null && type != BlockType.AIR) {
+                result.hit = true;
+                result.type = type;
+                result.hitX = x;
+                result.hitY = y;
+                result.hitZ = z;
+                result.normalX = normalX;
+                result.normalY = normalY;
+                result.normalZ = normalZ;
+                result.placeX = x + normalX;
+                result.placeY = y + normalY;
+                result.placeZ = z + normalZ;
+                result.distance = t;
+                return true;
+            }
+
+            if (tMaxX < tMaxY && tMaxX < tMaxZ) {
+                t = tMaxX;
+                x += stepX;
+                tMaxX += tDeltaX;
+                normalX = -stepX;
+                normalY = 0;
+                normalZ = 0;
+            } else if (tMaxY < tMaxZ) {
+                t = tMaxY;
+                y += stepY;
+                tMaxY += tDeltaY;
+                normalX = 0;
+                normalY = -stepY;
+                normalZ = 0;
+            } else {
+                t = tMaxZ;
+                z += stepZ;
+                tMaxZ += tDeltaZ;
+                normalX = 0;
+                normalY = 0;
+                normalZ = -stepZ;
+            }
+        }
+        return false;
+    }
+
+    private static float boundaryDistance(float p, int cell, int step, float dir) {
+        if (step > 0) {
+            return (cell + 1 - p) / dir;
+        }
+        if (step < 0) {
+            return (p - cell) / -dir;
+        }
+        return Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Casts {@code count} rays. Origins and directions are packed as xyz triples.
+     *
+     * @return number of rays that hit a block
+     */
+    public static int castAll(BlockAccess blocks,
+                              float[] origins,
+                              float[] directions,
+                              int count,
+                              float maxDistance,
+                              RaycastResult[] results) {
+        int hits = 0;
+        for (int i = 0; i < count; i++) {
+            int o = i * 3;
+            if (cast(blocks,
+                    origins[o], origins[o + 1], origins[o + 2],
+                    directions[o], directions[o + 1], directions[o + 2],
+                    maxDistance, results[i])) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -1,23 +1,45 @@
 package com.alextoday.game.world;
 
 import com.alextoday.game.world.BlockType;
+import com.alextoday.game.metrics.ChunkStage;
+import com.alextoday.game.metrics.ChunkStageEvent;
+import com.alextoday.game.metrics.Metrics;
+import com.alextoday.game.world.storage.PregenCache;
+import com.alextoday.game.world.storage.RegionStorage;
 
 import com.jme3.asset.AssetManager;
 import com.jme3.bullet.PhysicsSpace;
-import com.jme3.bullet.collision.shapes.CollisionShape;
-import com.jme3.bullet.control.RigidBodyControl;
-import com.jme3.bullet.util.CollisionShapeFactory;
+import com.jme3.bullet.collision.PhysicsCollisionObject;
+import com.jme3.bullet.objects.PhysicsCharacter;
+import com.jme3.bullet.objects.PhysicsGhostObject;
+import com.jme3.bullet.objects.PhysicsRigidBody;
 import com.jme3.material.Material;
+import com.jme3.material.RenderState;
 import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
 import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
 import com.jme3.scene.shape.Box;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.EnumMap;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-public class World {
+public class World implements BlockAccess {
+
+    private static final Logger LOG = Logger.getLogger(World.class.getName());
+
+    // the original 16 block world used 8 and 6
+    private static final int TERRAIN_BASE_HEIGHT = Chunk.WATER_SURFACE_Y + 2;
+    private static final int TERRAIN_AMPLITUDE = Math.min(16, Chunk.SIZE_Y * 3 / 8);
+
+    public static final long DEFAULT_SEED = 12345L;
 
     private final Node rootNode;
     private final AssetManager assetManager;
@@ -25,21 +47,85 @@ public class World {
     private final Map<BlockType, Material> materials;
     private final Box cubeMesh;
 
-    private final Map<String, Chunk> chunks = new HashMap<>();
+    private Material opaqueMaterial;
+    private Material waterMaterial;
+    private final ChunkMesher chunkMesher = new ChunkMesher();
+    private final ThreadLocal<ChunkMesher> workerMeshers = ThreadLocal.withInitial(ChunkMesher::new);
+    private final ChunkCollisionBuilder collisionBuilder = new ChunkCollisionBuilder();
+    private final LightEngine lightEngine = new LightEngine(this);
+    private final ThreadLocal<LightEngine> workerLightEngines = ThreadLocal.withInitial(() -> new LightEngine(null));
+    private final ThreadLocal<ChunkCollisionBuilder> workerCollisionBuilders =
+            ThreadLocal.withInitial(ChunkCollisionBuilder::new);
+    private final ThreadLocal<SectionConnectivity> workerConnectivity =
+            ThreadLocal.withInitial(SectionConnectivity::new);
+
+    private final List<PhysicsCollisionObject> physicsAnchors = new ArrayList<>();
+    private final Vector3f anchorLocation = new Vector3f();
+    private int physicsRadiusChunks = 1;
+    private volatile boolean greedyMeshing = true;
+
+    private final ChunkPipeline pipeline;
+    private long integrationBudgetNanos = 4_000_000L;
+
+    private final ChunkRegistry chunks = new ChunkRegistry();
+    private final ChunkCache chunkCache = new ChunkCache(32L << 20);
+    private long integratedChunks;
+    private int unloadMarginChunks = 1;
 
+    private final ChunkLoadScheduler loadScheduler = new ChunkLoadScheduler();
+    private int maxChunkStartsPerFrame = Math.max(2, ChunkPipeline.defaultThreadCount() * 2);
+    private float chunkWorkScale = 1f;
+    private final List<Chunk> unloadScratch = new ArrayList<>();
+    private final List<Chunk> dirtyChunks = new ArrayList<>();
+    private final ArrayDeque<Chunk> staleBorderChunks = new ArrayDeque<>();
+
+    private final long seed;
     private final PerlinNoise heightNoise;
     private final PhysicsSpace physicsSpace;
+    private final LodTerrain lodTerrain;
+    private final RegionBatcher regionBatcher;
+    private volatile boolean regionBatching = true;
+    private final VisibilityGraph visibilityGraph = new VisibilityGraph();
+    private boolean occlusionCulling = true;
+
+    private static final float TICK_SECONDS = 0.05f;
+    // ticks run at most per frame after a stall, the rest is dropped
+    private static final int MAX_CATCH_UP_TICKS = 4;
+
+    private final TickScheduler tickScheduler = new TickScheduler();
+    private final FluidSimulator fluids = new FluidSimulator(this, tickScheduler);
+    private final BlockEditor editor = new BlockEditor(this, lightEngine, fluids);
+    private float tickAccumulator;
+    private long tickBudgetNanos = 2_000_000L;
+
+    private volatile RegionStorage storage;
+    private volatile PregenCache pregenCache;
 
     public World(Node rootNode, AssetManager assetManager, PhysicsSpace physicsSpace) {
+        this(rootNode, assetManager, physicsSpace, DEFAULT_SEED);
+    }
+
+    /**
+     * @param seed seed of the terrain generator
+     */
+    public World(Node rootNode, AssetManager assetManager, PhysicsSpace physicsSpace, long seed) {
         this.rootNode = rootNode;
         this.assetManager = assetManager;
         this.materials = new EnumMap<>(BlockType.class);
         this.cubeMesh = new Box(0.5f, 0.5f, 0.5f);
 
-        this.heightNoise = new PerlinNoise(12345L);
+        this.seed = seed;
+        this.heightNoise = new PerlinNoise(seed);
         this.physicsSpace = physicsSpace;
 
         initMaterials();
+
+        this.lodTerrain = new LodTerrain(chunks, heightNoise, TERRAIN_BASE_HEIGHT, TERRAIN_AMPLITUDE, opaqueMaterial);
+        rootNode.attachChild(lodTerrain.getNode());
+        this.regionBatcher = new RegionBatcher(opaqueMaterial, waterMaterial);
+        rootNode.attachChild(regionBatcher.getNode());
+
+        this.pipeline = new ChunkPipeline(this::buildChunk, ChunkPipeline.defaultThreadCount());
     }
 
     private void initMaterials() {
@@ -58,30 +144,663 @@ public class World {
 
             materials.put(type, mat);
         }
+
+        opaqueMaterial = new Material(assetManager,
+                "Common/MatDefs/Light/Lighting.j3md");
+        opaqueMaterial.setBoolean("UseVertexColor", true);
+
+        waterMaterial = new Material(assetManager,
+                "Common/MatDefs/Light/Lighting.j3md");
+        waterMaterial.setBoolean("UseVertexColor", true);
+        waterMaterial.getAdditionalRenderState().setBlendMode(RenderState.BlendMode.Alpha);
     }
 
-    public int getTerrainHeightAt(float worldX, float worldZ) {
-        double scale = 0.05;
-        double n = heightNoise.noise(worldX * scale, worldZ * scale);
+    /**
+     * Switches between merged per-chunk meshes (default) and the old
+     * one-geometry-per-block path. Affects chunks built after the call.
+     */
+    public void setGreedyMeshing(boolean greedyMeshing) {
+        this.greedyMeshing = greedyMeshing;
+    }
+
+    public boolean isGreedyMeshing() {
+        return greedyMeshing;
+    }
+
+    /**
+     * Draws merged chunk meshes through shared per-region buffers (default,
+     * see {@link RegionBatcher}) instead of one geometry pair per chunk.
+     * Only applies with greedy meshing; set it before chunks are loaded.
+     */
+    public void setRegionBatching(boolean regionBatching) {
+        this.regionBatching = regionBatching;
+    }
+
+    public RegionBatcher getRegionBatcher() {
+        return regionBatcher;
+    }
+
+    /**
+     * Hides sections the camera cannot see through any opening, see
+     * {@link #cullHiddenSections}. On by default.
+     */
+    public void setOcclusionCulling(boolean occlusionCulling) {
+        this.occlusionCulling = occlusionCulling;
+        visibilityGraph.invalidate();
+        if (!occlusionCulling) {
+            for (Chunk chunk : chunks.values()) {
+                showSections(chunk, Chunk.ALL_SECTIONS);
+            }
+        }
+    }
+
+    public VisibilityGraph getVisibilityGraph() {
+        return visibilityGraph;
+    }
+
+    private boolean isBatched() {
+        return greedyMeshing && regionBatching;
+    }
+
+    /**
+     * Time per frame the render thread may spend attaching finished chunks
+     * to the scene graph and physics space. At least one chunk is attached per frame.
+     */
+    public void setIntegrationBudgetMillis(float millis) {
+        this.integrationBudgetNanos = (long) (millis * 1_000_000L);
+    }
+
+    public int getPendingChunkCount() {
+        return pipeline.getPendingCount();
+    }
+
+    /**
+     * Extra distance in chunks beyond the load radius before a chunk unloads,
+     * so walking back and forth over a chunk border does not reload it.
+     */
+    public void setUnloadMargin(int marginChunks) {
+        this.unloadMarginChunks = Math.max(0, marginChunks);
+    }
+
+    /**
+     * How many chunk jobs {@link #updateVisibleChunks} may start per call.
+     * Keeping the worker queue short lets re-ranking take effect quickly.
+     */
+    public void setMaxChunkStartsPerFrame(int maxStarts) {
+        this.maxChunkStartsPerFrame = Math.max(1, maxStarts);
+    }
+
+    /**
+     * Scales the chunk work {@link #updateVisibleChunks} does per call, e.g.
+     * below 1 while {@link ViewDistanceController} shrinks the radius: the
+     * integration budget and the job starts, and below 1 it also unloads at most
+     * as many chunks as it starts jobs instead of every chunk out of range at once.
+     * At least one chunk is still started, attached and unloaded. 1 by default.
+     */
+    public void setChunkWorkScale(float scale) {
+        this.chunkWorkScale = Math.max(0f, Math.min(1f, scale));
+    }
+
+    /**
+     * Memory budget for unloaded chunks kept with their meshes and
+     * collision shapes, see {@link ChunkCache}. 0 disables the cache.
+     */
+    public void setChunkCacheBytes(long maxBytes) {
+        chunkCache.setMaxBytes(maxBytes);
+    }
+
+    public ChunkCache getChunkCache() {
+        return chunkCache;
+    }
+
+    /**
+     * Chunks put into the scene since the world was created, whether freshly
+     * built or taken from the cache.
+     */
+    public long getIntegratedChunkCount() {
+        return integratedChunks;
+    }
+
+    /**
+     * Radius in chunks of the low-detail terrain drawn beyond the loaded
+     * chunks, see {@link LodTerrain}. 0 (the default) turns it off.
+     */
+    public void setLodRadius(int radiusChunks) {
+        lodTerrain.setRadius(radiusChunks);
+    }
+
+    public LodTerrain getLodTerrain() {
+        return lodTerrain;
+    }
+
+    /**
+     * Time per frame the render thread may spend on scheduled block updates
+     * such as flowing water. Updates left over run in the next frame.
+     */
+    public void setTickBudgetMillis(float millis) {
+        this.tickBudgetNanos = (long) (millis * 1_000_000L);
+    }
+
+    public TickScheduler getTickScheduler() {
+        return tickScheduler;
+    }
+
+    /**
+     * Bulk edits with undo, see {@link BlockEditor}.
+     */
+    public BlockEditor getEditor() {
+        return editor;
+    }
+
+    /**
+     * Where edited chunks are saved when they unload and loaded from before
+     * falling back to the generator. Without storage edits are lost on unload.
+     * The world closes the storage in {@link #shutdown()}.
+     */
+    public void setRegionStorage(RegionStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Chunks generated ahead of time, loaded instead of running the generator
+     * for chunks that are not in region storage. The world closes the cache in
+     * {@link #shutdown()}.
+     *
+     * @throws IllegalArgumentException if the cache was made with another seed
+     */
+    public void setPregenCache(PregenCache cache) {
+        if (cache != null && cache.getSeed() != seed) {
+            throw new IllegalArgumentException("Pregenerated chunks use seed " + cache.getSeed()
+                    + ", the world " + seed);
+        }
+        this.pregenCache = cache;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
 
-        int baseHeight = 8;
-        int amplitude = 6;
+    /**
+     * Generates the terrain of one chunk, the same for every caller with the
+     * same noise. Thread-safe.
+     */
+    public static Chunk generateChunk(PerlinNoise noise, int chunkX, int chunkZ) {
+        Chunk chunk = new Chunk(chunkX, chunkZ);
+        chunk.generateTerrainWithNoise(noise, TERRAIN_BASE_HEIGHT, TERRAIN_AMPLITUDE);
+        return chunk;
+    }
+
+    /**
+     * Builds the chunk geometry with {@code mesher} into the detached chunk node.
+     * Safe to call on a worker thread as long as the chunk is not in the scene yet.
+     */
+    private void buildChunkGeometry(Chunk chunk, ChunkMesher mesher, BlockAccess neighbors) {
+        if (!greedyMeshing) {
+            chunk.buildGeometry(null, cubeMesh, materials);
+            return;
+        }
+
+        mesher.buildSections(chunk, neighbors, Chunk.ALL_SECTIONS);
+        if (!regionBatching) {
+            attachSectionMeshes(chunk);
+        }
+    }
+
+    private void attachSectionMeshes(Chunk chunk) {
+        chunk.attachMeshes(null,
+                chunk.combineOpaqueSections(),
+                chunk.combineWaterSections(),
+                opaqueMaterial,
+                waterMaterial);
+    }
+
+    /**
+     * Registers a dynamic object (e.g. the player's {@code CharacterControl}).
+     * Only chunks within {@link #setPhysicsRadius(int)} of a registered object
+     * get a body in the physics space. With no objects registered every loaded
+     * chunk gets one.
+     */
+    public void addPhysicsAnchor(PhysicsCollisionObject anchor) {
+        physicsAnchors.add(anchor);
+    }
+
+    public void removePhysicsAnchor(PhysicsCollisionObject anchor) {
+        physicsAnchors.remove(anchor);
+    }
+
+    /**
+     * Distance in chunks (square radius) around physics anchors in which
+     * chunks keep a static body.
+     */
+    public void setPhysicsRadius(int radiusChunks) {
+        this.physicsRadiusChunks = radiusChunks;
+    }
+
+    private boolean getAnchorLocation(PhysicsCollisionObject anchor, Vector3f store) {
+        if (anchor instanceof PhysicsCharacter) {
+            ((PhysicsCharacter) anchor).getPhysicsLocation(store);
+        } else if (anchor instanceof PhysicsRigidBody) {
+            ((PhysicsRigidBody) anchor).getPhysicsLocation(store);
+        } else if (anchor instanceof PhysicsGhostObject) {
+            ((PhysicsGhostObject) anchor).getPhysicsLocation(store);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isInPhysicsRange(Chunk chunk) {
+        if (physicsAnchors.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < physicsAnchors.size(); i++) {
+            if (!getAnchorLocation(physicsAnchors.get(i), anchorLocation)) {
+                continue;
+            }
+            int cx = Math.floorDiv((int) Math.floor(anchorLocation.x), Chunk.SIZE_X);
+            int cz = Math.floorDiv((int) Math.floor(anchorLocation.z), Chunk.SIZE_Z);
+            if (Math.abs(chunk.getChunkX() - cx) <= physicsRadiusChunks
+                    && Math.abs(chunk.getChunkZ() - cz) <= physicsRadiusChunks) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds bodies for chunks that came into range of a physics anchor and
+     * removes the ones that left it.
+     */
+    private void updatePhysicsBodies() {
+        for (Chunk chunk : chunks.values()) {
+            boolean wanted = chunk.getCollisionShape() != null && isInPhysicsRange(chunk);
+            PhysicsRigidBody body = chunk.getTerrainBody();
+            if (wanted && body == null) {
+                addTerrainBody(chunk);
+            } else if (!wanted && body != null) {
+                removeTerrainBody(chunk);
+            }
+        }
+    }
+
+    private void addTerrainBody(Chunk chunk) {
+        PhysicsRigidBody body = new PhysicsRigidBody(chunk.getCollisionShape(), 0f);
+        body.setPhysicsLocation(ChunkCollisionBuilder.chunkOrigin(chunk));
+        physicsSpace.add(body);
+        chunk.setTerrainBody(body);
+    }
+
+    private void removeTerrainBody(Chunk chunk) {
+        PhysicsRigidBody body = chunk.getTerrainBody();
+        if (body != null) {
+            physicsSpace.remove(body);
+            chunk.setTerrainBody(null);
+        }
+    }
+
+    /**
+     * Runs on a chunk worker: generation, mesh building and collision shape creation.
+     * The body itself is added on the render thread once an anchor is in range.
+     */
+    private Chunk buildChunk(ChunkPipeline.Job job) {
+        if (job.getTarget() != null) {
+            return remeshCopy(job);
+        }
+        int cx = job.getChunkX();
+        int cz = job.getChunkZ();
+
+        Chunk chunk = null;
+        if (storage != null || pregenCache != null) {
+            ChunkStageEvent event = Metrics.ENABLED ? Metrics.begin(ChunkStage.LOAD, cx, cz) : null;
+            chunk = loadStoredChunk(cx, cz);
+            if (chunk == null) {
+                chunk = loadPregeneratedChunk(cx, cz);
+            }
+            if (event != null) {
+                Metrics.end(event);
+            }
+        }
+        if (chunk == null) {
+            ChunkStageEvent event = Metrics.ENABLED ? Metrics.begin(ChunkStage.GENERATE, cx, cz) : null;
+            chunk = generateChunk(heightNoise, cx, cz);
+            if (event != null) {
+                Metrics.end(event);
+            }
+        }
+        if (job.isCancelled()) {
+            return null;
+        }
+
+        ChunkStageEvent lightEvent = Metrics.ENABLED ? Metrics.begin(ChunkStage.LIGHT, cx, cz) : null;
+        workerLightEngines.get().lightChunk(chunk);
+        if (lightEvent != null) {
+            Metrics.end(lightEvent);
+        }
+
+        ChunkStageEvent meshEvent = Metrics.ENABLED ? Metrics.begin(ChunkStage.MESH, cx, cz) : null;
+        buildChunkGeometry(chunk, workerMeshers.get(), job.getBorders());
+        if (job.getBorders() instanceof ChunkBorders) {
+            chunk.setMeshedNeighbors(((ChunkBorders) job.getBorders()).getCapturedSides());
+        }
+        if (meshEvent != null) {
+            Metrics.end(meshEvent);
+        }
+        if (job.isCancelled()) {
+            return null;
+        }
+
+        ChunkStageEvent collisionEvent = Metrics.ENABLED ? Metrics.begin(ChunkStage.COLLISION, cx, cz) : null;
+        chunk.setCollisionShape(workerCollisionBuilders.get().build(chunk));
+        chunk.takeCollisionDirty();
+        if (collisionEvent != null) {
+            Metrics.end(collisionEvent);
+        }
+        chunk.updateConnectivity(workerConnectivity.get());
+        return chunk;
+    }
+
+    /**
+     * Runs on a chunk worker: rebuilds the sections of a remesh job in its
+     * copy of the chunk, see {@link #submitStaleBorders(long)}.
+     */
+    private Chunk remeshCopy(ChunkPipeline.Job job) {
+        ChunkStageEvent event = Metrics.ENABLED
+                ? Metrics.begin(ChunkStage.REBUILD, job.getChunkX(), job.getChunkZ()) : null;
+        workerMeshers.get().buildSections(job.getCopy(), job.getBorders(), job.getSections());
+        if (event != null) {
+            Metrics.end(event);
+        }
+        return job.getCopy();
+    }
+
+    private Chunk loadStoredChunk(int cx, int cz) {
+        RegionStorage storage = this.storage;
+        if (storage == null) {
+            return null;
+        }
+        try {
+            return storage.load(cx, cz);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to load chunk " + cx + "," + cz + ", regenerating", e);
+            return null;
+        }
+    }
+
+    private Chunk loadPregeneratedChunk(int cx, int cz) {
+        PregenCache cache = this.pregenCache;
+        if (cache == null) {
+            return null;
+        }
+        try {
+            return cache.load(cx, cz);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to load pregenerated chunk " + cx + "," + cz + ", generating", e);
+            return null;
+        }
+    }
+
+    /**
+     * Render thread only: integrates a chunk built by the pipeline, see
+     * {@link #markChangedBorders}.
+     */
+    private void integrateBuilt(ChunkPipeline.Job job) {
+        if (job.getTarget() != null) {
+            integrateRemesh(job);
+            return;
+        }
+        Chunk chunk = job.getResult();
+        if (job.getBorders() instanceof ChunkBorders && !chunks.contains(chunk.getChunkX(), chunk.getChunkZ())) {
+            markChangedBorders(chunk, (ChunkBorders) job.getBorders());
+        }
+        integrateChunk(chunk);
+    }
+
+    /**
+     * Render thread only: moves the sections rebuilt by a remesh job into its
+     * chunk and updates the scene. If the chunk was unloaded or remeshed from
+     * its live blocks meanwhile, the sections are marked stale again instead.
+     */
+    private void integrateRemesh(ChunkPipeline.Job job) {
+        Chunk chunk = job.getTarget();
+        boolean loaded = getChunk(chunk.getChunkX(), chunk.getChunkZ()) == chunk;
+        if (!loaded || chunk.getMeshVersion() != job.getResult().getMeshVersion()) {
+            chunk.markBorderStale(job.getSections());
+            if (loaded) {
+                staleBorderChunks.add(chunk);
+            }
+            return;
+        }
+
+        chunk.takeSectionMeshes(job.getResult(), job.getSections());
+        chunk.markMeshRebuilt();
+        markChangedBorders(chunk, (ChunkBorders) job.getBorders());
+        if (regionBatching) {
+            regionBatcher.update(chunk);
+        } else {
+            attachSectionMeshes(chunk);
+        }
+        if (chunk.getStaleBorderSections() != 0) {
+            staleBorderChunks.add(chunk);
+        }
+    }
+
+    /**
+     * A neighbor face copied for meshing can change before the meshes are
+     * integrated, while a chunk that is not loaded yet cannot be marked dirty
+     * by the edit and a remeshed one is not marked for it either. The
+     * sections meshed against a face that changed since are marked stale, see
+     * {@link ChunkBorders#changedSections}. A neighbor that unloaded meanwhile
+     * is treated like one that was never there, one that loaded meanwhile
+     * like one that just loaded, see {@link #markStaleBorders}.
+     */
+    private void markChangedBorders(Chunk chunk, ChunkBorders borders) {
+        int captured = borders.getCapturedSides();
+        chunk.setMeshedNeighbors(captured);
+        for (int side = 0; side < 4; side++) {
+            Chunk neighbor = getChunk(chunk.getChunkX() + Chunk.NEIGHBOR_DX[side],
+                    chunk.getChunkZ() + Chunk.NEIGHBOR_DZ[side]);
+            if (neighbor == null) {
+                chunk.setMeshedNeighbors(chunk.getMeshedNeighbors() & ~(1 << side));
+            } else if ((captured & (1 << side)) != 0) {
+                chunk.markBorderStale(borders.changedSections(side, neighbor));
+            } else {
+                remeshIfMeshedWithout(chunk, neighbor, side);
+            }
+        }
+    }
+
+    /**
+     * Render thread only: puts a finished chunk into the scene and physics space.
+     */
+    private void integrateChunk(Chunk chunk) {
+        if (chunks.contains(chunk.getChunkX(), chunk.getChunkZ())) {
+            return;
+        }
+
+        ChunkStageEvent event = Metrics.ENABLED
+                ? Metrics.begin(ChunkStage.ATTACH, chunk.getChunkX(), chunk.getChunkZ()) : null;
+        if (isBatched()) {
+            regionBatcher.add(chunk);
+        } else {
+            rootNode.attachChild(chunk.getNode());
+        }
+        chunks.put(chunk);
+        lightEngine.stitch(chunk);
+        markStaleBorders(chunk);
+        if (chunk.getStaleBorderSections() != 0) {
+            // marked before it was unloaded, or just now
+            staleBorderChunks.add(chunk);
+        }
+        visibilityGraph.invalidate();
+        integratedChunks++;
+        if (chunk.getCollisionShape() != null && isInPhysicsRange(chunk)) {
+            addTerrainBody(chunk);
+        }
+        if (event != null) {
+            Metrics.end(event);
+        }
+    }
+
+    /**
+     * A chunk meshed while a neighbor was missing drew its faces toward that
+     * side as if the neighbor were air. Once both are loaded, the affected
+     * sections of whichever was meshed without the other are queued for a
+     * rebuild, once per pair of chunks, see {@link #submitStaleBorders(long)}.
+     */
+    private void markStaleBorders(Chunk chunk) {
+        for (int side = 0; side < 4; side++) {
+            Chunk neighbor = chunk.getNeighbor(Chunk.NEIGHBOR_DX[side], Chunk.NEIGHBOR_DZ[side]);
+            if (neighbor != null) {
+                remeshIfMeshedWithout(chunk, neighbor, side);
+                remeshIfMeshedWithout(neighbor, chunk, side ^ 1);
+            }
+        }
+    }
+
+    private void remeshIfMeshedWithout(Chunk chunk, Chunk neighbor, int side) {
+        int meshed = chunk.getMeshedNeighbors();
+        if ((meshed & (1 << side)) != 0) {
+            return;
+        }
+        chunk.setMeshedNeighbors(meshed | 1 << side);
+        if (chunk.markBorderStale(staleBorderSections(chunk, neighbor, side))) {
+            staleBorderChunks.add(chunk);
+        }
+    }
+
+    /**
+     * Hands queued stale border sections to the pipeline to be remeshed from
+     * a copy of the chunk with freshly captured borders, see
+     * {@link #integrateRemesh}, until {@code budgetNanos} is used up, at least
+     * one chunk per call. Without greedy meshing they are rebuilt right away.
+     */
+    private void submitStaleBorders(long budgetNanos) {
+        long start = System.nanoTime();
+        Chunk chunk;
+        while ((chunk = staleBorderChunks.poll()) != null) {
+            int cx = chunk.getChunkX();
+            int cz = chunk.getChunkZ();
+            if (getChunk(cx, cz) != chunk) {
+                // unloaded meanwhile, queued again when it comes back
+                continue;
+            }
+            if (pipeline.isPending(cx, cz)) {
+                // queued again once that remesh is integrated
+                continue;
+            }
+            int sections = chunk.takeStaleBorderSections();
+            if (sections == 0) {
+                // already rebuilt with an edit
+                continue;
+            }
+            if (greedyMeshing) {
+                pipeline.submitRemesh(chunk, chunk.copyForMeshing(), sections, ChunkBorders.capture(this, cx, cz));
+            } else {
+                rebuildChunk(chunk, sections | chunk.takeDirtySections());
+            }
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+    }
 
-        int height = (int) Math.round(baseHeight + n * amplitude);
+    /**
+     * Sections of {@code chunk} with a block on the {@code side} face whose
+     * neighbor block is not what the mesher assumed for a missing chunk:
+     * air in full sky light. Only those can have a different face or shade.
+     */
+    private static int staleBorderSections(Chunk chunk, Chunk neighbor, int side) {
+        boolean alongZ = side < 2;
+        int length = alongZ ? Chunk.SIZE_Z : Chunk.SIZE_X;
+        int edge = (side & 1) == 0 ? 0 : (alongZ ? Chunk.SIZE_X : Chunk.SIZE_Z) - 1;
+        int neighborEdge = (alongZ ? Chunk.SIZE_X : Chunk.SIZE_Z) - 1 - edge;
 
-        if (height < 1) height = 1;
-        if (height > Chunk.SIZE_Y) height = Chunk.SIZE_Y;
+        int sections = 0;
+        for (int section = 0; section < Chunk.SECTION_COUNT; section++) {
+            if (chunk.getUniformType(section) == BlockType.AIR) {
+                continue;
+            }
+            scan:
+            for (int y = section * Chunk.SECTION_HEIGHT; y < (section + 1) * Chunk.SECTION_HEIGHT; y++) {
+                for (int i = 0; i < length; i++) {
+                    int x = alongZ ? edge : i;
+                    int z = alongZ ? i : edge;
+                    int nx = alongZ ? neighborEdge : i;
+                    int nz = alongZ ? i : neighborEdge;
+                    if (chunk.getBlock(x, y, z) != BlockType.AIR
+                            && (neighbor.getBlock(nx, y, nz) != BlockType.AIR
+                            || neighbor.getPackedLight(nx, y, nz) != LightStorage.FULL_SKY)) {
+                        sections |= 1 << section;
+                        break scan;
+                    }
+                }
+            }
+        }
+        return sections;
+    }
 
-        return height;
+    /**
+     * Surface height at a world position: y of the highest solid block plus one.
+     * Uses the chunk heightmap when the chunk is loaded, so it reflects edits;
+     * otherwise falls back to the generator's noise.
+     */
+    public int getTerrainHeightAt(float worldX, float worldZ) {
+        int height = getHeight(HeightmapType.SOLID, Math.round(worldX), Math.round(worldZ));
+        if (height >= 0) {
+            return height;
+        }
+        double n = heightNoise.noise(worldX * Chunk.TERRAIN_SCALE, worldZ * Chunk.TERRAIN_SCALE);
+        return Chunk.terrainHeight(n, TERRAIN_BASE_HEIGHT, TERRAIN_AMPLITUDE);
     }
 
+    /**
+     * Heightmap value of column {@code (x, z)}, see {@link Chunk#getHeight},
+     * or -1 if its chunk is not loaded.
+     */
+    public int getHeight(HeightmapType type, int x, int z) {
+        Chunk chunk = getChunkByWorldCoords(x, z);
+        if (chunk == null) {
+            return -1;
+        }
+        return chunk.getHeight(type, Math.floorMod(x, Chunk.SIZE_X), Math.floorMod(z, Chunk.SIZE_Z));
+    }
 
-    private String chunkKey(int cx, int cz) {
-        return cx + "," + cz;
+    /**
+     * Finds the loaded column closest to {@code (x, z)} (square rings up to
+     * {@code radius}) whose top block is solid and not under water, and stores
+     * the block center on top of it. Falls back to the top of column {@code (x, z)}.
+     */
+    public Vector3f findSpawnPoint(int x, int z, int radius, Vector3f store) {
+        if (store == null) {
+            store = new Vector3f();
+        }
+        for (int r = 0; r <= radius; r++) {
+            for (int dx = -r; dx <= r; dx++) {
+                for (int dz = -r; dz <= r; dz++) {
+                    if (Math.abs(dx) != r && Math.abs(dz) != r) {
+                        continue;
+                    }
+                    int solid = getHeight(HeightmapType.SOLID, x + dx, z + dz);
+                    if (solid > 0 && getHeight(HeightmapType.NON_AIR, x + dx, z + dz) == solid) {
+                        return store.set(x + dx, solid, z + dz);
+                    }
+                }
+            }
+        }
+        int top = getHeight(HeightmapType.NON_AIR, x, z);
+        return store.set(x, top >= 0 ? top : getTerrainHeightAt(x, z), z);
     }
 
+
     private Chunk getChunk(int cx, int cz) {
-        return chunks.get(chunkKey(cx, cz));
+        return chunks.get(cx, cz);
+    }
+
+    /**
+     * Loaded chunk at chunk coordinates, or {@code null}. Render thread only.
+     */
+    public Chunk getLoadedChunk(int cx, int cz) {
+        return getChunk(cx, cz);
     }
 
     private Chunk getChunkByWorldCoords(int x, int z) {
@@ -92,50 +811,136 @@ public class World {
 
 
     public void updateVisibleChunks(float playerX, float playerZ, int radiusChunks) {
-        ensureChunksAround(playerX, playerZ, radiusChunks);
-        unloadFarChunks(playerX, playerZ, radiusChunks);
+        updateVisibleChunks(playerX, playerZ, 0f, 0f, radiusChunks);
     }
 
-    private void ensureChunksAround(float playerX, float playerZ, int radiusChunks) {
+    /**
+     * Starts loading missing chunks in the radius, nearest and most in front
+     * of the look direction {@code (lookX, lookZ)} first, at most
+     * {@link #setMaxChunkStartsPerFrame(int)} per call. Unloads far chunks and
+     * attaches finished ones within the integration budget, then updates the
+     * low-detail rings around them.
+     */
+    public void updateVisibleChunks(float playerX, float playerZ, float lookX, float lookZ, int radiusChunks) {
+        int maxStarts = Math.max(1, (int) (maxChunkStartsPerFrame * chunkWorkScale));
+        ensureChunksAround(playerX, playerZ, lookX, lookZ, radiusChunks, maxStarts);
+        unloadFarChunks(playerX, playerZ, radiusChunks, chunkWorkScale < 1f ? maxStarts : Integer.MAX_VALUE);
+        long budgetNanos = (long) (integrationBudgetNanos * chunkWorkScale);
+        long integrateStart = System.nanoTime();
+        pipeline.integrate(budgetNanos, this::integrateBuilt);
+        submitStaleBorders(budgetNanos - (System.nanoTime() - integrateStart));
+        chunks.publish();
+        regionBatcher.flush();
+
         int centerCx = (int) Math.floor(playerX / Chunk.SIZE_X);
         int centerCz = (int) Math.floor(playerZ / Chunk.SIZE_Z);
+        lodTerrain.update(centerCx, centerCz, radiusChunks + unloadMarginChunks);
+    }
 
-        for (int dx = -radiusChunks; dx <= radiusChunks; dx++) {
-            for (int dz = -radiusChunks; dz <= radiusChunks; dz++) {
-                int cx = centerCx + dx;
-                int cz = centerCz + dz;
+    /**
+     * Loads every chunk in the radius before returning, e.g. the spawn area.
+     */
+    public void loadChunksNow(float playerX, float playerZ, int radiusChunks) {
+        ensureChunksAround(playerX, playerZ, 0f, 0f, radiusChunks, Integer.MAX_VALUE);
+        pipeline.awaitAll(this::integrateBuilt);
+        while (!staleBorderChunks.isEmpty()) {
+            submitStaleBorders(Long.MAX_VALUE);
+            pipeline.awaitAll(this::integrateBuilt);
+        }
+        chunks.publish();
+        regionBatcher.flush();
+    }
 
-                String key = chunkKey(cx, cz);
-                if (chunks.containsKey(key)) {
-                    continue;
-                }
+    /**
+     * Stops the chunk workers, saves every unsaved chunk and closes the storage.
+     */
+    public void shutdown() {
+        pipeline.shutdown();
+        lodTerrain.clear();
+        regionBatcher.clear();
+        tickScheduler.clear();
+
+        PregenCache cache = this.pregenCache;
+        if (cache != null) {
+            try {
+                cache.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to close pregenerated chunks", e);
+            }
+        }
+
+        RegionStorage storage = this.storage;
+        if (storage == null) {
+            return;
+        }
+        for (Chunk chunk : chunks.values()) {
+            saveIfEdited(chunk);
+        }
+        chunkCache.clear();
+        try {
+            storage.close();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to close region storage", e);
+        }
+    }
+
+    /**
+     * Only chunks that differ from the generator are written.
+     */
+    private void saveIfEdited(Chunk chunk) {
+        if (storage != null && chunk.isUnsaved()) {
+            storage.saveAsync(chunk);
+        }
+    }
 
-                Chunk chunk = new Chunk(cx, cz);
+    private void ensureChunksAround(float playerX, float playerZ, float lookX, float lookZ,
+                                    int radiusChunks, int maxStarts) {
+        int centerCx = (int) Math.floor(playerX / Chunk.SIZE_X);
+        int centerCz = (int) Math.floor(playerZ / Chunk.SIZE_Z);
 
-                chunk.generateTerrainWithNoise(heightNoise, 8, 6);
+        loadScheduler.update(centerCx, centerCz, radiusChunks, lookX, lookZ);
 
-                chunk.buildGeometry(rootNode, cubeMesh, materials);
+        int started = 0;
+        while (started < maxStarts && loadScheduler.hasNext()) {
+            long key = loadScheduler.next();
+            int cx = Chunk.keyX(key);
+            int cz = Chunk.keyZ(key);
 
-                CollisionShape shape = CollisionShapeFactory.createMeshShape(chunk.getNode());
-                RigidBodyControl terrainBody = new RigidBodyControl(shape, 0);
-                chunk.getNode().addControl(terrainBody);
-                physicsSpace.add(terrainBody);
-                chunk.setTerrainBody(terrainBody);
+            if (chunks.contains(cx, cz) || pipeline.isPending(cx, cz)) {
+                continue;
+            }
 
-                chunks.put(key, chunk);
+            Chunk cached = chunkCache.take(cx, cz);
+            if (cached != null) {
+                reattachChunk(cached);
+                continue;
             }
+
+            pipeline.submit(cx, cz, ChunkBorders.capture(this, cx, cz));
+            started++;
         }
     }
 
-    private void unloadFarChunks(float playerX, float playerZ, int radiusChunks) {
+    /**
+     * Puts a chunk from the cache back into the scene. Sections that were
+     * touched by border edits while it was away get remeshed in the next update.
+     */
+    private void reattachChunk(Chunk chunk) {
+        integrateChunk(chunk);
+        if (chunk.getDirtySections() != 0) {
+            dirtyChunks.add(chunk);
+        }
+    }
+
+    private void unloadFarChunks(float playerX, float playerZ, int loadRadiusChunks, int maxUnloads) {
         int centerCx = (int) Math.floor(playerX / Chunk.SIZE_X);
         int centerCz = (int) Math.floor(playerZ / Chunk.SIZE_Z);
+        int radiusChunks = loadRadiusChunks + unloadMarginChunks;
 
-        Iterator<Map.Entry<String, Chunk>> it = chunks.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, Chunk> entry = it.next();
-            Chunk chunk = entry.getValue();
+        pipeline.cancelOutside(centerCx, centerCz, radiusChunks);
 
+        unloadScratch.clear();
+        for (Chunk chunk : chunks.values()) {
             int cx = chunk.getChunkX();
             int cz = chunk.getChunkZ();
 
@@ -143,25 +948,235 @@ public class World {
             int dz = Math.abs(cz - centerCz);
 
             if (dx > radiusChunks || dz > radiusChunks) {
-                RigidBodyControl body = chunk.getTerrainBody();
-                if (body != null) {
-                    physicsSpace.remove(body);
-                    chunk.getNode().removeControl(body);
+                unloadScratch.add(chunk);
+                // the rest goes in the next frames
+                if (unloadScratch.size() == maxUnloads) {
+                    break;
                 }
+            }
+        }
 
-                chunk.getNode().removeFromParent();
-                it.remove();
+        for (Chunk chunk : unloadScratch) {
+            ChunkStageEvent event = Metrics.ENABLED
+                    ? Metrics.begin(ChunkStage.UNLOAD, chunk.getChunkX(), chunk.getChunkZ()) : null;
+            saveIfEdited(chunk);
+            removeTerrainBody(chunk);
+            chunk.getNode().removeFromParent();
+            regionBatcher.remove(chunk);
+            chunks.remove(chunk.getChunkX(), chunk.getChunkZ());
+            visibilityGraph.invalidate();
+            chunkCache.put(chunk);
+            if (event != null) {
+                Metrics.end(event);
             }
         }
+        unloadScratch.clear();
+    }
+
+    /**
+     * Per-chunk block storage footprint compared with a plain
+     * {@code BlockType[16][SIZE_Y][16]} layout (outer arrays plus references).
+     */
+    public String getMemoryReport() {
+        long legacyPerChunk = legacyBlockArrayBytes();
+
+        StringBuilder sb = new StringBuilder();
+        long total = 0;
+        for (Chunk chunk : chunks.values()) {
+            long bytes = chunk.getBlockMemoryBytes();
+            total += bytes;
+            int mixed = 0;
+            int maxBits = 0;
+            for (int section = 0; section < Chunk.SECTION_COUNT; section++) {
+                BlockStorage storage = chunk.getSection(section);
+                if (!storage.isSingleValue()) {
+                    mixed++;
+                }
+                maxBits = Math.max(maxBits, storage.getBitsPerEntry());
+            }
+            sb.append("chunk ").append(chunk.getChunkX()).append(',').append(chunk.getChunkZ())
+                    .append(": ").append(bytes).append(" B")
+                    .append(" (").append(mixed).append('/').append(Chunk.SECTION_COUNT)
+                    .append(" sections with block data, up to ").append(maxBits).append(" bits/block)")
+                    .append('\n');
+        }
+
+        long legacyTotal = legacyPerChunk * chunks.size();
+        sb.append("loaded chunks: ").append(chunks.size())
+                .append(", block data: ").append(total).append(" B")
+                .append(", legacy layout: ").append(legacyTotal).append(" B");
+        return sb.toString();
+    }
+
+    private static long legacyBlockArrayBytes() {
+        long outer = 16 + 4L * Chunk.SIZE_X;
+        long middle = Chunk.SIZE_X * (16 + 4L * Chunk.SIZE_Y);
+        long inner = (long) Chunk.SIZE_X * Chunk.SIZE_Y * (16 + 4L * Chunk.SIZE_Z);
+        return outer + middle + inner;
+    }
+
+    /**
+     * Read-only view of the loaded chunks.
+     */
+    public Collection<Chunk> getChunks() {
+        return chunks.values();
     }
 
-    public Map<String, Chunk> getChunks() {
+    public ChunkRegistry getChunkRegistry() {
         return chunks;
     }
 
+    /**
+     * Walks the {@link VisibilityGraph} from the camera at {@code (x, y, z)}
+     * and hides the sections it cannot reach. Cheap when neither the camera's
+     * section nor any block changed. Call before {@link #update(float)}, which
+     * uploads the result.
+     */
+    public void cullHiddenSections(float x, float y, float z) {
+        if (!occlusionCulling || !visibilityGraph.update(chunks, x, y, z)) {
+            return;
+        }
+        for (Chunk chunk : chunks.values()) {
+            showSections(chunk, visibilityGraph.getVisibleSections(chunk));
+        }
+    }
+
+    private void showSections(Chunk chunk, int sections) {
+        if (!chunk.setShownSections(sections)) {
+            return;
+        }
+        if (isBatched()) {
+            regionBatcher.updateVisibility(chunk);
+        } else {
+            // chunk meshes are not split by section here, hide the chunk only when nothing shows
+            chunk.getNode().setCullHint(sections == 0 ? Spatial.CullHint.Always : Spatial.CullHint.Inherit);
+        }
+    }
+
+    /**
+     * Runs due block updates, then rebuilds what they and other edits of the
+     * frame changed, once per chunk.
+     */
     public void update(float tpf) {
+        tickAccumulator += tpf;
+        int ticks = (int) (tickAccumulator / TICK_SECONDS);
+        if (ticks > 0) {
+            tickAccumulator -= ticks * TICK_SECONDS;
+            tickScheduler.advance(Math.min(ticks, MAX_CATCH_UP_TICKS));
+        }
+        if (tickScheduler.size() > 0) {
+            tickScheduler.run(tickBudgetNanos, fluids);
+        }
+        flushDirtyChunks();
+        updatePhysicsBodies();
+    }
+
+    /**
+     * Rebuilds every chunk edited since the last flush, once per chunk,
+     * remeshing only its dirty sections, and updates the region buffers.
+     */
+    public void flushDirtyChunks() {
+        for (int i = 0; i < dirtyChunks.size(); i++) {
+            Chunk chunk = dirtyChunks.get(i);
+            if (getChunk(chunk.getChunkX(), chunk.getChunkZ()) != chunk) {
+                // unloaded meanwhile, a cached chunk keeps its mask until it is reattached
+                continue;
+            }
+            // a pending border rebuild goes along rather than remeshing twice
+            int sections = chunk.takeDirtySections() | chunk.takeStaleBorderSections();
+            if (sections != 0) {
+                rebuildChunk(chunk, sections);
+            }
+        }
+        dirtyChunks.clear();
+        regionBatcher.flush();
     }
 
+    private void rebuildChunk(Chunk chunk, int sections) {
+        ChunkStageEvent event = Metrics.ENABLED
+                ? Metrics.begin(ChunkStage.REBUILD, chunk.getChunkX(), chunk.getChunkZ()) : null;
+        if (greedyMeshing) {
+            chunkMesher.buildSections(chunk, this, sections);
+            chunk.markMeshRebuilt();
+            if (regionBatching) {
+                regionBatcher.update(chunk);
+            } else {
+                attachSectionMeshes(chunk);
+            }
+        } else {
+            chunk.getNode().detachAllChildren();
+            chunk.buildGeometry(null, cubeMesh, materials);
+        }
+
+        // light and water level changes leave the collision shape as it is
+        if (chunk.takeCollisionDirty()) {
+            boolean hadBody = chunk.getTerrainBody() != null;
+            removeTerrainBody(chunk);
+            chunk.setCollisionShape(collisionBuilder.build(chunk));
+            if (hadBody && chunk.getCollisionShape() != null) {
+                addTerrainBody(chunk);
+            }
+        }
+        if (event != null) {
+            Metrics.end(event);
+        }
+    }
+
+    private void markDirty(Chunk chunk, int y) {
+        if (chunk.markDirtyAt(y)) {
+            dirtyChunks.add(chunk);
+        }
+    }
+
+    /**
+     * Marks the sections affected by a change of the block at chunk-local
+     * {@code (localX, y, localZ)}, including neighbor chunks across a border,
+     * and moves the chunk's border version on when the block is on a face.
+     */
+    void markBlockDirty(Chunk chunk, int localX, int y, int localZ) {
+        markDirty(chunk, y);
+        visibilityGraph.invalidate();
+
+        Chunk neighbor = null;
+        if (localX == 0) {
+            neighbor = chunk.getNeighbor(-1, 0);
+            chunk.markBorderChanged(0);
+        } else if (localX == Chunk.SIZE_X - 1) {
+            neighbor = chunk.getNeighbor(1, 0);
+            chunk.markBorderChanged(1);
+        }
+        if (neighbor != null) {
+            markDirty(neighbor, y);
+        } else if (localX == 0 || localX == Chunk.SIZE_X - 1) {
+            markCachedDirty(chunk.getChunkX() + (localX == 0 ? -1 : 1), chunk.getChunkZ(), y);
+        }
+
+        neighbor = null;
+        if (localZ == 0) {
+            neighbor = chunk.getNeighbor(0, -1);
+            chunk.markBorderChanged(2);
+        } else if (localZ == Chunk.SIZE_Z - 1) {
+            neighbor = chunk.getNeighbor(0, 1);
+            chunk.markBorderChanged(3);
+        }
+        if (neighbor != null) {
+            markDirty(neighbor, y);
+        } else if (localZ == 0 || localZ == Chunk.SIZE_Z - 1) {
+            markCachedDirty(chunk.getChunkX(), chunk.getChunkZ() + (localZ == 0 ? -1 : 1), y);
+        }
+    }
+
+    /**
+     * A cached neighbor keeps its dirty mask and is remeshed when it comes back.
+     */
+    private void markCachedDirty(int cx, int cz, int y) {
+        Chunk cached = chunkCache.peek(cx, cz);
+        if (cached != null) {
+            cached.markDirtyAt(y);
+        }
+    }
+
+    @Override
     public BlockType getBlockType(int x, int y, int z) {
         if (y < 0 || y >= Chunk.SIZE_Y) {
             return BlockType.AIR;
@@ -179,6 +1194,59 @@ public class World {
         return (type != null) ? type : BlockType.AIR;
     }
 
+    /**
+     * Block type at a world position like {@link #getBlockType}, but safe to
+     * call from any thread. Sees chunks loaded up to the last
+     * {@link #updateVisibleChunks} and edits as soon as they are made.
+     */
+    public BlockType readBlockType(int x, int y, int z) {
+        if (y < 0 || y >= Chunk.SIZE_Y) {
+            return BlockType.AIR;
+        }
+        Chunk chunk = chunks.getPublished(Math.floorDiv(x, Chunk.SIZE_X), Math.floorDiv(z, Chunk.SIZE_Z));
+        if (chunk == null) {
+            return BlockType.AIR;
+        }
+        return chunk.readBlock(Math.floorMod(x, Chunk.SIZE_X), y, Math.floorMod(z, Chunk.SIZE_Z));
+    }
+
+    /**
+     * Copies the blocks of the loaded chunks within {@code radiusChunks}
+     * (square) of chunk {@code (centerCx, centerCz)} as they are at one point
+     * in time. Safe to call from any thread, see {@link WorldSnapshot}.
+     */
+    public WorldSnapshot snapshot(int centerCx, int centerCz, int radiusChunks) {
+        List<Chunk> loaded = new ArrayList<>();
+        for (int cx = centerCx - radiusChunks; cx <= centerCx + radiusChunks; cx++) {
+            for (int cz = centerCz - radiusChunks; cz <= centerCz + radiusChunks; cz++) {
+                Chunk chunk = chunks.getPublished(cx, cz);
+                if (chunk != null) {
+                    loaded.add(chunk);
+                }
+            }
+        }
+        return WorldSnapshot.take(loaded);
+    }
+
+    /**
+     * Casts a ray through the block grid and reports the first non-air block,
+     * the face it was entered through and the free cell in front of that face.
+     */
+    public boolean raycast(Vector3f origin, Vector3f direction, float maxDistance, RaycastResult result) {
+        return VoxelRaycaster.cast(this,
+                origin.x, origin.y, origin.z,
+                direction.x, direction.y, direction.z,
+                maxDistance, result);
+    }
+
+    /**
+     * Casts many rays at once, see {@link VoxelRaycaster#castAll}.
+     */
+    public int raycastAll(float[] origins, float[] directions, int count,
+                          float maxDistance, RaycastResult[] results) {
+        return VoxelRaycaster.castAll(this, origins, directions, count, maxDistance, results);
+    }
+
     public void setBlockType(int x, int y, int z, BlockType type) {
         if (y < 0 || y >= Chunk.SIZE_Y) {
             return;
@@ -192,31 +1260,160 @@ public class World {
         int localX = Math.floorMod(x, Chunk.SIZE_X);
         int localZ = Math.floorMod(z, Chunk.SIZE_Z);
 
+        if (chunk.getBlock(localX, y, localZ) == type) {
+            return;
+        }
         chunk.setBlock(localX, y, localZ, type);
+        chunk.markEdited();
+        if (Metrics.ENABLED) {
+            Metrics.BLOCK_EDITS.increment();
+        }
 
-        updateChunkAt(x, y, z);
+        markBlockDirty(chunk, localX, y, localZ);
+        lightEngine.onBlockChanged(x, y, z);
+        fluids.onBlockChanged(x, y, z);
     }
 
-    public void updateChunkAt(int x, int y, int z) {
+    /**
+     * Flow level of the water block at a world position, see {@link FluidSimulator};
+     * 0 for source water and everything else.
+     */
+    public int getFluidLevel(int x, int y, int z) {
+        if (y < 0 || y >= Chunk.SIZE_Y) {
+            return 0;
+        }
         Chunk chunk = getChunkByWorldCoords(x, z);
         if (chunk == null) {
+            return 0;
+        }
+        return chunk.getFluidLevel(Math.floorMod(x, Chunk.SIZE_X), y, Math.floorMod(z, Chunk.SIZE_Z));
+    }
+
+    void setFluidLevel(int x, int y, int z, int level) {
+        if (y < 0 || y >= Chunk.SIZE_Y) {
             return;
         }
+        Chunk chunk = getChunkByWorldCoords(x, z);
+        if (chunk == null) {
+            return;
+        }
+        int localX = Math.floorMod(x, Chunk.SIZE_X);
+        int localZ = Math.floorMod(z, Chunk.SIZE_Z);
+        if (chunk.getFluidLevel(localX, y, localZ) != level) {
+            chunk.setFluidLevel(localX, y, localZ, level);
+            chunk.markEdited();
+        }
+    }
+
+    public boolean isLoaded(int x, int z) {
+        return getChunkByWorldCoords(x, z) != null;
+    }
+
+    /**
+     * Sky and block light at a world position as {@code sky << 4 | block};
+     * positions outside loaded chunks are in open sky.
+     */
+    @Override
+    public int getLight(int x, int y, int z) {
+        if (y < 0) {
+            return 0;
+        }
+        if (y >= Chunk.SIZE_Y) {
+            return LightStorage.FULL_SKY;
+        }
+        Chunk chunk = getChunkByWorldCoords(x, z);
+        if (chunk == null) {
+            return LightStorage.FULL_SKY;
+        }
+        return chunk.getPackedLight(Math.floorMod(x, Chunk.SIZE_X), y, Math.floorMod(z, Chunk.SIZE_Z));
+    }
+
+    /**
+     * Called by the light engine for every changed light level: the faces
+     * around that block are shaded by it.
+     */
+    void markLightDirty(Chunk chunk, int localX, int y, int localZ) {
+        markBlockDirty(chunk, localX, y, localZ);
+    }
+
+    /**
+     * The given chunks and all loaded chunks around them, diagonal ones
+     * included, each once: what {@link #relight} lights after changes in the
+     * given chunks. Light travels less than a chunk, so nothing beyond that
+     * ring can depend on them.
+     */
+    List<Chunk> relightArea(List<Chunk> changed) {
+        LongObjectMap<Chunk> area = new LongObjectMap<>(changed.size() * 9);
+        List<Chunk> relit = new ArrayList<>();
+        for (int i = 0; i < changed.size(); i++) {
+            Chunk chunk = changed.get(i);
+            for (int dz = -1; dz <= 1; dz++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    Chunk around = getLoadedChunk(chunk.getChunkX() + dx, chunk.getChunkZ() + dz);
+                    long key = Chunk.key(chunk.getChunkX() + dx, chunk.getChunkZ() + dz);
+                    if (around != null && area.get(key) == null) {
+                        area.put(key, around);
+                        relit.add(around);
+                    }
+                }
+            }
+        }
+        return relit;
+    }
 
-        RigidBodyControl oldBody = chunk.getTerrainBody();
-        if (oldBody != null) {
-            physicsSpace.remove(oldBody);
-            chunk.getNode().removeControl(oldBody);
+    /**
+     * Lights the chunks of a {@link #relightArea} from scratch and lets light
+     * flow in again from further out. Cheaper than incremental updates after
+     * large edits. Only blocks whose light changed mark their sections dirty,
+     * as with incremental updates.
+     */
+    void relight(List<Chunk> area) {
+        LightStorage[] before = new LightStorage[area.size()];
+        for (int i = 0; i < area.size(); i++) {
+            Chunk chunk = area.get(i);
+            before[i] = chunk.getLight().copy();
+            lightEngine.lightChunk(chunk);
+        }
+        for (int i = 0; i < area.size(); i++) {
+            lightEngine.stitch(area.get(i));
         }
 
-        chunk.getNode().detachAllChildren();
-        chunk.buildGeometry(rootNode, cubeMesh, materials);
+        for (int i = 0; i < area.size(); i++) {
+            Chunk chunk = area.get(i);
+            LightStorage light = chunk.getLight();
+            int changed = light.changedSections(before[i]);
+            while (changed != 0) {
+                int section = Integer.numberOfTrailingZeros(changed);
+                changed &= changed - 1;
+                int first = section << Chunk.SECTION_SHIFT;
+                for (int index = first; index < first + Chunk.SECTION_VOLUME; index++) {
+                    if (light.getPacked(index) != before[i].getPacked(index)) {
+                        markLightDirty(chunk, index % Chunk.SIZE_X, index / (Chunk.SIZE_X * Chunk.SIZE_Z),
+                                (index / Chunk.SIZE_X) % Chunk.SIZE_Z);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules a rebuild of the geometry around block {@code (x, y, z)}.
+     * The rebuild happens in the next {@link #update(float)}, together with
+     * all other edits of that frame.
+     */
+    public void updateChunkAt(int x, int y, int z) {
+        if (y < 0 || y >= Chunk.SIZE_Y) {
+            return;
+        }
+
+        Chunk chunk = getChunkByWorldCoords(x, z);
+        if (chunk == null) {
+            return;
+        }
 
-        CollisionShape shape = CollisionShapeFactory.createMeshShape(chunk.getNode());
-        RigidBodyControl terrainBody = new RigidBodyControl(shape, 0);
-        chunk.getNode().addControl(terrainBody);
-        physicsSpace.add(terrainBody);
-        chunk.setTerrainBody(terrainBody);
+        chunk.markCollisionDirty();
+        markBlockDirty(chunk,
+                Math.floorMod(x, Chunk.SIZE_X), y, Math.floorMod(z, Chunk.SIZE_Z));
     }
 
 }
@@ -0,0 +1,119 @@
+package com.alextoday.game.world;
+
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Blocks of a set of loaded chunks copied at one point in time, for work on
+ * other threads (meshing, saving, path finding) while the render thread keeps
+ * editing the world. Immutable once taken and safe to share between threads.
+ * Holds block types only, not light or water levels.
+ *
+ * Taking a snapshot first tries a seqlock-style copy: it reads an optimistic
+ * stamp of every chunk, copies them all and keeps the result if no stamp was
+ * invalidated meanwhile, so the writer is never blocked. If writes keep
+ * interfering it holds the read locks of all chunks during the copy; the
+ * writer then waits at most for the copy. Either way no chunk changed while
+ * the others were copied.
+ */
+public final class WorldSnapshot implements BlockAccess {
+
+    private static final int OPTIMISTIC_ATTEMPTS = 3;
+
+    private final LongObjectMap<BlockStorage[]> chunks;
+    private final boolean optimistic;
+
+    private WorldSnapshot(LongObjectMap<BlockStorage[]> chunks, boolean optimistic) {
+        this.chunks = chunks;
+        this.optimistic = optimistic;
+    }
+
+    /**
+     * Copies the given chunks. Safe to call from any thread.
+     */
+    static WorldSnapshot take(List<Chunk> chunks) {
+        long[] stamps = new long[chunks.size()];
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            LongObjectMap<BlockStorage[]> copies = tryCopy(chunks, stamps);
+            if (copies != null) {
+                return new WorldSnapshot(copies, true);
+            }
+            Thread.onSpinWait();
+        }
+
+        for (int i = 0; i < stamps.length; i++) {
+            // writers hold one chunk lock at a time, so taking several cannot deadlock
+            stamps[i] = chunks.get(i).getLock().readLock();
+        }
+        try {
+            return new WorldSnapshot(copy(chunks), false);
+        } finally {
+            for (int i = 0; i < stamps.length; i++) {
+                chunks.get(i).getLock().unlockRead(stamps[i]);
+            }
+        }
+    }
+
+    /**
+     * @return {@code null} if a chunk was written during the copy
+     */
+    private static LongObjectMap<BlockStorage[]> tryCopy(List<Chunk> chunks, long[] stamps) {
+        for (int i = 0; i < stamps.length; i++) {
+            stamps[i] = chunks.get(i).getLock().tryOptimisticRead();
+            if (stamps[i] == 0) {
+                return null;
+            }
+        }
+        LongObjectMap<BlockStorage[]> copies;
+        try {
+            copies = copy(chunks);
+        } catch (RuntimeException e) {
+            // storage seen halfway through a resize, the stamp check would fail anyway
+            return null;
+        }
+        for (int i = 0; i < stamps.length; i++) {
+            StampedLock lock = chunks.get(i).getLock();
+            if (!lock.validate(stamps[i])) {
+                return null;
+            }
+        }
+        return copies;
+    }
+
+    private static LongObjectMap<BlockStorage[]> copy(List<Chunk> chunks) {
+        LongObjectMap<BlockStorage[]> copies = new LongObjectMap<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            copies.put(Chunk.key(chunk.getChunkX(), chunk.getChunkZ()), chunk.copySections());
+        }
+        return copies;
+    }
+
+    @Override
+    public BlockType getBlockType(int x, int y, int z) {
+        if (y < 0 || y >= Chunk.SIZE_Y) {
+            return BlockType.AIR;
+        }
+        BlockStorage[] sections = chunks.get(Chunk.key(
+                Math.floorDiv(x, Chunk.SIZE_X), Math.floorDiv(z, Chunk.SIZE_Z)));
+        if (sections == null) {
+            return BlockType.AIR;
+        }
+        int index = Chunk.index(Math.floorMod(x, Chunk.SIZE_X), y, Math.floorMod(z, Chunk.SIZE_Z));
+        return sections[index >> Chunk.SECTION_SHIFT].get(index & (Chunk.SECTION_VOLUME - 1));
+    }
+
+    public boolean containsChunk(int cx, int cz) {
+        return chunks.containsKey(Chunk.key(cx, cz));
+    }
+
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Whether the copy succeeded without blocking the writer.
+     */
+    public boolean isOptimistic() {
+        return optimistic;
+    }
+}
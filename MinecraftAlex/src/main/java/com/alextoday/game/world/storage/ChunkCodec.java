@@ -0,0 +1,151 @@
+package com.alextoday.game.world.storage;
+
+import com.alextoday.game.world.BlockStorage;
+import com.alextoday.game.world.BlockType;
+import com.alextoday.game.world.Chunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary chunk payload: a format version, the section count and per section
+ * the palette-compressed block storage and the water flow levels if it has
+ * any. {@link #compress(byte[])} wraps it in a deflate stream prefixed with
+ * the uncompressed length.
+ *
+ * Versions 1 and 2 stored one 16 block tall storage per chunk, version 1
+ * without flow levels; they are read as the bottom section.
+ */
+public final class ChunkCodec {
+
+    private static final int FORMAT_VERSION = 3;
+
+    // the column height of versions 1 and 2
+    private static final int LEGACY_SECTIONS = 1;
+
+    private ChunkCodec() {
+    }
+
+    /**
+     * Serializes the chunk blocks. Render thread only, since it reads live chunk data.
+     */
+    public static byte[] encode(Chunk chunk) {
+        chunk.compact();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeShort(Chunk.SECTION_COUNT);
+            for (int section = 0; section < Chunk.SECTION_COUNT; section++) {
+                chunk.getSection(section).write(out);
+
+                byte[] fluidLevels = chunk.getFluidLevels(section);
+                out.writeBoolean(fluidLevels != null);
+                if (fluidLevels != null) {
+                    out.write(fluidLevels);
+                }
+            }
+        } catch (IOException e) {
+            // in-memory stream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Chunk decode(int chunkX, int chunkZ, byte[] raw) throws IOException {
+        return decode(chunkX, chunkZ, raw, null);
+    }
+
+    /**
+     * @param heightmaps stored heightmaps, see {@link Chunk#Chunk(int, int, BlockStorage[], short[][])},
+     *                   or {@code null} to compute them
+     */
+    public static Chunk decode(int chunkX, int chunkZ, byte[] raw, short[][] heightmaps) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw))) {
+            int version = in.readUnsignedByte();
+            if (version < 1 || version > FORMAT_VERSION) {
+                throw new IOException("Unsupported chunk format " + version);
+            }
+            int count = version >= 3 ? in.readUnsignedShort() : LEGACY_SECTIONS;
+            if (count > Chunk.SECTION_COUNT) {
+                throw new IOException("Chunk has " + count + " sections, the world only " + Chunk.SECTION_COUNT);
+            }
+
+            BlockStorage[] sections = new BlockStorage[Chunk.SECTION_COUNT];
+            byte[][] fluidLevels = new byte[count][];
+            for (int section = 0; section < count; section++) {
+                sections[section] = BlockStorage.read(in, Chunk.SECTION_VOLUME);
+                if (version >= 2 && in.readBoolean()) {
+                    fluidLevels[section] = new byte[Chunk.SECTION_VOLUME];
+                    in.readFully(fluidLevels[section]);
+                }
+            }
+            // a world made taller keeps its old chunks with air on top
+            for (int section = count; section < Chunk.SECTION_COUNT; section++) {
+                sections[section] = new BlockStorage(Chunk.SECTION_VOLUME, BlockType.AIR);
+            }
+
+            Chunk chunk = new Chunk(chunkX, chunkZ, sections, heightmaps);
+            for (int section = 0; section < count; section++) {
+                chunk.setFluidLevels(section, fluidLevels[section]);
+            }
+            return chunk;
+        }
+    }
+
+    public static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            out.writeBytes(ByteBuffer.allocate(4).putInt(raw.length).array());
+
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static byte[] decompress(byte[] compressed) throws IOException {
+        if (compressed.length < 4) {
+            throw new IOException("Chunk payload too short");
+        }
+        int rawLength = ByteBuffer.wrap(compressed, 0, 4).getInt();
+        if (rawLength < 0) {
+            throw new IOException("Invalid chunk length " + rawLength);
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed, 4, compressed.length - 4);
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength) {
+                int n = inflater.inflate(raw, read, rawLength - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Chunk payload truncated");
+                }
+                read += n;
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt chunk payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
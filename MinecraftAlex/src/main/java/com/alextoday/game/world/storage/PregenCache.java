@@ -0,0 +1,279 @@
+package com.alextoday.game.world.storage;
+
+import com.alextoday.game.world.Chunk;
+import com.alextoday.game.world.HeightmapType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only file of generated chunks covering a square of chunk coordinates,
+ * written ahead of time by {@link com.alextoday.game.tools.Pregenerate} so the
+ * world can load terrain instead of generating it.
+ *
+ * The file starts with a header (magic, version, seed, world height, first
+ * chunk x and z, side length in chunks), followed by an index with one entry
+ * per chunk in row order (payload offset and length, 0 length = missing) and
+ * the payloads packed back to back. A payload is a {@link ChunkCodec} payload
+ * followed by the chunk's heightmaps, {@link ChunkCodec#compress compressed}
+ * together. Reads are positional on a {@link FileChannel} and need no lock.
+ */
+public class PregenCache implements Closeable {
+
+    private static final int MAGIC = 0x4D435047;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 1 + 8 + 2 + 4 + 4 + 4;
+    private static final int ENTRY_BYTES = 12;
+    private static final int COLUMNS = Chunk.SIZE_X * Chunk.SIZE_Z;
+
+    private final FileChannel channel;
+    private final long seed;
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int side;
+
+    private final long[] offsets;
+    private final int[] lengths;
+
+    private PregenCache(FileChannel channel) throws IOException {
+        this.channel = channel;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a pregenerated chunk file");
+        }
+        int version = header.get() & 0xFF;
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported pregenerated chunk format " + version);
+        }
+        this.seed = header.getLong();
+        int height = header.getShort() & 0xFFFF;
+        if (height != Chunk.SIZE_Y) {
+            throw new IOException("Chunks were generated " + height + " blocks tall, the world is " + Chunk.SIZE_Y);
+        }
+        this.minChunkX = header.getInt();
+        this.minChunkZ = header.getInt();
+        this.side = header.getInt();
+        if (side <= 0) {
+            throw new IOException("Invalid side length " + side);
+        }
+
+        int entries = side * side;
+        this.offsets = new long[entries];
+        this.lengths = new int[entries];
+        ByteBuffer index = ByteBuffer.allocate(entries * ENTRY_BYTES);
+        readFully(channel, index, HEADER_BYTES);
+        index.flip();
+
+        long fileSize = channel.size();
+        for (int i = 0; i < entries; i++) {
+            long offset = index.getLong();
+            int length = index.getInt();
+            if (length > 0 && offset >= HEADER_BYTES && offset + length <= fileSize) {
+                offsets[i] = offset;
+                lengths[i] = length;
+            }
+        }
+    }
+
+    public static PregenCache open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new PregenCache(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Seed of the terrain generator the chunks came from.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getMinChunkX() {
+        return minChunkX;
+    }
+
+    public int getMinChunkZ() {
+        return minChunkZ;
+    }
+
+    public int getSide() {
+        return side;
+    }
+
+    private int entryIndex(int chunkX, int chunkZ) {
+        int x = chunkX - minChunkX;
+        int z = chunkZ - minChunkZ;
+        if (x < 0 || z < 0 || x >= side || z >= side) {
+            return -1;
+        }
+        return z * side + x;
+    }
+
+    public boolean contains(int chunkX, int chunkZ) {
+        int i = entryIndex(chunkX, chunkZ);
+        return i >= 0 && lengths[i] > 0;
+    }
+
+    /**
+     * Safe to call from several threads at once.
+     *
+     * @return the chunk with its heightmaps, or {@code null} if it is outside the file
+     */
+    public Chunk load(int chunkX, int chunkZ) throws IOException {
+        int i = entryIndex(chunkX, chunkZ);
+        if (i < 0 || lengths[i] == 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(lengths[i]);
+        readFully(channel, buffer, offsets[i]);
+        byte[] raw = ChunkCodec.decompress(buffer.array());
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw))) {
+            byte[] blocks = new byte[in.readInt()];
+            in.readFully(blocks);
+            short[][] heightmaps = new short[HeightmapType.values().length][COLUMNS];
+            for (short[] heights : heightmaps) {
+                for (int column = 0; column < COLUMNS; column++) {
+                    heights[column] = in.readShort();
+                }
+            }
+            return ChunkCodec.decode(chunkX, chunkZ, blocks, heightmaps);
+        }
+    }
+
+    /**
+     * The compressed payload of a freshly generated chunk, see {@link Writer#write}.
+     * Compacts the chunk, so only for chunks no other thread sees.
+     */
+    public static byte[] encode(Chunk chunk) {
+        byte[] blocks = ChunkCodec.encode(chunk);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(blocks.length + 4 + 2 * COLUMNS * 2);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(blocks.length);
+            out.write(blocks);
+            for (HeightmapType type : HeightmapType.values()) {
+                for (int z = 0; z < Chunk.SIZE_Z; z++) {
+                    for (int x = 0; x < Chunk.SIZE_X; x++) {
+                        out.writeShort(chunk.getHeight(type, x, z));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // in-memory stream
+            throw new IllegalStateException(e);
+        }
+        return ChunkCodec.compress(bytes.toByteArray());
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, pos);
+            if (read < 0) {
+                throw new EOFException("Pregenerated chunk file truncated at " + pos);
+            }
+            pos += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            pos += channel.write(buffer, pos);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Creates a cache file. Payloads are appended in whatever order they are
+     * written, from any thread; the index goes in on {@link #close()}, so an
+     * unfinished file has an empty index and loads nothing.
+     */
+    public static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final int minChunkX;
+        private final int minChunkZ;
+        private final int side;
+        private final long[] offsets;
+        private final int[] lengths;
+        private long end;
+
+        public Writer(Path path, long seed, int minChunkX, int minChunkZ, int side) throws IOException {
+            if (side <= 0) {
+                throw new IllegalArgumentException("Invalid side length " + side);
+            }
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.minChunkX = minChunkX;
+            this.minChunkZ = minChunkZ;
+            this.side = side;
+            this.offsets = new long[side * side];
+            this.lengths = new int[side * side];
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).put((byte) FORMAT_VERSION).putLong(seed).putShort((short) Chunk.SIZE_Y)
+                    .putInt(minChunkX).putInt(minChunkZ).putInt(side).flip();
+            writeFully(channel, header, 0);
+            // zeroed until close
+            writeFully(channel, ByteBuffer.allocate(side * side * ENTRY_BYTES), HEADER_BYTES);
+            this.end = HEADER_BYTES + (long) side * side * ENTRY_BYTES;
+        }
+
+        /**
+         * @param payload from {@link PregenCache#encode(Chunk)}
+         */
+        public synchronized void write(int chunkX, int chunkZ, byte[] payload) throws IOException {
+            int x = chunkX - minChunkX;
+            int z = chunkZ - minChunkZ;
+            if (x < 0 || z < 0 || x >= side || z >= side) {
+                throw new IllegalArgumentException("Chunk " + chunkX + "," + chunkZ + " is outside the file");
+            }
+            writeFully(channel, ByteBuffer.wrap(payload), end);
+            offsets[z * side + x] = end;
+            lengths[z * side + x] = payload.length;
+            end += payload.length;
+        }
+
+        /**
+         * Bytes written so far.
+         */
+        public synchronized long size() {
+            return end;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                ByteBuffer index = ByteBuffer.allocate(offsets.length * ENTRY_BYTES);
+                for (int i = 0; i < offsets.length; i++) {
+                    index.putLong(offsets[i]).putInt(lengths[i]);
+                }
+                index.flip();
+                writeFully(channel, index, HEADER_BYTES);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.alextoday.game.world.storage;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * One file holding {@value #REGION_SIZE}x{@value #REGION_SIZE} chunk payloads.
+ *
+ * The file starts with an offset table (one entry per chunk: first sector and
+ * payload length in bytes), followed by payloads aligned to
+ * {@value #SECTOR_BYTES}-byte sectors. A rewritten payload always goes to the
+ * first free run of sectors, so the previous copy stays intact until the
+ * table points to the new one.
+ * All I/O is positional on a {@link FileChannel}; methods are synchronized.
+ */
+public class RegionFile implements Closeable {
+
+    public static final int REGION_SIZE = 32;
+    public static final int SECTOR_BYTES = 4096;
+
+    private static final int ENTRIES = REGION_SIZE * REGION_SIZE;
+    private static final int ENTRY_BYTES = 8;
+    private static final int HEADER_SECTORS = (ENTRIES * ENTRY_BYTES + SECTOR_BYTES - 1) / SECTOR_BYTES;
+
+    private final FileChannel channel;
+
+    // first sector of each payload, 0 = not stored
+    private final int[] offsets = new int[ENTRIES];
+    private final int[] lengths = new int[ENTRIES];
+    private final BitSet usedSectors = new BitSet();
+
+    private final ByteBuffer entryBuffer = ByteBuffer.allocate(ENTRY_BYTES);
+
+    public RegionFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        usedSectors.set(0, HEADER_SECTORS);
+
+        if (channel.size() < (long) HEADER_SECTORS * SECTOR_BYTES) {
+            writeFully(ByteBuffer.allocate(HEADER_SECTORS * SECTOR_BYTES), 0);
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(ENTRIES * ENTRY_BYTES);
+        readFully(header, 0);
+        header.flip();
+
+        long fileSize = channel.size();
+        for (int i = 0; i < ENTRIES; i++) {
+            int offset = header.getInt();
+            int length = header.getInt();
+            int sectors = sectorsFor(length);
+            if (offset < HEADER_SECTORS || length <= 0 || (long) offset * SECTOR_BYTES + length > fileSize) {
+                // missing or damaged entry, treat the chunk as not stored
+                continue;
+            }
+            offsets[i] = offset;
+            lengths[i] = length;
+            usedSectors.set(offset, offset + sectors);
+        }
+    }
+
+    private static int entryIndex(int localX, int localZ) {
+        return localZ * REGION_SIZE + localX;
+    }
+
+    private static int sectorsFor(int length) {
+        return (length + SECTOR_BYTES - 1) / SECTOR_BYTES;
+    }
+
+    public synchronized boolean contains(int localX, int localZ) {
+        return offsets[entryIndex(localX, localZ)] != 0;
+    }
+
+    /**
+     * @return the stored payload, or {@code null} if the chunk is not in this region
+     */
+    public synchronized byte[] read(int localX, int localZ) throws IOException {
+        int i = entryIndex(localX, localZ);
+        if (offsets[i] == 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(lengths[i]);
+        readFully(buffer, (long) offsets[i] * SECTOR_BYTES);
+        return buffer.array();
+    }
+
+    /**
+     * Writes the payload to free sectors, never over the chunk's current copy,
+     * and forces it to disk before the table entry points to it; the old
+     * sectors are freed only once the new entry is on disk too. A crash or an
+     * I/O error at any point leaves the entry on either the old or the new
+     * complete payload.
+     */
+    public synchronized void write(int localX, int localZ, byte[] payload, int length) throws IOException {
+        int i = entryIndex(localX, localZ);
+        int needed = sectorsFor(length);
+
+        int oldOffset = offsets[i];
+        int oldSectors = oldOffset != 0 ? sectorsFor(lengths[i]) : 0;
+
+        // the old run is still marked used, so the new one cannot overlap it
+        int offset = findFreeRun(needed);
+        writeFully(ByteBuffer.wrap(payload, 0, length), (long) offset * SECTOR_BYTES);
+        channel.force(false);
+        usedSectors.set(offset, offset + needed);
+
+        writeEntry(i, offset, length);
+        channel.force(false);
+
+        if (oldOffset != 0) {
+            usedSectors.clear(oldOffset, oldOffset + oldSectors);
+        }
+    }
+
+    public synchronized void remove(int localX, int localZ) throws IOException {
+        int i = entryIndex(localX, localZ);
+        if (offsets[i] == 0) {
+            return;
+        }
+        int offset = offsets[i];
+        int sectors = sectorsFor(lengths[i]);
+        writeEntry(i, 0, 0);
+        usedSectors.clear(offset, offset + sectors);
+    }
+
+    private int findFreeRun(int sectors) {
+        int start = usedSectors.nextClearBit(HEADER_SECTORS);
+        while (true) {
+            int nextUsed = usedSectors.nextSetBit(start);
+            if (nextUsed < 0 || nextUsed - start >= sectors) {
+                return start;
+            }
+            start = usedSectors.nextClearBit(nextUsed);
+        }
+    }
+
+    private void writeEntry(int i, int offset, int length) throws IOException {
+        offsets[i] = offset;
+        lengths[i] = length;
+
+        entryBuffer.clear();
+        entryBuffer.putInt(offset).putInt(length).flip();
+        writeFully(entryBuffer, (long) i * ENTRY_BYTES);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, pos);
+            if (read < 0) {
+                throw new EOFException("Region file truncated at " + pos);
+            }
+            pos += read;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            pos += channel.write(buffer, pos);
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,160 @@
+package com.alextoday.game.world.storage;
+
+import com.alextoday.game.world.Chunk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persists edited chunks in region files of
+ * {@link RegionFile#REGION_SIZE}x{@link RegionFile#REGION_SIZE} chunks.
+ *
+ * {@link #saveAsync(Chunk)} serializes the blocks on the calling thread (a short
+ * copy) and leaves compression and disk I/O to a background writer. Until the
+ * write finishes, {@link #load(int, int)} serves the chunk from the pending copy,
+ * so a chunk that is reloaded right after unloading never reads stale data.
+ */
+public class RegionStorage implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(RegionStorage.class.getName());
+
+    private final Path directory;
+    private final Map<Long, RegionFile> regions = new HashMap<>();
+    private final ConcurrentHashMap<Long, byte[]> pendingWrites = new ConcurrentHashMap<>();
+    private final ExecutorService writer;
+
+    public RegionStorage(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "region-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param create whether to create the file if it does not exist yet
+     * @return the open region, or {@code null} if it does not exist and {@code create} is false
+     */
+    private RegionFile region(int chunkX, int chunkZ, boolean create) throws IOException {
+        int regionX = Math.floorDiv(chunkX, RegionFile.REGION_SIZE);
+        int regionZ = Math.floorDiv(chunkZ, RegionFile.REGION_SIZE);
+        long key = Chunk.key(regionX, regionZ);
+
+        synchronized (regions) {
+            RegionFile region = regions.get(key);
+            if (region == null) {
+                Path path = directory.resolve("r." + regionX + "." + regionZ + ".region");
+                if (!create && !Files.exists(path)) {
+                    return null;
+                }
+                region = new RegionFile(path);
+                regions.put(key, region);
+            }
+            return region;
+        }
+    }
+
+    /**
+     * Loads a stored chunk. Safe to call from any thread.
+     *
+     * @return the chunk, or {@code null} if it was never saved
+     */
+    public Chunk load(int chunkX, int chunkZ) throws IOException {
+        byte[] raw = pendingWrites.get(Chunk.key(chunkX, chunkZ));
+        if (raw == null) {
+            RegionFile region = region(chunkX, chunkZ, false);
+            byte[] compressed = region != null
+                    ? region.read(Math.floorMod(chunkX, RegionFile.REGION_SIZE),
+                            Math.floorMod(chunkZ, RegionFile.REGION_SIZE))
+                    : null;
+            if (compressed == null) {
+                return null;
+            }
+            raw = ChunkCodec.decompress(compressed);
+        }
+
+        Chunk chunk = ChunkCodec.decode(chunkX, chunkZ, raw);
+        chunk.markSaved();
+        return chunk;
+    }
+
+    /**
+     * Queues the chunk for writing. Render thread only.
+     */
+    public void saveAsync(Chunk chunk) {
+        int chunkX = chunk.getChunkX();
+        int chunkZ = chunk.getChunkZ();
+        long key = Chunk.key(chunkX, chunkZ);
+
+        byte[] raw = ChunkCodec.encode(chunk);
+        chunk.markSaved();
+        pendingWrites.put(key, raw);
+
+        writer.execute(() -> {
+            try {
+                byte[] compressed = ChunkCodec.compress(raw);
+                region(chunkX, chunkZ, true).write(
+                        Math.floorMod(chunkX, RegionFile.REGION_SIZE),
+                        Math.floorMod(chunkZ, RegionFile.REGION_SIZE),
+                        compressed, compressed.length);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to save chunk " + chunkX + "," + chunkZ, e);
+            } finally {
+                // a newer save may have replaced the pending copy meanwhile
+                pendingWrites.remove(key, raw);
+            }
+        });
+    }
+
+    public int getPendingWriteCount() {
+        return pendingWrites.size();
+    }
+
+    /**
+     * Waits for queued writes and closes all region files.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOG.warning("Region writer did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (regions) {
+            IOException failure = null;
+            for (RegionFile region : regions.values()) {
+                try {
+                    region.flush();
+                    region.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            regions.clear();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.alextoday.game.bench;
+
+import com.alextoday.game.world.BlockType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random block reads and writes through the world, reported per block.
+ * Writes only mark chunks dirty; the rebuild is not part of the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockAccessBenchmark {
+
+    @Benchmark
+    @OperationsPerInvocation(WorldState.POSITIONS)
+    public void getBlockType(WorldState state, Blackhole bh) {
+        for (int i = 0; i < WorldState.POSITIONS; i++) {
+            bh.consume(state.world.getBlockType(state.xs[i], state.ys[i], state.zs[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WorldState.POSITIONS)
+    public void setBlockType(WorldState state) {
+        for (int i = 0; i < WorldState.POSITIONS; i++) {
+            BlockType type = (i & 1) == 0 ? BlockType.STONE : BlockType.AIR;
+            state.world.setBlockType(state.xs[i], state.ys[i], state.zs[i], type);
+        }
+    }
+}
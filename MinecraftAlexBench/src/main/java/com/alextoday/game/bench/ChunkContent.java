@@ -0,0 +1,56 @@
+package com.alextoday.game.bench;
+
+import com.alextoday.game.world.BlockType;
+import com.alextoday.game.world.Chunk;
+import com.alextoday.game.world.PerlinNoise;
+
+/**
+ * Chunk contents used as a benchmark parameter.
+ */
+public enum ChunkContent {
+    FLAT,
+    NOISY,
+    WATER,
+    AIR;
+
+    static final long SEED = 12345L;
+
+    public Chunk create(int chunkX, int chunkZ, PerlinNoise noise) {
+        Chunk chunk = new Chunk(chunkX, chunkZ);
+        fill(chunk, noise);
+        return chunk;
+    }
+
+    /**
+     * Replaces every block of the chunk with this content.
+     */
+    public void fill(Chunk chunk, PerlinNoise noise) {
+        switch (this) {
+            case FLAT:
+                clear(chunk, BlockType.AIR);
+                chunk.generateFlat(Chunk.WATER_SURFACE_Y + 2);
+                break;
+            case NOISY:
+                clear(chunk, BlockType.AIR);
+                chunk.generateTerrainWithNoise(noise, Chunk.WATER_SURFACE_Y + 2, 6);
+                break;
+            case WATER:
+                clear(chunk, BlockType.WATER);
+                break;
+            default:
+                clear(chunk, BlockType.AIR);
+                break;
+        }
+        chunk.compact();
+    }
+
+    private static void clear(Chunk chunk, BlockType type) {
+        for (int y = 0; y < Chunk.SIZE_Y; y++) {
+            for (int z = 0; z < Chunk.SIZE_Z; z++) {
+                for (int x = 0; x < Chunk.SIZE_X; x++) {
+                    chunk.setBlock(x, y, z, type);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.alextoday.game.bench;
+
+import com.alextoday.game.world.Chunk;
+import com.alextoday.game.world.PerlinNoise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation of a fresh chunk, including allocation of its storage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChunkGenerationBenchmark {
+
+    private PerlinNoise noise;
+    private int chunkX;
+
+    @Setup
+    public void setup() {
+        noise = new PerlinNoise(ChunkContent.SEED);
+    }
+
+    @Benchmark
+    public Chunk generateTerrainWithNoise() {
+        Chunk chunk = new Chunk(chunkX++ & 1023, 0);
+        chunk.generateTerrainWithNoise(noise, 8, 6);
+        return chunk;
+    }
+
+    @Benchmark
+    public Chunk generateFlat() {
+        Chunk chunk = new Chunk(chunkX++ & 1023, 0);
+        chunk.generateFlat(8);
+        return chunk;
+    }
+}
@@ -0,0 +1,41 @@
+package com.alextoday.game.bench;
+
+import com.alextoday.game.world.World;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.scene.Node;
+import com.jme3.system.NativeLibraryLoader;
+
+/**
+ * Engine objects that work without a window or GL context.
+ */
+final class Headless {
+
+    private static boolean nativesLoaded;
+
+    private Headless() {
+    }
+
+    static synchronized void loadNatives() {
+        if (!nativesLoaded) {
+            NativeLibraryLoader.loadNativeLibrary("bulletjme", true);
+            nativesLoaded = true;
+        }
+    }
+
+    static AssetManager assetManager() {
+        return new DesktopAssetManager(true);
+    }
+
+    /**
+     * A world with a detached root node and its own physics space,
+     * with every chunk in {@code radiusChunks} around the origin loaded.
+     */
+    static World loadedWorld(int radiusChunks) {
+        loadNatives();
+        World world = new World(new Node("root"), assetManager(), new PhysicsSpace());
+        world.loadChunksNow(0f, 0f, radiusChunks);
+        return world;
+    }
+}
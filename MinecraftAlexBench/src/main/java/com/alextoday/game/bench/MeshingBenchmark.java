@@ -0,0 +1,87 @@
+package com.alextoday.game.bench;
+
+import com.alextoday.game.world.BlockType;
+import com.alextoday.game.world.Chunk;
+import com.alextoday.game.world.ChunkCollisionBuilder;
+import com.alextoday.game.world.ChunkMesher;
+import com.alextoday.game.world.MeshData;
+import com.alextoday.game.world.PerlinNoise;
+import com.jme3.asset.AssetManager;
+import com.jme3.bullet.collision.shapes.CompoundCollisionShape;
+import com.jme3.material.Material;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Geometry construction for one chunk. Only builds scene-graph objects
+ * and buffers, nothing is rendered.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MeshingBenchmark {
+
+    @Param({"FLAT", "NOISY", "WATER", "AIR"})
+    public ChunkContent content;
+
+    private Chunk chunk;
+    private Box cubeMesh;
+    private Map<BlockType, Material> materials;
+    private final ChunkMesher mesher = new ChunkMesher();
+    private final ChunkCollisionBuilder collisionBuilder = new ChunkCollisionBuilder();
+    private final MeshData opaque = new MeshData();
+    private final MeshData water = new MeshData();
+
+    @Setup
+    public void setup() {
+        Headless.loadNatives();
+        chunk = content.create(0, 0, new PerlinNoise(ChunkContent.SEED));
+        cubeMesh = new Box(0.5f, 0.5f, 0.5f);
+
+        AssetManager assetManager = Headless.assetManager();
+        materials = new EnumMap<>(BlockType.class);
+        for (BlockType type : BlockType.values()) {
+            if (type.color != null) {
+                Material mat = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md");
+                mat.setBoolean("UseMaterialColors", true);
+                mat.setColor("Diffuse", type.color);
+                materials.put(type, mat);
+            }
+        }
+    }
+
+    @Benchmark
+    public Node buildGeometry() {
+        chunk.buildGeometry(null, cubeMesh, materials);
+        return chunk.getNode();
+    }
+
+    @Benchmark
+    public int greedyMesh() {
+        mesher.build(chunk, null, opaque, water);
+        return opaque.getVertexCount() + water.getVertexCount();
+    }
+
+    @Benchmark
+    public CompoundCollisionShape collisionShape() {
+        return collisionBuilder.build(chunk);
+    }
+}
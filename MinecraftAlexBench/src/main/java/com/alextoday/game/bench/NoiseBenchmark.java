@@ -0,0 +1,62 @@
+package com.alextoday.game.bench;
+
+import com.alextoday.game.world.Chunk;
+import com.alextoday.game.world.PerlinNoise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One chunk column grid (16x16 samples) per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NoiseBenchmark {
+
+    private PerlinNoise noise;
+    private double[] out;
+    private int chunkX;
+
+    @Setup
+    public void setup() {
+        noise = new PerlinNoise(ChunkContent.SEED);
+        out = new double[Chunk.SIZE_X * Chunk.SIZE_Z];
+    }
+
+    @Benchmark
+    public void noisePerPoint(Blackhole bh) {
+        int baseX = (chunkX++ & 1023) * Chunk.SIZE_X;
+        for (int z = 0; z < Chunk.SIZE_Z; z++) {
+            for (int x = 0; x < Chunk.SIZE_X; x++) {
+                bh.consume(noise.noise((baseX + x) * Chunk.TERRAIN_SCALE, z * Chunk.TERRAIN_SCALE));
+            }
+        }
+    }
+
+    @Benchmark
+    public double[] fillGrid() {
+        noise.fill(out, (chunkX++ & 1023) * Chunk.SIZE_X, 0, Chunk.SIZE_X, Chunk.SIZE_Z, Chunk.TERRAIN_SCALE);
+        return out;
+    }
+
+    @Benchmark
+    public double[] fillFractal4Octaves() {
+        noise.fillFractal(out, (chunkX++ & 1023) * Chunk.SIZE_X, 0, Chunk.SIZE_X, Chunk.SIZE_Z,
+                Chunk.TERRAIN_SCALE, 4, 2.0, 0.5);
+        return out;
+    }
+}
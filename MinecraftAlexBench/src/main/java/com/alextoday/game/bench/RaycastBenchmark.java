@@ -0,0 +1,69 @@
+package com.alextoday.game.bench;
+
+import com.alextoday.game.world.Chunk;
+import com.alextoday.game.world.RaycastResult;
+import com.jme3.math.Vector3f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block picking rays from random eye positions a few blocks above the
+ * surface, reported per ray.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RaycastBenchmark {
+
+    private static final int RAYS = 1024;
+
+    @Param({"6", "32"})
+    public float maxDistance;
+
+    private final Vector3f[] origins = new Vector3f[RAYS];
+    private final Vector3f[] directions = new Vector3f[RAYS];
+    private final RaycastResult result = new RaycastResult();
+
+    @Setup
+    public void setup(WorldState state) {
+        Random random = new Random(7);
+        for (int i = 0; i < RAYS; i++) {
+            int p = random.nextInt(WorldState.POSITIONS);
+            // eye height over the ground or the water, whichever is higher
+            int surface = Math.max(state.world.getTerrainHeightAt(state.xs[p], state.zs[p]), Chunk.WATER_SURFACE_Y + 1);
+            origins[i] = new Vector3f(state.xs[p], surface + 1f + random.nextFloat() * 4f, state.zs[p]);
+            directions[i] = new Vector3f(
+                    random.nextFloat() * 2f - 1f,
+                    -random.nextFloat(),
+                    random.nextFloat() * 2f - 1f).normalizeLocal();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int raycast(WorldState state) {
+        int hits = 0;
+        for (int i = 0; i < RAYS; i++) {
+            if (state.world.raycast(origins[i], directions[i], maxDistance, result)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,61 @@
+package com.alextoday.game.bench;
+
+import com.alextoday.game.world.Chunk;
+import com.alextoday.game.world.PerlinNoise;
+import com.alextoday.game.world.World;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+
+/**
+ * A loaded world whose chunks are overwritten with {@link #content},
+ * plus precomputed random block positions inside the loaded area.
+ */
+@State(Scope.Benchmark)
+public class WorldState {
+
+    static final int POSITIONS = 4096;
+
+    @Param({"FLAT", "NOISY", "WATER", "AIR"})
+    public ChunkContent content;
+
+    @Param({"1", "2", "4"})
+    public int viewRadius;
+
+    World world;
+    int[] xs;
+    int[] ys;
+    int[] zs;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        world = Headless.loadedWorld(viewRadius);
+
+        PerlinNoise noise = new PerlinNoise(ChunkContent.SEED);
+        for (Chunk chunk : world.getChunks()) {
+            content.fill(chunk, noise);
+        }
+
+        Random random = new Random(42);
+        int extent = (viewRadius * 2 + 1) * Chunk.SIZE_X;
+        int min = -viewRadius * Chunk.SIZE_X;
+        xs = new int[POSITIONS];
+        ys = new int[POSITIONS];
+        zs = new int[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            xs[i] = min + random.nextInt(extent);
+            ys[i] = random.nextInt(Chunk.SIZE_Y);
+            zs[i] = min + random.nextInt(extent);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        world.shutdown();
+    }
+}